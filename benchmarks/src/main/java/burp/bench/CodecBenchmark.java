@@ -0,0 +1,68 @@
+package burp.bench;
+
+import burp.NoteCodec;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of compressing a note body on insert and decompressing it for the
+ * detail view, on API inventories of typical sizes. The compression ratio
+ * is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH"};
+    private static final String[] RESOURCES = {"users", "orders", "tokens", "files", "reports", "sessions", "items", "invoices"};
+
+    @Param({"4096", "32768", "262144"})
+    public int chars;
+
+    private String content;
+    private byte[] compressed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder inventory = new StringBuilder("# API inventory\n");
+        while (inventory.length() < chars) {
+            inventory.append(METHODS[random.nextInt(METHODS.length)])
+                    .append(" https://api").append(random.nextInt(5)).append(".target.com/api/v").append(1 + random.nextInt(3))
+                    .append('/').append(RESOURCES[random.nextInt(RESOURCES.length)])
+                    .append('/').append(random.nextInt(100_000))
+                    .append(" -> ").append(200 + random.nextInt(4) * 100)
+                    .append('\n');
+        }
+        content = inventory.substring(0, chars);
+        compressed = NoteCodec.compress(content, 1);
+        int plain = content.getBytes(StandardCharsets.UTF_8).length;
+        System.out.printf("%n%d bytes compress to %d (%.1f%%)%n", plain, compressed.length, 100.0 * compressed.length / plain);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return NoteCodec.compress(content, 1);
+    }
+
+    @Benchmark
+    public String decompress() {
+        return NoteCodec.decompress(NoteCodec.DEFLATE, compressed);
+    }
+}
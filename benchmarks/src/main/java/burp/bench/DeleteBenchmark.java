@@ -0,0 +1,63 @@
+package burp.bench;
+
+import burp.NoteJournal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deleting a multi-row selection, as the Delete Selected buttons do: the
+ * notes are marked deleted in chunks of IN (?, ?, ...) updates. Each
+ * invocation first inserts the notes it deletes and afterwards purges them
+ * (both untimed), so the table keeps its size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeleteBenchmark {
+    private static final int SELECTION = 100;
+
+    @State(Scope.Thread)
+    public static class Selection {
+        List<Integer> ids = new ArrayList<>(SELECTION);
+
+        @Setup(Level.Invocation)
+        public void insertNotes(NoteFixture fixture) throws Exception {
+            List<NoteJournal.Record> batch = new ArrayList<>(SELECTION);
+            for (int i = 0; i < SELECTION; i++) {
+                batch.add(fixture.newNote());
+            }
+            fixture.store.insertBatch(batch);
+            long maxId = fixture.store.maxId();
+            ids.clear();
+            for (int i = 0; i < SELECTION; i++) {
+                ids.add((int) (maxId - i));
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void purgeNotes(NoteFixture fixture) throws Exception {
+            // A negative age includes notes deleted within the current second
+            fixture.store.purgeDeleted(-1000, SELECTION);
+        }
+    }
+
+    @Benchmark
+    public int deleteSelection(NoteFixture fixture, Selection selection) throws Exception {
+        return fixture.store.delete(selection.ids).size();
+    }
+}
@@ -0,0 +1,47 @@
+package burp.bench;
+
+import burp.NoteStore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exact, fuzzy (trigram) and wildcard suffix domain search, against the
+ * LIKE '%term%' scan the fuzzy search used to be.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DomainSearchBenchmark {
+    // A host in the middle of the data set, and a substring shared by a few hosts
+    private static final String EXACT_TERM = NoteFixture.domain(5);
+    private static final String FUZZY_TERM = "min3.target";
+    private static final String SUFFIX_TERM = "*.target0.com";
+
+    @Benchmark
+    public int exact(NoteFixture fixture) throws Exception {
+        return fixture.store.search(NoteStore.SearchMode.EXACT, EXACT_TERM).rows.size();
+    }
+
+    @Benchmark
+    public int fuzzy(NoteFixture fixture) throws Exception {
+        return fixture.store.search(NoteStore.SearchMode.FUZZY, FUZZY_TERM).rows.size();
+    }
+
+    @Benchmark
+    public int suffix(NoteFixture fixture) throws Exception {
+        return fixture.store.search(NoteStore.SearchMode.FUZZY, SUFFIX_TERM).rows.size();
+    }
+
+    @Benchmark
+    public int likeScan(NoteFixture fixture) throws Exception {
+        return fixture.likeScan(FUZZY_TERM);
+    }
+}
@@ -0,0 +1,149 @@
+package burp.bench;
+
+import burp.EndpointCapture;
+import burp.IBurpExtenderCallbacks;
+import burp.IHttpListener;
+import burp.IHttpRequestResponse;
+import burp.IHttpService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time EndpointCapture adds to each proxy thread, with several threads
+ * offering responses at once (change the count with -t). "draining" runs the
+ * capture pipeline, which takes messages off the buffer as fast as it can;
+ * "full" never starts it, so every offer finds the buffer full and is
+ * dropped. "noOpListener" is an empty listener, the harness's own cost.
+ * The capture summary, with its drop count, is printed at teardown.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class EndpointCaptureBenchmark {
+    private static final int TOOL = IBurpExtenderCallbacks.TOOL_PROXY;
+    // Well over the capture buffer's capacity
+    private static final int FILL_MESSAGES = 100_000;
+    // Nothing is ever flushed; see Message
+    private static final long FLUSH_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final IHttpListener NO_OP = (toolFlag, messageIsRequest, messageInfo) -> { };
+
+    /**
+     * A response with no HTTP service, which the pipeline discards without
+     * parsing, so it needs neither Burp's callbacks nor a write queue.
+     */
+    private static final class Message implements IHttpRequestResponse {
+        @Override
+        public byte[] getRequest() {
+            return null;
+        }
+
+        @Override
+        public void setRequest(byte[] message) {
+        }
+
+        @Override
+        public byte[] getResponse() {
+            return null;
+        }
+
+        @Override
+        public void setResponse(byte[] message) {
+        }
+
+        @Override
+        public String getComment() {
+            return null;
+        }
+
+        @Override
+        public void setComment(String comment) {
+        }
+
+        @Override
+        public String getHighlight() {
+            return null;
+        }
+
+        @Override
+        public void setHighlight(String color) {
+        }
+
+        @Override
+        public IHttpService getHttpService() {
+            return null;
+        }
+
+        @Override
+        public void setHttpService(IHttpService httpService) {
+        }
+    }
+
+    private static final IHttpRequestResponse MESSAGE = new Message();
+
+    @State(Scope.Benchmark)
+    public static class Draining {
+        EndpointCapture capture;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            capture = new EndpointCapture(null, null, FLUSH_INTERVAL_MS);
+            capture.setEnabled(true);
+            capture.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            capture.stop();
+            System.out.printf("%n%s%n", capture.describe());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Full {
+        EndpointCapture capture;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            capture = new EndpointCapture(null, null, FLUSH_INTERVAL_MS);
+            capture.setEnabled(true);
+            for (int i = 0; i < FILL_MESSAGES; i++) {
+                capture.processHttpMessage(TOOL, false, MESSAGE);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.out.printf("%n%s%n", capture.describe());
+        }
+    }
+
+    @Benchmark
+    public void noOpListener() {
+        NO_OP.processHttpMessage(TOOL, false, MESSAGE);
+    }
+
+    @Benchmark
+    public void draining(Draining state) {
+        state.capture.processHttpMessage(TOOL, false, MESSAGE);
+    }
+
+    @Benchmark
+    public void full(Full state) {
+        state.capture.processHttpMessage(TOOL, false, MESSAGE);
+    }
+}
@@ -0,0 +1,42 @@
+package burp.bench;
+
+import burp.EndpointQuery;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Endpoint set queries. On "h2" they run on the endpoint table; on "memory"
+ * every query re-parses the notes, the approach the table replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndpointSetBenchmark {
+    private static final EndpointQuery.Operand HOST = EndpointQuery.Operand.parse(NoteFixture.domain(5));
+    private static final EndpointQuery.Operand OTHER_HOST = EndpointQuery.Operand.parse(NoteFixture.domain(13));
+    private static final EndpointQuery.Operand SUBDOMAINS = EndpointQuery.Operand.parse("*.target0.com");
+
+    @Benchmark
+    public List<Object[]> difference(NoteFixture fixture) throws Exception {
+        return fixture.store.endpoints(new EndpointQuery(EndpointQuery.Operation.DIFF, HOST, OTHER_HOST));
+    }
+
+    @Benchmark
+    public List<Object[]> intersection(NoteFixture fixture) throws Exception {
+        return fixture.store.endpoints(new EndpointQuery(EndpointQuery.Operation.INTERSECT, HOST, OTHER_HOST));
+    }
+
+    @Benchmark
+    public List<Object[]> countPerDomain(NoteFixture fixture) throws Exception {
+        return fixture.store.endpoints(new EndpointQuery(EndpointQuery.Operation.COUNT, SUBDOMAINS, null));
+    }
+}
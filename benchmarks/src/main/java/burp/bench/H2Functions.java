@@ -0,0 +1,13 @@
+package burp.bench;
+
+/**
+ * MySQL functions missing from H2, registered as aliases by NoteFixture.
+ */
+public final class H2Functions {
+    private H2Functions() {
+    }
+
+    public static String reverse(String value) {
+        return value == null ? null : new StringBuilder(value).reverse().toString();
+    }
+}
@@ -0,0 +1,42 @@
+package burp.bench;
+
+import burp.NoteJournal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost per note of a single insert versus the batched insert the write-behind queue uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+    private static final int BATCH = 100;
+
+    @Benchmark
+    public void singleInsert(NoteFixture fixture) throws Exception {
+        NoteJournal.Record note = fixture.newNote();
+        fixture.store.insert(note.domain, note.content);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batchInsert(NoteFixture fixture) throws Exception {
+        List<NoteJournal.Record> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(fixture.newNote());
+        }
+        fixture.store.insertBatch(batch);
+    }
+}
@@ -0,0 +1,68 @@
+package burp.bench;
+
+import burp.NoteListQuery;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading the note list: what the paged All Notes tab does on refresh, on
+ * re-sorting by a column header and on scrolling far down, against reading
+ * every note as it did before paging.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListBenchmark {
+    private static final int PAGE_SIZE = burp.PagedNotesTableModel.PAGE_SIZE;
+    private static final NoteListQuery BY_DOMAIN = NoteListQuery.NEWEST_FIRST.sortedBy(NoteListQuery.SortColumn.DOMAIN, true);
+    private static final NoteListQuery BY_LENGTH = NoteListQuery.NEWEST_FIRST.sortedBy(NoteListQuery.SortColumn.LENGTH, false);
+
+    @Benchmark
+    public int refresh(NoteFixture fixture) throws Exception {
+        fixture.store.count(NoteListQuery.NEWEST_FIRST);
+        return fixture.store.page(NoteListQuery.NEWEST_FIRST, null, 0, PAGE_SIZE).size();
+    }
+
+    @Benchmark
+    public int sortByDomain(NoteFixture fixture) throws Exception {
+        // A header click: the row count is kept, only the first page is read
+        return fixture.store.page(BY_DOMAIN, null, 0, PAGE_SIZE).size();
+    }
+
+    @Benchmark
+    public int sortByLength(NoteFixture fixture) throws Exception {
+        return fixture.store.page(BY_LENGTH, null, 0, PAGE_SIZE).size();
+    }
+
+    @Benchmark
+    public int nextPageByDomain(NoteFixture fixture) throws Exception {
+        // Scrolling: the next page starts at the key of the previous page's last row
+        List<Object[]> first = fixture.store.page(BY_DOMAIN, null, 0, PAGE_SIZE);
+        return fixture.store.page(BY_DOMAIN, first.get(first.size() - 1), 0, PAGE_SIZE).size();
+    }
+
+    @Benchmark
+    public int lastPage(NoteFixture fixture) throws Exception {
+        // Jumping to the end reads the reversed order from its start
+        return fixture.store.page(NoteListQuery.NEWEST_FIRST.reversed(), null, 0, PAGE_SIZE).size();
+    }
+
+    @Benchmark
+    public int filteredCount(NoteFixture fixture) throws Exception {
+        return fixture.store.count(NoteListQuery.NEWEST_FIRST.filtered("*.target0.com", 0));
+    }
+
+    @Benchmark
+    public int loadAll(NoteFixture fixture) throws Exception {
+        return fixture.loadAllRows();
+    }
+}
@@ -0,0 +1,229 @@
+package burp.bench;
+
+import burp.EmbeddedNoteStore;
+import burp.InMemoryNoteStore;
+import burp.MySqlNoteStore;
+import burp.NoteJournal;
+import burp.NoteListQuery;
+import burp.NoteStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A NoteStore pre-filled with a deterministic data set.
+ *
+ * The "h2" backend runs MySqlNoteStore, with its real SQL, against an
+ * in-memory H2 database in MySQL mode. The schema mirrors what
+ * SchemaMigrator creates on MySQL, minus the FULLTEXT index, which H2 does
+ * not support. "memory" and "embedded" are the local stores; embedded is left
+ * out by default because filling it writes the whole data set to disk, but
+ * it can be selected with -p backend=embedded.
+ */
+@State(Scope.Benchmark)
+public class NoteFixture {
+    public static final String[] PREFIXES = {"api", "www", "admin", "auth", "cdn", "dev", "staging", "m"};
+    private static final int FILL_BATCH = 1000;
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+    private static final String[] RESOURCES = {"users", "orders", "tokens", "files", "reports", "sessions", "items"};
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"h2", "memory"})
+    public String backend;
+
+    public NoteStore store;
+    /** Number of distinct domains in the data set. */
+    public int domainCount;
+
+    private String jdbcUrl;
+    private Path embeddedFile;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        domainCount = Math.max(10, Math.min(20_000, rows / 20));
+        store = createStore();
+        store.open();
+        Random random = new Random(42);
+        List<NoteJournal.Record> batch = new ArrayList<>(FILL_BATCH);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new NoteJournal.Record("fill-" + i, domain(random.nextInt(domainCount)), content(random, i), 0));
+            if (batch.size() == FILL_BATCH) {
+                store.insertBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            store.insertBatch(batch);
+        }
+    }
+
+    private NoteStore createStore() throws SQLException, IOException {
+        if ("memory".equals(backend)) {
+            return new InMemoryNoteStore();
+        }
+        if ("embedded".equals(backend)) {
+            embeddedFile = Files.createTempFile("burpnote-bench", ".notes");
+            Files.delete(embeddedFile);
+            return new EmbeddedNoteStore(embeddedFile);
+        }
+        if (!"h2".equals(backend)) {
+            throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+        jdbcUrl = "jdbc:h2:mem:burpnote" + rows + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(jdbcUrl, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            // H2 has no REVERSE(); the generated column for suffix search needs one
+            stmt.execute("CREATE ALIAS IF NOT EXISTS REVERSE DETERMINISTIC FOR 'burp.bench.H2Functions.reverse'");
+            String table = MySqlNoteStore.DEFAULT_TABLE;
+            stmt.execute("CREATE TABLE " + table + " (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "domain VARCHAR(255), " +
+                    "content LONGTEXT, " +
+                    "create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "domain_rev VARCHAR(255) GENERATED ALWAYS AS (REVERSE(LOWER(domain))), " +
+                    "client_ref VARCHAR(64) NULL, " +
+                    "content_hash BINARY(32) NULL, " +
+                    "content_codec TINYINT NOT NULL DEFAULT 0, " +
+                    "content_blob LONGBLOB NULL, " +
+                    "content_preview VARCHAR(120) NULL, " +
+                    "content_chars INT NULL, " +
+                    "content_terms TEXT NULL, " +
+                    "content_length INT GENERATED ALWAYS AS (COALESCE(content_chars, CHAR_LENGTH(content))), " +
+                    "deleted_at TIMESTAMP NULL, " +
+                    "updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3))");
+            stmt.execute("CREATE INDEX idx_" + table + "_domain ON " + table + " (domain)");
+            stmt.execute("CREATE INDEX idx_" + table + "_time_id ON " + table + " (create_time, id)");
+            stmt.execute("CREATE INDEX idx_" + table + "_domain_rev ON " + table + " (domain_rev)");
+            stmt.execute("CREATE INDEX idx_" + table + "_length_id ON " + table + " (content_length, id)");
+            stmt.execute("CREATE INDEX idx_" + table + "_deleted_at ON " + table + " (deleted_at)");
+            stmt.execute("CREATE INDEX idx_" + table + "_updated_id ON " + table + " (updated_at, id)");
+            stmt.execute("CREATE UNIQUE INDEX uq_" + table + "_client_ref ON " + table + " (client_ref)");
+            stmt.execute("CREATE UNIQUE INDEX uq_" + table + "_domain_hash ON " + table + " (domain, content_hash)");
+            stmt.execute("CREATE TABLE " + table + "_domain_grams (" +
+                    "gram CHAR(3) NOT NULL, " +
+                    "domain VARCHAR(255) NOT NULL, " +
+                    "PRIMARY KEY (gram, domain))");
+            stmt.execute("CREATE TABLE " + table + "_endpoints (" +
+                    "note_id INT NOT NULL, " +
+                    "domain VARCHAR(255) NOT NULL, " +
+                    "method VARCHAR(16) NOT NULL, " +
+                    "path VARCHAR(500) NOT NULL, " +
+                    "PRIMARY KEY (domain, method, path, note_id), " +
+                    "FOREIGN KEY (note_id) REFERENCES " + table + " (id) ON DELETE CASCADE)");
+            stmt.execute("CREATE INDEX idx_" + table + "_endpoints_note ON " + table + "_endpoints (note_id, method, path)");
+        }
+        return MySqlNoteStore.forExistingSchema(jdbcUrl, "sa", "", 4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        store.close();
+        if (jdbcUrl != null) {
+            try (Connection conn = DriverManager.getConnection(jdbcUrl, "sa", "");
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("SHUTDOWN");
+            }
+        }
+        if (embeddedFile != null) {
+            Files.deleteIfExists(embeddedFile);
+        }
+    }
+
+    /**
+     * The i-th domain of the data set, e.g. "api3.target17.com".
+     */
+    public static String domain(int i) {
+        return PREFIXES[i % PREFIXES.length] + (i / PREFIXES.length % 50) + ".target" + (i / 400) + ".com";
+    }
+
+    /**
+     * A note that does not exist yet, for insert benchmarks.
+     */
+    public NoteJournal.Record newNote() {
+        long n = sequence.incrementAndGet();
+        return new NoteJournal.Record("bench-" + n, domain((int) (n % domainCount)),
+                "# Captured " + n + "\nGET /api/v1/bench/" + n + "\n", 0);
+    }
+
+    /**
+     * Unindexed substring scan over the domains, the baseline the trigram
+     * index replaced. On the local stores the fuzzy search already is a scan.
+     */
+    public int likeScan(String term) throws SQLException {
+        if (jdbcUrl == null) {
+            return store.search(NoteStore.SearchMode.FUZZY, term).rows.size();
+        }
+        int count = 0;
+        try (Connection conn = DriverManager.getConnection(jdbcUrl, "sa", "");
+             PreparedStatement pstmt = conn.prepareStatement("SELECT id, domain, LEFT(content, 120), " +
+                     "CHAR_LENGTH(content), create_time FROM " + MySqlNoteStore.DEFAULT_TABLE + " WHERE domain LIKE ?")) {
+            pstmt.setString(1, "%" + term + "%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads every note with its full content in list order, as the All Notes
+     * tab did before it was paged.
+     */
+    public int loadAllRows() throws SQLException {
+        if (jdbcUrl == null) {
+            List<Integer> ids = new ArrayList<>();
+            for (Object[] row : store.page(NoteListQuery.NEWEST_FIRST, null, 0, Integer.MAX_VALUE)) {
+                ids.add((Integer) row[0]);
+            }
+            return store.loadContent(ids).size();
+        }
+        int count = 0;
+        try (Connection conn = DriverManager.getConnection(jdbcUrl, "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, domain, content, create_time FROM " +
+                     MySqlNoteStore.DEFAULT_TABLE + " ORDER BY create_time DESC")) {
+            while (rs.next()) {
+                rs.getString(3);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String content(Random random, int i) {
+        StringBuilder content = new StringBuilder("# Endpoints captured from proxy traffic\n");
+        int lines = 3 + random.nextInt(12);
+        for (int line = 0; line < lines; line++) {
+            content.append(METHODS[random.nextInt(METHODS.length)])
+                    .append(" /api/v").append(1 + random.nextInt(3))
+                    .append('/').append(RESOURCES[random.nextInt(RESOURCES.length)])
+                    .append("/{id}");
+            if (random.nextInt(4) == 0) {
+                content.append("?page=").append(random.nextInt(100));
+            }
+            content.append('\n');
+        }
+        return content.append("note ").append(i).append('\n').toString();
+    }
+}
@@ -0,0 +1,119 @@
+package burp.bench;
+
+import burp.NoteRowsTableModel;
+import burp.PagedNotesTableModel;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Showing a search result in the results table: one DefaultTableModel.addRow
+ * (and table event) per row, as before, against a single bulk setRows on
+ * NoteRowsTableModel. Both models are attached to a JTable so the cost of
+ * the events is included. Retained heap per row of each model is printed
+ * during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TableModelBenchmark {
+    private static final int DOMAINS = 50;
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private List<Object[]> result;
+    private DefaultTableModel vectorModel;
+    private NoteRowsTableModel columnarModel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        result = newResult(rows);
+        vectorModel = new DefaultTableModel(PagedNotesTableModel.COLUMN_NAMES, 0);
+        new JTable(vectorModel);
+        columnarModel = new NoteRowsTableModel();
+        new JTable(columnarModel);
+
+        long vectorBytes = retainedBytes(() -> {
+            DefaultTableModel model = new DefaultTableModel(PagedNotesTableModel.COLUMN_NAMES, 0);
+            for (Object[] row : newResult(rows)) {
+                model.addRow(row);
+            }
+            return model;
+        });
+        long columnarBytes = retainedBytes(() -> {
+            NoteRowsTableModel model = new NoteRowsTableModel();
+            model.setRows(newResult(rows));
+            return model;
+        });
+        System.out.printf("%nRetained heap per row: DefaultTableModel %d bytes, NoteRowsTableModel %d bytes%n",
+                vectorBytes / rows, columnarBytes / rows);
+    }
+
+    // Rows as a store returns them: a new String per domain, a boxed id and length, a Timestamp
+    private static List<Object[]> newResult(int count) {
+        Random random = new Random(42);
+        List<Object[]> list = new ArrayList<>(count);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            String domain = new String("api" + random.nextInt(DOMAINS) + ".target.com");
+            String preview = "GET /api/v2/users/" + i + "/orders?page=" + random.nextInt(100) + "\nPOST /api/v2/orders";
+            list.add(new Object[]{i + 1, domain, preview, 200 + random.nextInt(100_000), new Timestamp(now - i * 1000L)});
+        }
+        return list;
+    }
+
+    private static long retainedBytes(Supplier<TableModel> build) {
+        long before = usedHeap();
+        TableModel model = build.get();
+        long after = usedHeap();
+        if (model.getRowCount() == 0) {
+            throw new IllegalStateException("empty model");
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public int defaultTableModelAddRow() {
+        vectorModel.setRowCount(0);
+        for (Object[] row : result) {
+            vectorModel.addRow(row);
+        }
+        return vectorModel.getRowCount();
+    }
+
+    @Benchmark
+    public int noteRowsTableModelSetRows() {
+        columnarModel.setRows(result);
+        return columnarModel.getRowCount();
+    }
+}
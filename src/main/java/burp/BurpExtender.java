@@ -3,7 +3,6 @@ package burp;
 import java.awt.*;
 import java.io.PrintWriter;
 import java.sql.*;
-import java.util.Vector;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
@@ -18,6 +17,10 @@ import javax.swing.table.DefaultTableModel;
  *     content TEXT,
  *     create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
  * );
+ * 
+ * The schema (including indexes) is created and upgraded by SchemaMigrator.
+ * All storage goes through NoteStore; besides MySQL, notes can be kept in an
+ * embedded local file or in memory only.
  */
 public class BurpExtender implements IBurpExtender, ITab {
     private IBurpExtenderCallbacks callbacks;
@@ -26,6 +29,7 @@ public class BurpExtender implements IBurpExtender, ITab {
     
     // UI Components
     private JPanel mainPanel;
+    private JTabbedPane tabbedPane;
     
     // DB Config Components
     private JTextField hostField;
@@ -33,34 +37,128 @@ public class BurpExtender implements IBurpExtender, ITab {
     private JTextField dbNameField;
     private JTextField userField;
     private JPasswordField passField;
+    private JTextField poolSizeField;
+    private JComboBox<String> storageCombo;
+    private JCheckBox compressCheckBox;
     private JLabel statusLabel;
     private JButton connectButton;
+    private JComboBox<String> profileCombo;
+    private JCheckBox rememberPasswordCheckBox;
+    private JCheckBox autoConnectCheckBox;
+    private boolean updatingProfiles;
 
     // Add Note Components
     private JTextField domainInput;
     private JTextArea contentArea;
     private JButton insertButton;
+    private JLabel writeQueueLabel;
+    private javax.swing.Timer writeQueueTimer;
+    private JCheckBox captureCheckBox;
+    private JCheckBox captureInScopeCheckBox;
+    private JLabel captureStatsLabel;
+    private JCheckBox highlightCheckBox;
 
     // Search Components
     private JTextField searchDomainInput;
     private JRadioButton exactMatchRadio;
     private JRadioButton fuzzyMatchRadio;
+    private JRadioButton contentMatchRadio;
     private JButton searchButton;
     private JButton deleteButton; // New Delete Button
+    private JButton undoDeleteButton;
     private JTable resultsTable;
-    private DefaultTableModel tableModel;
-    private JTextArea detailArea; // New component for showing full content
+    private NoteRowsTableModel tableModel;
+    private NoteViewer detailArea; // New component for showing full content
+    private javax.swing.Timer searchDebounceTimer;
+    private SwingWorker<String, Object[]> searchWorker;
+    private QueryCanceller searchCanceller;
+    private static final int SEARCH_DEBOUNCE_MS = 250;
 
     // All Notes Components
     private JButton refreshButton;
     private JButton deleteAllButton;
+    private JButton allNotesUndoButton;
     private JTable allNotesTable;
-    private DefaultTableModel allNotesModel;
-    private JTextArea allNotesDetailArea;
-
-    // Database Connection
-    private Connection dbConnection;
-    private static final String DEFAULT_TABLE = "burp_notes";
+    private PagedNotesTableModel allNotesModel;
+    private NoteViewer allNotesDetailArea;
+    private JButton exportButton;
+    private JButton importButton;
+    private JButton cancelTransferButton;
+    private JProgressBar transferProgress;
+    private SwingWorker<?, ?> transferWorker;
+    private JTextField allNotesFilterInput;
+    private JTextField allNotesMinLengthInput;
+    private javax.swing.Timer allNotesFilterTimer;
+
+    // Endpoints Components
+    private JTextField endpointOperandA;
+    private JTextField endpointOperandB;
+    private JComboBox<EndpointQuery.Operation> endpointOperation;
+    private JButton endpointRunButton;
+    private DefaultTableModel endpointModel;
+    private JLabel endpointStatusLabel;
+
+    // Metrics Components
+    private DefaultTableModel metricsModel;
+    private JLabel metricsStoreLabel;
+    private javax.swing.Timer metricsTimer;
+
+    // Note storage backend
+    private volatile NoteStore noteStore;
+    private javax.swing.Timer poolStatusTimer;
+    private static final String STORAGE_MYSQL = "MySQL";
+    private static final String STORAGE_EMBEDDED = "Embedded file";
+    private static final String STORAGE_MEMORY = "In-memory";
+    private static final String EMBEDDED_FILE_SUFFIX = ".notes";
+    private static final long CONTENT_CACHE_CHARS = 16L * 1024 * 1024;
+    private static final int CONTENT_PREFETCH_ROWS = 2;
+    private final NoteContentCache contentCache = new NoteContentCache(CONTENT_CACHE_CHARS);
+    private final OperationMetrics metrics = new OperationMetrics();
+    private static final int METRICS_REFRESH_MS = 1000;
+    private static final int WRITE_QUEUE_CAPACITY = 10_000;
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final long WRITE_FLUSH_WINDOW_MS = 50;
+    private static final long WRITE_QUEUE_STOP_TIMEOUT_MS = 5_000;
+    private static final String JOURNAL_DIR = ".burpnote";
+    private static final String CREDENTIAL_KEY_FILE = "credentials.key";
+    private ConnectionProfiles profiles;
+    private CredentialCipher credentialCipher;
+    private NoteJournal journal;
+    private NoteWriteQueue writeQueue;
+    private EndpointCapture endpointCapture;
+    private static final long CAPTURE_FLUSH_INTERVAL_MS = 30_000;
+    private final HostNoteIndex hostIndex = new HostNoteIndex();
+    private HostNoteMarker hostMarker;
+    private java.util.concurrent.ScheduledExecutorService hostIndexPoller;
+    private java.util.concurrent.ScheduledFuture<?> hostIndexTask;
+    private int hostIndexPolls;
+    private static final long HOST_INDEX_POLL_MS = 15_000;
+    // Full reload every N polls to reconcile deletes made by teammates
+    private static final int HOST_INDEX_RELOAD_POLLS = 40;
+    private static final int DEFAULT_POOL_SIZE = 4;
+    // Deleted notes can be restored for UNDO_WINDOW_MS and are purged after PURGE_AFTER_MS
+    private static final int UNDO_WINDOW_MS = 30_000;
+    private static final long PURGE_AFTER_MS = 60_000;
+    private static final long PURGE_INTERVAL_MS = 15_000;
+    private static final int PURGE_CHUNK_SIZE = 500;
+    private static final long PURGE_PAUSE_MS = 200;
+    private java.util.concurrent.ScheduledExecutorService purger;
+    // Delta refresh of the open lists from the change watermark
+    private static final long CHANGE_POLL_MS = 5_000;
+    private static final int CHANGE_CHUNK_SIZE = 500;
+    private static final int MAX_MERGED_CHANGES = 5_000;
+    private static final long CHANGE_COMMIT_LAG_MS = 5_000;
+    private final NoteChangePoller changePoller = new NoteChangePoller(CHANGE_CHUNK_SIZE, MAX_MERGED_CHANGES, CHANGE_COMMIT_LAG_MS);
+    private java.util.concurrent.ScheduledExecutorService changePollerExecutor;
+    private java.util.concurrent.ScheduledFuture<?> changePollTask;
+    // Three failed calls in a row open the breaker; reconnect attempts back off from 1 s to 30 s
+    private static final int BREAKER_FAILURE_THRESHOLD = 3;
+    private static final long RECONNECT_INITIAL_DELAY_MS = 1_000;
+    private static final long RECONNECT_MAX_DELAY_MS = 30_000;
+    private static final long HEALTH_CHECK_MS = 500;
+    private java.util.concurrent.ScheduledExecutorService healthExecutor;
+    private java.util.List<Integer> lastDeletedIds = java.util.Collections.emptyList();
+    private javax.swing.Timer undoTimer;
 
     @Override
     public void registerExtenderCallbacks(IBurpExtenderCallbacks callbacks) {
@@ -69,12 +167,74 @@ public class BurpExtender implements IBurpExtender, ITab {
         this.stderr = new PrintWriter(callbacks.getStderr(), true);
 
         callbacks.setExtensionName("BurpNote Database Connector");
-
+        callbacks.registerExtensionStateListener(this::shutdown);
+        startWriteQueue();
+        endpointCapture = new EndpointCapture(callbacks, writeQueue, CAPTURE_FLUSH_INTERVAL_MS);
+        callbacks.registerHttpListener(endpointCapture);
+        endpointCapture.start();
+
+        hostMarker = new HostNoteMarker(hostIndex, domains -> SwingUtilities.invokeLater(() -> showNotesForHosts(domains)));
+        callbacks.registerHttpListener(hostMarker);
+        callbacks.registerContextMenuFactory(hostMarker);
+        hostIndexPoller = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BurpNote-host-index");
+            t.setDaemon(true);
+            return t;
+        });
+        writeQueue.setFlushListener(() -> hostIndexPoller.execute(this::pollHostIndex));
+        purger = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BurpNote-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        changePollerExecutor = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BurpNote-changes");
+            t.setDaemon(true);
+            return t;
+        });
+        healthExecutor = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BurpNote-health");
+            t.setDaemon(true);
+            return t;
+        });
+        healthExecutor.scheduleWithFixedDelay(this::probeDatabase, HEALTH_CHECK_MS, HEALTH_CHECK_MS,
+                java.util.concurrent.TimeUnit.MILLISECONDS);
+        purger.scheduleWithFixedDelay(new TombstonePurger(() -> noteStore, PURGE_AFTER_MS, PURGE_CHUNK_SIZE, PURGE_PAUSE_MS,
+                stderr::println), PURGE_INTERVAL_MS, PURGE_INTERVAL_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+
+        profiles = new ConnectionProfiles(callbacks);
+        credentialCipher = new CredentialCipher(java.nio.file.Paths.get(
+                System.getProperty("user.home"), JOURNAL_DIR, CREDENTIAL_KEY_FILE));
         SwingUtilities.invokeLater(this::initializeUI);
+        // Connect while Burp is still loading; the outcome is shown once the tab exists
+        ConnectionProfile startupProfile = profiles.getLast();
+        if (startupProfile != null && startupProfile.autoConnect) {
+            autoConnect(startupProfile);
+        }
         
         stdout.println("BurpNote extension loaded.");
     }
 
+    private void startWriteQueue() {
+        // Notes are journaled locally first so they survive database outages
+        try {
+            journal = new NoteJournal(java.nio.file.Paths.get(System.getProperty("user.home"), JOURNAL_DIR));
+        } catch (java.io.IOException e) {
+            journal = null;
+            stderr.println("Local journal unavailable, pending notes are kept in memory only: " + e.getMessage());
+        }
+        writeQueue = new NoteWriteQueue(journal, () -> noteStore, WRITE_QUEUE_CAPACITY, WRITE_BATCH_SIZE, WRITE_FLUSH_WINDOW_MS,
+                ex -> SwingUtilities.invokeLater(() -> handleDbException(ex)));
+        try {
+            int recovered = writeQueue.start();
+            if (recovered > 0) {
+                stdout.println("Recovered " + recovered + " unsent note(s) from " + journal.getFile());
+            }
+        } catch (java.io.IOException e) {
+            stderr.println("Failed to recover the local journal: " + e.getMessage());
+        }
+    }
+
     private void initializeUI() {
         mainPanel = new JPanel(new BorderLayout(10, 10));
         mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
@@ -84,10 +244,12 @@ public class BurpExtender implements IBurpExtender, ITab {
         mainPanel.add(topPanel, BorderLayout.NORTH);
 
         // 2. Center Panel: Tabs
-        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane = new JTabbedPane();
         tabbedPane.addTab("Add Note", createAddNotePanel());
         tabbedPane.addTab("Search Notes", createSearchPanel());
         tabbedPane.addTab("All Notes", createAllNotesPanel());
+        tabbedPane.addTab("Endpoints", createEndpointsPanel());
+        tabbedPane.addTab("Metrics", createMetricsPanel());
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
 
         // Register tab
@@ -126,17 +288,91 @@ public class BurpExtender implements IBurpExtender, ITab {
         passField = new JPasswordField(15);
         gbc.gridx = 3; panel.add(passField, gbc);
 
+        gbc.gridx = 4; panel.add(new JLabel("Pool Size:"), gbc);
+        poolSizeField = new JTextField(String.valueOf(DEFAULT_POOL_SIZE), 10);
+        gbc.gridx = 5; panel.add(poolSizeField, gbc);
+
         connectButton = new JButton("Connect");
         connectButton.addActionListener(e -> connectToDatabase());
-        gbc.gridx = 4; gbc.gridwidth = 2;
+        gbc.gridx = 6;
         panel.add(connectButton, gbc);
 
-        // Row 3
-        gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 6;
+        // Storage backend; the embedded file is named after the database
+        storageCombo = new JComboBox<>(new String[]{STORAGE_MYSQL, STORAGE_EMBEDDED, STORAGE_MEMORY});
+        storageCombo.setToolTipText("Embedded file stores notes in ~/" + JOURNAL_DIR + "/<database>" + EMBEDDED_FILE_SUFFIX);
+        storageCombo.addActionListener(e -> {
+            boolean mysql = STORAGE_MYSQL.equals(storageCombo.getSelectedItem());
+            hostField.setEnabled(mysql);
+            portField.setEnabled(mysql);
+            userField.setEnabled(mysql);
+            passField.setEnabled(mysql);
+            poolSizeField.setEnabled(mysql);
+            dbNameField.setEnabled(!STORAGE_MEMORY.equals(storageCombo.getSelectedItem()));
+        });
+        gbc.gridx = 6; gbc.gridy = 0;
+        panel.add(storageCombo, gbc);
+
+        compressCheckBox = new JCheckBox("Compress large notes");
+        compressCheckBox.setToolTipText("Store note bodies of " + NoteCodec.DEFAULT_THRESHOLD_CHARS
+                + "+ characters compressed; existing notes are compressed in the background."
+                + " Content search decompresses them, so it is slower for those notes.");
+        gbc.gridx = 7; gbc.gridy = 0;
+        panel.add(compressCheckBox, gbc);
+
+        // Row 3: saved connection profiles
+        gbc.gridx = 0; gbc.gridy = 2;
+        panel.add(new JLabel("Profile:"), gbc);
+        profileCombo = new JComboBox<>();
+        profileCombo.setEditable(true);
+        profileCombo.setToolTipText("Saved on every successful connect; pick one to fill in its settings");
+        profileCombo.addActionListener(e -> {
+            if (updatingProfiles || !"comboBoxChanged".equals(e.getActionCommand())) {
+                return;
+            }
+            ConnectionProfile profile = profiles.get(selectedProfileName());
+            if (profile != null) {
+                showProfile(profile);
+            }
+        });
+        gbc.gridx = 1; panel.add(profileCombo, gbc);
+
+        JPanel profilePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        JButton saveProfileButton = new JButton("Save Profile");
+        saveProfileButton.addActionListener(e -> saveProfile());
+        profilePanel.add(saveProfileButton);
+        JButton deleteProfileButton = new JButton("Delete Profile");
+        deleteProfileButton.addActionListener(e -> deleteProfile());
+        profilePanel.add(deleteProfileButton);
+        rememberPasswordCheckBox = new JCheckBox("Remember password");
+        rememberPasswordCheckBox.setToolTipText("Stored encrypted in Burp's settings; the key stays in ~/" + JOURNAL_DIR
+                + "/" + CREDENTIAL_KEY_FILE + ", readable by you only");
+        profilePanel.add(rememberPasswordCheckBox);
+        autoConnectCheckBox = new JCheckBox("Connect on startup");
+        autoConnectCheckBox.setToolTipText("Connect to the last used profile in the background when Burp starts");
+        profilePanel.add(autoConnectCheckBox);
+        gbc.gridx = 2; gbc.gridwidth = 6;
+        panel.add(profilePanel, gbc);
+
+        ConnectionProfile lastProfile = profiles.getLast();
+        refreshProfileNames(lastProfile == null ? "" : lastProfile.name);
+        if (lastProfile != null) {
+            showProfile(lastProfile);
+        }
+
+        // Row 4
+        gbc.gridx = 0; gbc.gridy = 3; gbc.gridwidth = 8;
         statusLabel = new JLabel("Status: Not Connected");
         statusLabel.setForeground(Color.GRAY);
         panel.add(statusLabel, gbc);
 
+        // Live database health, with pool usage and connection wait times on hover
+        poolStatusTimer = new javax.swing.Timer(1000, e -> {
+            NoteStore store = noteStore;
+            statusLabel.setToolTipText(store == null ? null : store.describe());
+            showHealth(store);
+        });
+        poolStatusTimer.start();
+
         return panel;
     }
 
@@ -149,6 +385,22 @@ public class BurpExtender implements IBurpExtender, ITab {
         domainPanel.add(new JLabel("Domain:"), BorderLayout.WEST);
         domainInput = new JTextField();
         domainPanel.add(domainInput, BorderLayout.CENTER);
+
+        // Automatic endpoint capture from proxy traffic
+        JPanel capturePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        captureCheckBox = new JCheckBox("Capture API endpoints from proxy traffic");
+        captureCheckBox.addActionListener(e -> endpointCapture.setEnabled(captureCheckBox.isSelected()));
+        capturePanel.add(captureCheckBox);
+        captureInScopeCheckBox = new JCheckBox("In-scope only", true);
+        captureInScopeCheckBox.addActionListener(e -> endpointCapture.setInScopeOnly(captureInScopeCheckBox.isSelected()));
+        capturePanel.add(captureInScopeCheckBox);
+        highlightCheckBox = new JCheckBox("Highlight proxy items for hosts with notes");
+        highlightCheckBox.addActionListener(e -> hostMarker.setHighlightEnabled(highlightCheckBox.isSelected()));
+        capturePanel.add(highlightCheckBox);
+        captureStatsLabel = new JLabel();
+        captureStatsLabel.setForeground(Color.GRAY);
+        capturePanel.add(captureStatsLabel);
+        domainPanel.add(capturePanel, BorderLayout.SOUTH);
         panel.add(domainPanel, BorderLayout.NORTH);
 
         // Content Input
@@ -161,10 +413,22 @@ public class BurpExtender implements IBurpExtender, ITab {
         panel.add(contentPanel, BorderLayout.CENTER);
 
         // Insert Button
+        JPanel insertPanel = new JPanel(new BorderLayout(5, 5));
         insertButton = new JButton("Insert into Database");
-        insertButton.setEnabled(false);
         insertButton.addActionListener(e -> insertContent());
-        panel.add(insertButton, BorderLayout.SOUTH);
+        insertPanel.add(insertButton, BorderLayout.CENTER);
+
+        // Live write-behind progress instead of a blocking confirmation dialog
+        writeQueueLabel = new JLabel();
+        insertPanel.add(writeQueueLabel, BorderLayout.EAST);
+        writeQueueTimer = new javax.swing.Timer(250, e -> {
+            long rejected = writeQueue.getRejectedCount();
+            writeQueueLabel.setText("Pending: " + writeQueue.getPendingCount() + " / Flushed: " + writeQueue.getFlushedCount()
+                    + (rejected > 0 ? " / Rejected: " + rejected : ""));
+            captureStatsLabel.setText(endpointCapture.isEnabled() ? endpointCapture.describe() : "");
+        });
+        writeQueueTimer.start();
+        panel.add(insertPanel, BorderLayout.SOUTH);
 
         return panel;
     }
@@ -177,15 +441,43 @@ public class BurpExtender implements IBurpExtender, ITab {
         JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         controlsPanel.add(new JLabel("Domain:"));
         searchDomainInput = new JTextField(20);
+        searchDomainInput.addActionListener(e -> searchContent());
         controlsPanel.add(searchDomainInput);
 
+        // Search as you type, once typing pauses
+        searchDebounceTimer = new javax.swing.Timer(SEARCH_DEBOUNCE_MS, e -> searchAsYouType());
+        searchDebounceTimer.setRepeats(false);
+        searchDomainInput.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                searchDebounceTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                searchDebounceTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+            }
+        });
+
         ButtonGroup matchGroup = new ButtonGroup();
         exactMatchRadio = new JRadioButton("Exact Match");
         fuzzyMatchRadio = new JRadioButton("Fuzzy Match", true);
+        fuzzyMatchRadio.setToolTipText("Substring match, best matches first; use *.example.com to match subdomains");
+        contentMatchRadio = new JRadioButton("Content");
+        contentMatchRadio.setToolTipText("Notes containing every term, e.g. /api/v2/users or \"GET /admin\"");
         matchGroup.add(exactMatchRadio);
         matchGroup.add(fuzzyMatchRadio);
+        matchGroup.add(contentMatchRadio);
         controlsPanel.add(exactMatchRadio);
         controlsPanel.add(fuzzyMatchRadio);
+        controlsPanel.add(contentMatchRadio);
+        exactMatchRadio.addActionListener(e -> searchDebounceTimer.restart());
+        fuzzyMatchRadio.addActionListener(e -> searchDebounceTimer.restart());
+        contentMatchRadio.addActionListener(e -> searchDebounceTimer.restart());
 
         searchButton = new JButton("Search");
         searchButton.addActionListener(e -> searchContent());
@@ -195,6 +487,11 @@ public class BurpExtender implements IBurpExtender, ITab {
         deleteButton.setEnabled(false);
         deleteButton.addActionListener(e -> deleteSelectedContent());
         controlsPanel.add(deleteButton);
+
+        undoDeleteButton = new JButton("Undo Delete");
+        undoDeleteButton.setEnabled(false);
+        undoDeleteButton.addActionListener(e -> undoDelete());
+        controlsPanel.add(undoDeleteButton);
         
         panel.add(controlsPanel, BorderLayout.NORTH);
 
@@ -202,13 +499,7 @@ public class BurpExtender implements IBurpExtender, ITab {
         JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
         
         // 1. Master: Results Table
-        String[] columnNames = {"ID", "Domain", "Content (Preview)", "Time"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        tableModel = new NoteRowsTableModel();
         resultsTable = new JTable(tableModel);
         resultsTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         
@@ -217,14 +508,11 @@ public class BurpExtender implements IBurpExtender, ITab {
             if (!e.getValueIsAdjusting()) {
                 int viewRow = resultsTable.getSelectedRow();
                 if (viewRow >= 0) {
-                    int modelRow = resultsTable.convertRowIndexToModel(viewRow);
-                    String content = (String) tableModel.getValueAt(modelRow, 2); // Col 2 is Content
-                    detailArea.setText(content);
-                    detailArea.setCaretPosition(0); // Scroll to top
+                    showSelectedNote(resultsTable, tableModel::getIdAt, detailArea);
                     deleteButton.setEnabled(true); // Enable delete button
                 } else {
                     deleteButton.setEnabled(false); // Disable if no selection
-                    detailArea.setText("");
+                    detailArea.clear();
                 }
             }
         });
@@ -234,14 +522,8 @@ public class BurpExtender implements IBurpExtender, ITab {
         splitPane.setTopComponent(tableScrollPane);
 
         // 2. Detail: Content Area
-        detailArea = new JTextArea();
-        detailArea.setEditable(false);
-        detailArea.setLineWrap(false); // No wrap for API lists usually
-        detailArea.setFont(new Font("Monospaced", Font.PLAIN, 12)); // Use monospaced font for code/APIs
-        
-        JScrollPane detailScrollPane = new JScrollPane(detailArea);
-        detailScrollPane.setBorder(BorderFactory.createTitledBorder("Full Content View"));
-        splitPane.setBottomComponent(detailScrollPane);
+        detailArea = new NoteViewer("Full Content View");
+        splitPane.setBottomComponent(detailArea);
 
         splitPane.setResizeWeight(0.5); // 50/50 split
         panel.add(splitPane, BorderLayout.CENTER);
@@ -255,7 +537,7 @@ public class BurpExtender implements IBurpExtender, ITab {
 
         // Controls
         JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        refreshButton = new JButton("Refresh / Load All");
+        refreshButton = new JButton("Refresh");
         refreshButton.addActionListener(e -> loadAllContent());
         controlsPanel.add(refreshButton);
         
@@ -263,36 +545,100 @@ public class BurpExtender implements IBurpExtender, ITab {
         deleteAllButton.setEnabled(false);
         deleteAllButton.addActionListener(e -> deleteAllNotesContent());
         controlsPanel.add(deleteAllButton);
-        
-        panel.add(controlsPanel, BorderLayout.NORTH);
 
-        // Master-Detail View (Split Pane)
-        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
-        
-        // 1. Master: Results Table
-        String[] columnNames = {"ID", "Domain", "Content (Preview)", "Time"};
-        allNotesModel = new DefaultTableModel(columnNames, 0) {
+        allNotesUndoButton = new JButton("Undo Delete");
+        allNotesUndoButton.setEnabled(false);
+        allNotesUndoButton.addActionListener(e -> undoDelete());
+        controlsPanel.add(allNotesUndoButton);
+
+        // Bulk transfer to and from JSONL/CSV files, streamed in the background
+        exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> exportNotes());
+        controlsPanel.add(exportButton);
+
+        importButton = new JButton("Import...");
+        importButton.addActionListener(e -> importNotes());
+        controlsPanel.add(importButton);
+
+        cancelTransferButton = new JButton("Cancel");
+        cancelTransferButton.setEnabled(false);
+        cancelTransferButton.addActionListener(e -> {
+            if (transferWorker != null) {
+                transferWorker.cancel(true);
+            }
+        });
+        controlsPanel.add(cancelTransferButton);
+
+        transferProgress = new JProgressBar(0, 100);
+        transferProgress.setStringPainted(true);
+        transferProgress.setVisible(false);
+        controlsPanel.add(transferProgress);
+
+        // Filters run on the server, like sorting by a column header
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Domain filter:"));
+        allNotesFilterInput = new JTextField(20);
+        allNotesFilterInput.setToolTipText("Substring of the domain; use *.example.com to match subdomains");
+        filterPanel.add(allNotesFilterInput);
+        filterPanel.add(new JLabel("Min length:"));
+        allNotesMinLengthInput = new JTextField(6);
+        filterPanel.add(allNotesMinLengthInput);
+        allNotesFilterTimer = new javax.swing.Timer(SEARCH_DEBOUNCE_MS, e -> filterAllNotes());
+        allNotesFilterTimer.setRepeats(false);
+        javax.swing.event.DocumentListener filterListener = new javax.swing.event.DocumentListener() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                allNotesFilterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                allNotesFilterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
             }
         };
+        allNotesFilterInput.getDocument().addDocumentListener(filterListener);
+        allNotesMinLengthInput.getDocument().addDocumentListener(filterListener);
+        allNotesFilterInput.addActionListener(e -> filterAllNotes());
+        allNotesMinLengthInput.addActionListener(e -> filterAllNotes());
+
+        JPanel northPanel = new JPanel();
+        northPanel.setLayout(new BoxLayout(northPanel, BoxLayout.Y_AXIS));
+        northPanel.add(controlsPanel);
+        northPanel.add(filterPanel);
+        panel.add(northPanel, BorderLayout.NORTH);
+
+        // Master-Detail View (Split Pane)
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
+        
+        // 1. Master: Results Table (pages are fetched lazily while scrolling)
+        allNotesModel = new PagedNotesTableModel(metrics, this::handleDbException);
         allNotesTable = new JTable(allNotesModel);
         allNotesTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        // Header clicks re-sort on the server instead of through a RowSorter
+        allNotesTable.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int viewColumn = allNotesTable.getTableHeader().columnAtPoint(e.getPoint());
+                if (viewColumn >= 0) {
+                    sortAllNotes(allNotesTable.convertColumnIndexToModel(viewColumn));
+                }
+            }
+        });
         
         // Add listener to update detail view
         allNotesTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int viewRow = allNotesTable.getSelectedRow();
                 if (viewRow >= 0) {
-                    int modelRow = allNotesTable.convertRowIndexToModel(viewRow);
-                    String content = (String) allNotesModel.getValueAt(modelRow, 2); // Col 2 is Content
-                    allNotesDetailArea.setText(content);
-                    allNotesDetailArea.setCaretPosition(0); // Scroll to top
+                    showSelectedNote(allNotesTable, allNotesModel::getIdAt, allNotesDetailArea);
                     deleteAllButton.setEnabled(true); // Enable delete button
                 } else {
                     deleteAllButton.setEnabled(false); // Disable if no selection
-                    allNotesDetailArea.setText("");
+                    allNotesDetailArea.clear();
                 }
             }
         });
@@ -302,14 +648,8 @@ public class BurpExtender implements IBurpExtender, ITab {
         splitPane.setTopComponent(tableScrollPane);
 
         // 2. Detail: Content Area
-        allNotesDetailArea = new JTextArea();
-        allNotesDetailArea.setEditable(false);
-        allNotesDetailArea.setLineWrap(false); // No wrap for API lists usually
-        allNotesDetailArea.setFont(new Font("Monospaced", Font.PLAIN, 12)); // Use monospaced font for code/APIs
-        
-        JScrollPane detailScrollPane = new JScrollPane(allNotesDetailArea);
-        detailScrollPane.setBorder(BorderFactory.createTitledBorder("Full Content View"));
-        splitPane.setBottomComponent(detailScrollPane);
+        allNotesDetailArea = new NoteViewer("Full Content View");
+        splitPane.setBottomComponent(allNotesDetailArea);
 
         splitPane.setResizeWeight(0.5); // 50/50 split
         panel.add(splitPane, BorderLayout.CENTER);
@@ -317,116 +657,539 @@ public class BurpExtender implements IBurpExtender, ITab {
         return panel;
     }
 
-    private void connectToDatabase() {
-        String host = hostField.getText().trim();
-        String port = portField.getText().trim();
-        String dbName = dbNameField.getText().trim();
-        String user = userField.getText().trim();
-        String pass = new String(passField.getPassword());
+    private JPanel createEndpointsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Controls
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        String operandTip = "A note (#123), a domain, or *.example.com for its subdomains";
+        controlsPanel.add(new JLabel("A:"));
+        endpointOperandA = new JTextField(18);
+        endpointOperandA.setToolTipText(operandTip);
+        endpointOperandA.addActionListener(e -> runEndpointQuery());
+        controlsPanel.add(endpointOperandA);
+
+        endpointOperation = new JComboBox<>(EndpointQuery.Operation.values());
+        endpointOperation.setSelectedItem(EndpointQuery.Operation.DIFF);
+        endpointOperation.addActionListener(e ->
+                endpointOperandB.setEnabled(endpointOperation.getSelectedItem() != EndpointQuery.Operation.COUNT));
+        controlsPanel.add(endpointOperation);
+
+        controlsPanel.add(new JLabel("B:"));
+        endpointOperandB = new JTextField(18);
+        endpointOperandB.setToolTipText(operandTip);
+        endpointOperandB.addActionListener(e -> runEndpointQuery());
+        controlsPanel.add(endpointOperandB);
+
+        endpointRunButton = new JButton("Run");
+        endpointRunButton.addActionListener(e -> runEndpointQuery());
+        controlsPanel.add(endpointRunButton);
+
+        endpointStatusLabel = new JLabel();
+        endpointStatusLabel.setForeground(Color.GRAY);
+        controlsPanel.add(endpointStatusLabel);
+        panel.add(controlsPanel, BorderLayout.NORTH);
+
+        endpointModel = new DefaultTableModel(EndpointQuery.SET_COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable endpointTable = new JTable(endpointModel);
+        JScrollPane scrollPane = new JScrollPane(endpointTable);
+        scrollPane.setBorder(BorderFactory.createTitledBorder("Endpoints"));
+        panel.add(scrollPane, BorderLayout.CENTER);
 
-        if (host.isEmpty() || port.isEmpty() || dbName.isEmpty()) {
-            JOptionPane.showMessageDialog(mainPanel, "Please fill in all connection details.", "Connection Error", JOptionPane.ERROR_MESSAGE);
+        return panel;
+    }
+
+    private void runEndpointQuery() {
+        NoteStore store = noteStore;
+        if (store == null) {
+            JOptionPane.showMessageDialog(mainPanel, "Not connected to database.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
+        EndpointQuery query;
+        try {
+            EndpointQuery.Operation operation = (EndpointQuery.Operation) endpointOperation.getSelectedItem();
+            String b = endpointOperandB.getText().trim();
+            query = new EndpointQuery(operation, EndpointQuery.Operand.parse(endpointOperandA.getText()),
+                    b.isEmpty() || operation == EndpointQuery.Operation.COUNT ? null : EndpointQuery.Operand.parse(b));
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(mainPanel, ex.getMessage(), "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        endpointRunButton.setEnabled(false);
+        endpointStatusLabel.setText("Running...");
+        new SwingWorker<java.util.List<Object[]>, Void>() {
+            private long elapsedMillis;
+
+            @Override
+            protected java.util.List<Object[]> doInBackground() throws Exception {
+                long start = System.nanoTime();
+                java.util.List<Object[]> rows = store.endpoints(query);
+                elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                return rows;
+            }
 
-        // 1. Connect to server without DB to ensure DB exists
-        String serverUrl = String.format("jdbc:mysql://%s:%s/?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC", host, port);
-        // 2. Connect to specific DB
-        String dbUrl = String.format("jdbc:mysql://%s:%s/%s?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC", host, port, dbName);
+            @Override
+            protected void done() {
+                endpointRunButton.setEnabled(true);
+                try {
+                    java.util.List<Object[]> rows = get();
+                    long start = System.nanoTime();
+                    endpointModel.setDataVector(new Object[0][], query.columnNames());
+                    if (!rows.isEmpty()) {
+                        appendRows(endpointModel, rows);
+                    }
+                    metrics.recordEdtSince(MeteredNoteStore.ENDPOINTS, start);
+                    endpointStatusLabel.setText(rows.size() + (rows.size() >= EndpointQuery.RESULT_LIMIT ? "+" : "")
+                            + " row(s) in " + elapsedMillis + " ms");
+                    stdout.println("Endpoint query " + query + " returned " + rows.size() + " rows in " + elapsedMillis + " ms.");
+                } catch (Exception ex) {
+                    endpointStatusLabel.setText("");
+                    handleDbException(ex);
+                }
+            }
+        }.execute();
+    }
+
+    private JPanel createMetricsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Controls
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton exportButton = new JButton("Export CSV...");
+        exportButton.addActionListener(e -> exportMetrics());
+        controlsPanel.add(exportButton);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refreshMetrics();
+        });
+        controlsPanel.add(resetButton);
+
+        metricsStoreLabel = new JLabel();
+        metricsStoreLabel.setForeground(Color.GRAY);
+        controlsPanel.add(metricsStoreLabel);
+        panel.add(controlsPanel, BorderLayout.NORTH);
+
+        // Storage call latency next to the time the EDT spent showing the result
+        metricsModel = new DefaultTableModel(OperationMetrics.COLUMN_NAMES, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable metricsTable = new JTable(metricsModel);
+        JScrollPane scrollPane = new JScrollPane(metricsTable);
+        scrollPane.setBorder(BorderFactory.createTitledBorder("Operation Latency"));
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        // Only refresh while the tab is visible
+        metricsTimer = new javax.swing.Timer(METRICS_REFRESH_MS, e -> {
+            if (panel.isShowing()) {
+                refreshMetrics();
+            }
+        });
+        metricsTimer.start();
+
+        return panel;
+    }
+
+    private void refreshMetrics() {
+        metricsModel.setRowCount(0);
+        for (Object[] row : metrics.snapshot()) {
+            metricsModel.addRow(row);
+        }
+        NoteStore store = noteStore;
+        metricsStoreLabel.setText((store == null ? "Not connected" : store.describe())
+                + " | Write queue pending: " + writeQueue.getPendingCount() + ", flushed: " + writeQueue.getFlushedCount());
+    }
+
+    private void exportMetrics() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("burpnote-metrics.csv"));
+        if (chooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.io.File file = chooser.getSelectedFile();
+        try (java.io.Writer out = new java.io.OutputStreamWriter(new java.io.FileOutputStream(file), java.nio.charset.StandardCharsets.UTF_8)) {
+            metrics.writeCsv(out);
+            stdout.println("Exported metrics to " + file);
+        } catch (java.io.IOException ex) {
+            JOptionPane.showMessageDialog(mainPanel, "Failed to export metrics:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            stderr.println("Metrics export error: " + ex.getMessage());
+        }
+    }
+
+    private void connectToDatabase() {
+        String password = new String(passField.getPassword());
+        ConnectionProfile profile = profileFromFields(password);
+        NoteStore store;
+        try {
+            store = createStore(profile, password);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(mainPanel, ex.getMessage(), "Connection Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        connect(store, profile, false);
+    }
+
+    // Runs while the extension loads, before the UI exists; problems are only logged
+    private void autoConnect(ConnectionProfile profile) {
+        String password = "";
+        if (profile.encryptedPassword != null) {
+            try {
+                password = credentialCipher.decrypt(profile.encryptedPassword, profile.credentialContext());
+            } catch (java.security.GeneralSecurityException | java.io.IOException ex) {
+                stderr.println("Not connecting to profile " + profile.name + " on startup; its saved password cannot be read: " + ex.getMessage());
+                return;
+            }
+        }
+        try {
+            connect(createStore(profile, password), profile, true);
+        } catch (IllegalArgumentException ex) {
+            stderr.println("Not connecting to profile " + profile.name + " on startup: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * The store a profile describes; fails with a message for the user if the profile is incomplete.
+     */
+    private NoteStore createStore(ConnectionProfile profile, String password) {
+        int compressionThreshold = profile.compress ? NoteCodec.DEFAULT_THRESHOLD_CHARS : 0;
+        if (STORAGE_MEMORY.equals(profile.storage)) {
+            return new InMemoryNoteStore();
+        }
+        if (STORAGE_EMBEDDED.equals(profile.storage)) {
+            if (profile.database.isEmpty()) {
+                throw new IllegalArgumentException("Please enter a database name for the embedded file.");
+            }
+            EmbeddedNoteStore embedded = new EmbeddedNoteStore(java.nio.file.Paths.get(
+                    System.getProperty("user.home"), JOURNAL_DIR, profile.database + EMBEDDED_FILE_SUFFIX));
+            embedded.setCompressionThreshold(compressionThreshold);
+            return embedded;
+        }
+        if (profile.host.isEmpty() || profile.port.isEmpty() || profile.database.isEmpty()) {
+            throw new IllegalArgumentException("Please fill in all connection details.");
+        }
+        if (profile.poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be a positive number.");
+        }
+        MySqlNoteStore mysql = new MySqlNoteStore(profile.host, profile.port, profile.database, profile.user, password,
+                profile.poolSize, stdout::println);
+        mysql.setCompressionThreshold(compressionThreshold);
+        return mysql;
+    }
+
+    private void connect(NoteStore store, ConnectionProfile profile, boolean onStartup) {
+        String target;
+        if (store instanceof MySqlNoteStore) {
+            target = ((MySqlNoteStore) store).getUrl() + " (pool size " + profile.poolSize + ")";
+        } else if (store instanceof EmbeddedNoteStore) {
+            target = ((EmbeddedNoteStore) store).getFile().toString();
+        } else {
+            target = "in-memory store";
+        }
+        NoteStore guarded = new CircuitBreakerNoteStore(new MeteredNoteStore(store, metrics), new CircuitBreaker(
+                BREAKER_FAILURE_THRESHOLD, RECONNECT_INITIAL_DELAY_MS, RECONNECT_MAX_DELAY_MS, stderr::println));
+        // The list is read ahead in the order and filter it shows; on startup that is the default
+        NoteListQuery listQuery = onStartup ? NoteListQuery.NEWEST_FIRST : allNotesModel.getQuery();
+        SwingUtilities.invokeLater(() -> {
+            statusLabel.setText("Connecting to " + target + "...");
+            statusLabel.setForeground(Color.GRAY);
+        });
 
         new SwingWorker<Void, Void>() {
+            private java.util.List<String> appliedChanges = java.util.Collections.emptyList();
+            private int listCount;
+            private java.util.List<Object[]> firstPage;
+
             @Override
             protected Void doInBackground() throws Exception {
-                if (dbConnection != null && !dbConnection.isClosed()) {
-                    dbConnection.close();
-                }
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                
-                // Step 1: Create Database if not exists
-                try (Connection serverConn = DriverManager.getConnection(serverUrl, user, pass);
-                     Statement stmt = serverConn.createStatement()) {
-                    stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS " + dbName + " CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+                NoteStore oldStore = noteStore;
+                noteStore = null;
+                if (oldStore != null) {
+                    oldStore.close();
                 }
-                
-                // Step 2: Connect to the database
-                dbConnection = DriverManager.getConnection(dbUrl, user, pass);
-                
-                // Step 3: Create Table if not exists
-                String createTableSQL = "CREATE TABLE IF NOT EXISTS " + DEFAULT_TABLE + " (" +
-                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "domain VARCHAR(255), " +
-                        "content TEXT, " +
-                        "create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                        ") CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci";
-                
-                try (Statement stmt = dbConnection.createStatement()) {
-                    stmt.executeUpdate(createTableSQL);
+                appliedChanges = guarded.open();
+                noteStore = guarded;
+                // Warm the host lookup data and the first page of the list in parallel,
+                // so both are ready by the time the connection is shown
+                startHostIndex();
+                try {
+                    listCount = guarded.count(listQuery);
+                    firstPage = guarded.page(listQuery, null, 0, PagedNotesTableModel.PAGE_SIZE);
+                } catch (SQLException e) {
+                    stderr.println("Could not preload the note list: " + e.getMessage());
                 }
-                
                 return null;
             }
 
             @Override
             protected void done() {
+                long start = System.nanoTime();
                 try {
                     get();
                     statusLabel.setText("Database connected successfully");
                     statusLabel.setForeground(new Color(0, 128, 0));
-                    insertButton.setEnabled(true);
-                    stdout.println("Database connected: " + dbUrl);
+                    stdout.println("Database connected: " + target + (onStartup ? " (profile " + profile.name + ")" : ""));
+                    for (String change : appliedChanges) {
+                        stdout.println("Applied " + change);
+                    }
+                    // Ids from the previous store mean nothing in this one
+                    contentCache.clear();
+                    setUndoAvailable(java.util.Collections.emptyList());
+                    startChangePolling();
+                    if (firstPage != null && listQuery.equals(allNotesModel.getQuery())) {
+                        allNotesTable.clearSelection();
+                        allNotesModel.preload(guarded, listQuery, listCount, firstPage);
+                        stdout.println("Loaded index for " + listCount + " records.");
+                    }
+                    rememberProfile(profile);
+                    metrics.recordEdtSince(MeteredNoteStore.OPEN, start);
                 } catch (Exception ex) {
                     statusLabel.setText("Connection failed: " + ex.getMessage());
                     statusLabel.setForeground(Color.RED);
-                    insertButton.setEnabled(false);
                     stderr.println("Database connection error: " + ex.getMessage());
-                    JOptionPane.showMessageDialog(mainPanel, "Connection Failed:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    if (!onStartup) {
+                        JOptionPane.showMessageDialog(mainPanel, "Connection Failed:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
                 }
             }
         }.execute();
     }
 
-    private void insertContent() {
-        String domain = domainInput.getText().trim();
-        String content = contentArea.getText().trim();
+    /**
+     * The connection panel's settings as a profile, named after the profile
+     * field or else after the connection; the password is only included,
+     * encrypted, if it is to be remembered.
+     */
+    private ConnectionProfile profileFromFields(String password) {
+        String storage = (String) storageCombo.getSelectedItem();
+        String host = hostField.getText().trim();
+        String dbName = dbNameField.getText().trim();
+        String user = userField.getText().trim();
+        int poolSize;
+        try {
+            poolSize = Integer.parseInt(poolSizeField.getText().trim());
+        } catch (NumberFormatException ex) {
+            poolSize = 0;
+        }
+        String name = selectedProfileName();
+        if (name.isEmpty()) {
+            name = STORAGE_MYSQL.equals(storage) ? user + "@" + host + "/" + dbName
+                    : STORAGE_MEMORY.equals(storage) ? storage : storage + " " + dbName;
+        }
+        ConnectionProfile profile = new ConnectionProfile(name, storage, host, portField.getText().trim(), dbName, user,
+                poolSize, compressCheckBox.isSelected(), autoConnectCheckBox.isSelected(), null);
+        if (!rememberPasswordCheckBox.isSelected() || !STORAGE_MYSQL.equals(storage) || password.isEmpty()) {
+            return profile;
+        }
+        try {
+            return profile.withEncryptedPassword(credentialCipher.encrypt(password, profile.credentialContext()));
+        } catch (java.security.GeneralSecurityException | java.io.IOException ex) {
+            stderr.println("The password is not remembered; it could not be encrypted: " + ex.getMessage());
+            return profile;
+        }
+    }
 
-        if (content.isEmpty()) {
-            JOptionPane.showMessageDialog(mainPanel, "Content cannot be empty.", "Warning", JOptionPane.WARNING_MESSAGE);
+    private String selectedProfileName() {
+        Object item = profileCombo.getEditor().getItem();
+        return item == null ? "" : item.toString().trim().replace('\n', ' ');
+    }
+
+    private void showProfile(ConnectionProfile profile) {
+        storageCombo.setSelectedItem(profile.storage);
+        hostField.setText(profile.host);
+        portField.setText(profile.port);
+        dbNameField.setText(profile.database);
+        userField.setText(profile.user);
+        poolSizeField.setText(profile.poolSize > 0 ? String.valueOf(profile.poolSize) : String.valueOf(DEFAULT_POOL_SIZE));
+        compressCheckBox.setSelected(profile.compress);
+        autoConnectCheckBox.setSelected(profile.autoConnect);
+        rememberPasswordCheckBox.setSelected(profile.encryptedPassword != null);
+        passField.setText("");
+        if (profile.encryptedPassword != null) {
+            try {
+                passField.setText(credentialCipher.decrypt(profile.encryptedPassword, profile.credentialContext()));
+            } catch (java.security.GeneralSecurityException | java.io.IOException ex) {
+                stderr.println("The saved password of profile " + profile.name + " cannot be read: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void refreshProfileNames(String selected) {
+        updatingProfiles = true;
+        try {
+            profileCombo.removeAllItems();
+            for (String name : profiles.names()) {
+                profileCombo.addItem(name);
+            }
+            profileCombo.setSelectedItem(selected);
+        } finally {
+            updatingProfiles = false;
+        }
+    }
+
+    // Saved on every successful connect, and connected to on the next start if it asks for that
+    private void rememberProfile(ConnectionProfile profile) {
+        profiles.save(profile);
+        profiles.setLast(profile.name);
+        refreshProfileNames(profile.name);
+    }
+
+    private void saveProfile() {
+        ConnectionProfile profile = profileFromFields(new String(passField.getPassword()));
+        rememberProfile(profile);
+        stdout.println("Saved connection profile " + profile.name + (profile.encryptedPassword == null ? ""
+                : " with its password encrypted by the key in " + credentialCipher.getKeyFile()) + ".");
+    }
+
+    private void deleteProfile() {
+        String name = selectedProfileName();
+        if (profiles.get(name) == null) {
             return;
         }
-        
-        // Assuming domain can be empty if user wants, but typically shouldn't for this use case
-        // Let's allow empty domain but maybe warn? Or just proceed. 
+        int confirm = JOptionPane.showConfirmDialog(mainPanel, "Delete connection profile \"" + name + "\"?",
+                "Delete Profile", JOptionPane.YES_NO_OPTION);
+        if (confirm == JOptionPane.YES_OPTION) {
+            profiles.delete(name);
+            refreshProfileNames("");
+        }
+    }
+
+    private void startHostIndex() {
+        if (hostIndexTask != null) {
+            hostIndexTask.cancel(false);
+        }
+        hostIndexPolls = 0;
+        hostIndexTask = hostIndexPoller.scheduleWithFixedDelay(this::pollHostIndex, 0, HOST_INDEX_POLL_MS,
+                java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    private void startChangePolling() {
+        if (changePollTask != null) {
+            changePollTask.cancel(false);
+        }
+        changePollTask = changePollerExecutor.scheduleWithFixedDelay(this::pollChanges, 0, CHANGE_POLL_MS,
+                java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the health thread; reconnects with backoff while the database is unreachable
+    private void probeDatabase() {
+        NoteStore store = noteStore;
+        if (store instanceof CircuitBreakerNoteStore) {
+            ((CircuitBreakerNoteStore) store).probeIfDue();
+        }
+    }
+
+    private void showHealth(NoteStore store) {
+        if (!(store instanceof CircuitBreakerNoteStore) || store != noteStore) {
+            return;
+        }
+        CircuitBreaker breaker = ((CircuitBreakerNoteStore) store).getBreaker();
+        statusLabel.setText(breaker.describe());
+        if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+            statusLabel.setForeground(Color.RED);
+        } else {
+            statusLabel.setForeground(breaker.getConsecutiveFailures() == 0 ? new Color(0, 128, 0) : new Color(200, 120, 0));
+        }
+    }
+
+    // Runs on the change poller thread; merges what teammates changed since the last poll
+    private void pollChanges() {
+        NoteStore store = noteStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            NoteChangePoller.Delta delta = changePoller.poll(store);
+            if (!delta.isEmpty()) {
+                SwingUtilities.invokeLater(() -> applyChanges(store, delta));
+            }
+        } catch (SQLException e) {
+            stderr.println("Change poll failed: " + e.getMessage());
+        }
+    }
+
+    private void applyChanges(NoteStore store, NoteChangePoller.Delta delta) {
+        if (store != noteStore) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (delta.reloadAll) {
+            stdout.println("Many notes changed at once; reloading the list.");
+            contentCache.clear();
+            allNotesModel.reload(store, count -> stdout.println("Loaded index for " + count + " records."));
+        } else {
+            java.util.Set<Integer> deleted = new java.util.HashSet<>();
+            java.util.Map<Integer, Object[]> changed = new java.util.HashMap<>();
+            for (NoteStore.NoteChange change : delta.changes) {
+                if (change.deleted) {
+                    deleted.add(change.id());
+                } else {
+                    changed.put(change.id(), change.row);
+                }
+            }
+            contentCache.invalidate(deleted);
+            allNotesModel.applyChanges(store, delta.changes, count -> { });
+            tableModel.merge(deleted, changed);
+        }
+        metrics.recordEdtSince(MeteredNoteStore.CHANGES, start);
+    }
 
-        if (dbConnection == null) {
+    // Runs on the host index thread only
+    private void pollHostIndex() {
+        NoteStore store = noteStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            if (hostIndexPolls++ % HOST_INDEX_RELOAD_POLLS == 0) {
+                hostIndex.load(store);
+            } else {
+                hostIndex.pollChanges(store);
+            }
+        } catch (SQLException e) {
+            stderr.println("Host index refresh failed: " + e.getMessage());
+        }
+    }
+
+    private void showNotesForHosts(java.util.Collection<String> domains) {
+        if (domains.isEmpty()) {
+            JOptionPane.showMessageDialog(mainPanel, "None of the selected hosts have notes.", "BurpNote", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        NoteStore store = noteStore;
+        if (store == null) {
             JOptionPane.showMessageDialog(mainPanel, "Not connected to database.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        new SwingWorker<Boolean, Void>() {
+        new SwingWorker<java.util.List<Object[]>, Void>() {
             @Override
-            protected Boolean doInBackground() throws Exception {
-                // Ensure table exists or columns are correct - we assume user has updated schema
-                String sql = "INSERT INTO " + DEFAULT_TABLE + " (domain, content) VALUES (?, ?)";
-                try (PreparedStatement pstmt = dbConnection.prepareStatement(sql)) {
-                    pstmt.setString(1, domain);
-                    pstmt.setString(2, content);
-                    int affectedRows = pstmt.executeUpdate();
-                    return affectedRows > 0;
-                }
+            protected java.util.List<Object[]> doInBackground() throws Exception {
+                // One batched lookup for every selected host
+                return store.findByDomains(domains);
             }
 
             @Override
             protected void done() {
+                long start = System.nanoTime();
                 try {
-                    boolean success = get();
-                    if (success) {
-                        JOptionPane.showMessageDialog(mainPanel, "Data inserted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                        contentArea.setText("");
-                        domainInput.setText("");
-                        stdout.println("Inserted content for domain: " + domain);
-                    } else {
-                        JOptionPane.showMessageDialog(mainPanel, "Insert failed: No rows affected.", "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    java.util.List<Object[]> result = get();
+                    cancelSearch();
+                    tableModel.setRows(result); // One table event for the whole result
+                    tabbedPane.setSelectedIndex(1); // Search Notes
+                    stdout.println("Found " + result.size() + " records for " + domains.size() + " domain(s).");
+                    metrics.recordEdtSince(MeteredNoteStore.FIND_BY_DOMAINS, start);
                 } catch (Exception ex) {
                     handleDbException(ex);
                 }
@@ -434,66 +1197,142 @@ public class BurpExtender implements IBurpExtender, ITab {
         }.execute();
     }
 
+    private void insertContent() {
+        String domain = domainInput.getText().trim();
+        String content = contentArea.getText().trim();
+
+        if (content.isEmpty()) {
+            JOptionPane.showMessageDialog(mainPanel, "Content cannot be empty.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        // Assuming domain can be empty if user wants, but typically shouldn't for this use case
+        // Let's allow empty domain but maybe warn? Or just proceed. 
+
+        // Journaled locally and written in the background, even while disconnected
+        long start = System.nanoTime();
+        try {
+            if (!writeQueue.offer(domain, content)) {
+                JOptionPane.showMessageDialog(mainPanel, "Write queue is full (" + writeQueue.getPendingCount() + " notes pending). Please try again shortly.", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+        } catch (java.io.IOException ex) {
+            JOptionPane.showMessageDialog(mainPanel, "Failed to save note to the local journal:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            stderr.println("Journal error: " + ex.getMessage());
+            return;
+        }
+        contentArea.setText("");
+        domainInput.setText("");
+        stdout.println("Queued content for domain: " + domain);
+        metrics.recordEdtSince(MeteredNoteStore.INSERT, start);
+    }
+
     private void searchContent() {
+        searchDebounceTimer.stop();
         String domain = searchDomainInput.getText().trim();
-        boolean isExact = exactMatchRadio.isSelected();
+        boolean isContent = contentMatchRadio.isSelected();
 
         if (domain.isEmpty()) {
-            JOptionPane.showMessageDialog(mainPanel, "Please enter a domain to search.", "Warning", JOptionPane.WARNING_MESSAGE);
+            JOptionPane.showMessageDialog(mainPanel, isContent ? "Please enter text to search for." : "Please enter a domain to search.", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        if (dbConnection == null) {
+        NoteStore store = noteStore;
+        if (store == null) {
             JOptionPane.showMessageDialog(mainPanel, "Not connected to database.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
+        runSearch(store, domain);
+    }
 
-        new SwingWorker<Vector<Vector<Object>>, Void>() {
-            @Override
-            protected Vector<Vector<Object>> doInBackground() throws Exception {
-                String sql;
-                if (isExact) {
-                    sql = "SELECT id, domain, content, create_time FROM " + DEFAULT_TABLE + " WHERE domain = ?";
-                } else {
-                    sql = "SELECT id, domain, content, create_time FROM " + DEFAULT_TABLE + " WHERE domain LIKE ?";
-                }
+    /**
+     * Debounced search from the input field; quietly does nothing without a term or a connection.
+     */
+    private void searchAsYouType() {
+        String domain = searchDomainInput.getText().trim();
+        NoteStore store = noteStore;
+        if (domain.isEmpty()) {
+            cancelSearch();
+            tableModel.clear();
+            return;
+        }
+        if (store != null) {
+            runSearch(store, domain);
+        }
+    }
 
-                Vector<Vector<Object>> data = new Vector<>();
-                try (PreparedStatement pstmt = dbConnection.prepareStatement(sql)) {
-                    if (isExact) {
-                        pstmt.setString(1, domain);
-                    } else {
-                        pstmt.setString(1, "%" + domain + "%");
-                    }
+    /**
+     * Cancels the running search, if any, so its rows never reach the table.
+     */
+    private void cancelSearch() {
+        if (searchCanceller != null) {
+            // Cancelling a MySQL statement opens a connection of its own; keep that off the EDT
+            java.util.concurrent.CompletableFuture.runAsync(searchCanceller::cancel);
+        }
+        searchWorker = null;
+        searchCanceller = null;
+    }
 
-                    try (ResultSet rs = pstmt.executeQuery()) {
-                        while (rs.next()) {
-                            Vector<Object> row = new Vector<>();
-                            row.add(rs.getInt("id"));
-                            row.add(rs.getString("domain"));
-                            row.add(rs.getString("content"));
-                            row.add(rs.getTimestamp("create_time"));
-                            data.add(row);
-                        }
-                    }
+    private void runSearch(NoteStore store, String domain) {
+        NoteStore.SearchMode mode = contentMatchRadio.isSelected() ? NoteStore.SearchMode.CONTENT
+                : exactMatchRadio.isSelected() ? NoteStore.SearchMode.EXACT : NoteStore.SearchMode.FUZZY;
+        cancelSearch();
+        tableModel.clear(); // Clear existing
+        QueryCanceller canceller = new QueryCanceller();
+        searchCanceller = canceller;
+
+        // Rows are published as the store produces them; Swing coalesces them into chunks
+        searchWorker = new SwingWorker<String, Object[]>() {
+            private long elapsedMillis;
+            private int found;
+
+            @Override
+            protected String doInBackground() throws Exception {
+                long start = System.nanoTime();
+                String strategy = store.search(mode, domain, canceller, row -> publish(row));
+                elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                return strategy;
+            }
+
+            @Override
+            protected void process(java.util.List<Object[]> rows) {
+                if (searchWorker != this) {
+                    return; // Superseded by a newer search
                 }
-                return data;
+                long start = System.nanoTime();
+                tableModel.appendRows(rows);
+                found += rows.size();
+                metrics.recordEdtSince(MeteredNoteStore.SEARCH, start);
             }
 
             @Override
             protected void done() {
+                if (searchWorker != this) {
+                    return;
+                }
+                searchWorker = null;
+                searchCanceller = null;
                 try {
-                    Vector<Vector<Object>> result = get();
-                    tableModel.setRowCount(0); // Clear existing
-                    for (Vector<Object> row : result) {
-                        tableModel.addRow(row);
-                    }
-                    stdout.println("Search completed. Found " + result.size() + " records.");
+                    String strategy = get();
+                    stdout.println("Search completed. Found " + found + " records in " + elapsedMillis + " ms (" + strategy + ").");
                 } catch (Exception ex) {
                     handleDbException(ex);
                 }
             }
-        }.execute();
+        };
+        searchWorker.execute();
+    }
+
+    /**
+     * Appends rows with a single table event instead of one per row.
+     */
+    @SuppressWarnings("unchecked")
+    private static void appendRows(DefaultTableModel model, java.util.List<Object[]> rows) {
+        int first = model.getRowCount();
+        for (Object[] row : rows) {
+            model.getDataVector().add(new java.util.Vector<>(java.util.Arrays.asList(row)));
+        }
+        model.fireTableRowsInserted(first, model.getRowCount() - 1);
     }
 
     private void deleteSelectedContent() {
@@ -512,49 +1351,31 @@ public class BurpExtender implements IBurpExtender, ITab {
         }
 
         java.util.List<Integer> ids = new java.util.ArrayList<>();
-        java.util.List<Integer> modelRows = new java.util.ArrayList<>();
         
         for (int viewRow : viewRows) {
-            int modelRow = resultsTable.convertRowIndexToModel(viewRow);
-            modelRows.add(modelRow);
-            ids.add((Integer) tableModel.getValueAt(modelRow, 0));
+            ids.add(tableModel.getIdAt(resultsTable.convertRowIndexToModel(viewRow)));
         }
-        
-        // Sort model rows in descending order for safe removal
-        java.util.Collections.sort(modelRows, java.util.Collections.reverseOrder());
 
         new SwingWorker<Boolean, Void>() {
             @Override
             protected Boolean doInBackground() throws Exception {
                 if (ids.isEmpty()) return false;
-                
-                StringBuilder sqlBuilder = new StringBuilder("DELETE FROM " + DEFAULT_TABLE + " WHERE id IN (");
-                for (int i = 0; i < ids.size(); i++) {
-                    sqlBuilder.append(i == 0 ? "?" : ", ?");
-                }
-                sqlBuilder.append(")");
-                
-                try (PreparedStatement pstmt = dbConnection.prepareStatement(sqlBuilder.toString())) {
-                    for (int i = 0; i < ids.size(); i++) {
-                        pstmt.setInt(i + 1, ids.get(i));
-                    }
-                    int affectedRows = pstmt.executeUpdate();
-                    return affectedRows > 0;
-                }
+                return deleteNotesById(ids) > 0;
             }
 
             @Override
             protected void done() {
+                long start = System.nanoTime();
                 try {
                     boolean success = get();
                     if (success) {
-                        for (int modelRow : modelRows) {
-                            tableModel.removeRow(modelRow);
-                        }
-                        detailArea.setText("");
+                        contentCache.invalidate(ids);
+                        tableModel.merge(new java.util.HashSet<>(ids), java.util.Collections.emptyMap());
+                        detailArea.clear();
                         deleteButton.setEnabled(false);
-                        JOptionPane.showMessageDialog(mainPanel, "Records deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                        stdout.println("Deleted " + ids.size() + " records.");
+                        stdout.println("Deleted " + ids.size() + " records; use Undo Delete to restore them.");
+                        setUndoAvailable(ids);
+                        metrics.recordEdtSince(MeteredNoteStore.DELETE, start);
                     } else {
                         JOptionPane.showMessageDialog(mainPanel, "Delete failed: Records not found.", "Error", JOptionPane.ERROR_MESSAGE);
                     }
@@ -565,40 +1386,54 @@ public class BurpExtender implements IBurpExtender, ITab {
         }.execute();
     }
 
-    private void loadAllContent() {
-        if (dbConnection == null) {
-            JOptionPane.showMessageDialog(mainPanel, "Not connected to database.", "Error", JOptionPane.ERROR_MESSAGE);
+    /**
+     * Offers to restore the given notes until the undo window closes; an empty list withdraws the offer.
+     */
+    private void setUndoAvailable(java.util.List<Integer> ids) {
+        lastDeletedIds = ids;
+        undoDeleteButton.setEnabled(!ids.isEmpty());
+        allNotesUndoButton.setEnabled(!ids.isEmpty());
+        if (undoTimer != null) {
+            undoTimer.stop();
+        }
+        if (!ids.isEmpty()) {
+            undoTimer = new javax.swing.Timer(UNDO_WINDOW_MS, e -> setUndoAvailable(java.util.Collections.emptyList()));
+            undoTimer.setRepeats(false);
+            undoTimer.start();
+        }
+    }
+
+    private void undoDelete() {
+        NoteStore store = noteStore;
+        java.util.List<Integer> ids = lastDeletedIds;
+        if (store == null || ids.isEmpty()) {
             return;
         }
+        setUndoAvailable(java.util.Collections.emptyList());
 
-        new SwingWorker<Vector<Vector<Object>>, Void>() {
+        new SwingWorker<java.util.Map<String, Integer>, Void>() {
             @Override
-            protected Vector<Vector<Object>> doInBackground() throws Exception {
-                String sql = "SELECT id, domain, content, create_time FROM " + DEFAULT_TABLE + " ORDER BY create_time DESC";
-                Vector<Vector<Object>> data = new Vector<>();
-                try (Statement stmt = dbConnection.createStatement();
-                     ResultSet rs = stmt.executeQuery(sql)) {
-                    while (rs.next()) {
-                        Vector<Object> row = new Vector<>();
-                        row.add(rs.getInt("id"));
-                        row.add(rs.getString("domain"));
-                        row.add(rs.getString("content"));
-                        row.add(rs.getTimestamp("create_time"));
-                        data.add(row);
-                    }
-                }
-                return data;
+            protected java.util.Map<String, Integer> doInBackground() throws Exception {
+                java.util.Map<String, Integer> restored = store.undelete(ids);
+                hostIndex.adjust(restored);
+                return restored;
             }
 
             @Override
             protected void done() {
                 try {
-                    Vector<Vector<Object>> result = get();
-                    allNotesModel.setRowCount(0); // Clear existing
-                    for (Vector<Object> row : result) {
-                        allNotesModel.addRow(row);
+                    int restored = 0;
+                    for (int count : get().values()) {
+                        restored += count;
+                    }
+                    stdout.println("Restored " + restored + " of " + ids.size() + " deleted records.");
+                    if (restored < ids.size()) {
+                        stdout.println("The others were purged already or have been stored again since.");
+                    }
+                    loadAllContent();
+                    if (!searchDomainInput.getText().trim().isEmpty()) {
+                        searchAsYouType();
                     }
-                    stdout.println("Loaded " + result.size() + " records.");
                 } catch (Exception ex) {
                     handleDbException(ex);
                 }
@@ -606,6 +1441,220 @@ public class BurpExtender implements IBurpExtender, ITab {
         }.execute();
     }
 
+    private int deleteNotesById(java.util.List<Integer> ids) throws SQLException {
+        NoteStore store = noteStore;
+        if (store == null) {
+            // Disconnected while the delete was being confirmed
+            throw new SQLException("Not connected to database.");
+        }
+        java.util.Map<String, Integer> deleted = store.delete(ids);
+        java.util.Map<String, Integer> domainDeltas = new java.util.HashMap<>();
+        int affectedRows = 0;
+        for (java.util.Map.Entry<String, Integer> entry : deleted.entrySet()) {
+            domainDeltas.put(entry.getKey(), -entry.getValue());
+            affectedRows += entry.getValue();
+        }
+        hostIndex.adjust(domainDeltas);
+        return affectedRows;
+    }
+
+    private void loadAllContent() {
+        NoteStore store = noteStore;
+        if (store == null) {
+            JOptionPane.showMessageDialog(mainPanel, "Not connected to database.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        allNotesTable.clearSelection();
+        allNotesModel.reload(store, count -> stdout.println("Loaded index for " + count + " records."));
+    }
+
+    private void sortAllNotes(int column) {
+        NoteListQuery.SortColumn sort = NoteListQuery.SortColumn.forColumn(column);
+        NoteStore store = noteStore;
+        if (sort == null || store == null) {
+            return;
+        }
+        NoteListQuery current = allNotesModel.getQuery();
+        boolean ascending = current.sort == sort ? !current.ascending : sort.defaultAscending();
+        applyAllNotesQuery(store, current.sortedBy(sort, ascending));
+    }
+
+    /**
+     * Applies the filter fields; quietly does nothing without a connection.
+     */
+    private void filterAllNotes() {
+        allNotesFilterTimer.stop();
+        NoteStore store = noteStore;
+        String minText = allNotesMinLengthInput.getText().trim();
+        int minLength;
+        try {
+            minLength = minText.isEmpty() ? 0 : Integer.parseInt(minText);
+        } catch (NumberFormatException ex) {
+            return; // Still typing; the field is checked again on the next change
+        }
+        NoteListQuery query = allNotesModel.getQuery().filtered(allNotesFilterInput.getText(), minLength);
+        if (store != null && !query.equals(allNotesModel.getQuery())) {
+            applyAllNotesQuery(store, query);
+        }
+    }
+
+    private void applyAllNotesQuery(NoteStore store, NoteListQuery query) {
+        allNotesTable.clearSelection();
+        allNotesModel.setQuery(store, query, count -> stdout.println("Listing " + count + " records (" + query + ")."));
+        // Column names carry the sort arrow
+        javax.swing.table.TableColumnModel columns = allNotesTable.getColumnModel();
+        for (int i = 0; i < columns.getColumnCount(); i++) {
+            javax.swing.table.TableColumn column = columns.getColumn(i);
+            column.setHeaderValue(allNotesModel.getColumnName(column.getModelIndex()));
+        }
+        allNotesTable.getTableHeader().repaint();
+    }
+
+    private JFileChooser transferChooser() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "Notes (*.jsonl, *.csv, optionally .gz)", "jsonl", "csv", "gz"));
+        return chooser;
+    }
+
+    private void exportNotes() {
+        NoteStore store = noteStore;
+        if (store == null) {
+            JOptionPane.showMessageDialog(mainPanel, "Not connected to database.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        JFileChooser chooser = transferChooser();
+        chooser.setSelectedFile(new java.io.File("burpnote-export.jsonl.gz"));
+        if (chooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path file = chooser.getSelectedFile().toPath();
+        NoteTransfer transfer = new NoteTransfer(java.nio.file.Paths.get(System.getProperty("user.home"), JOURNAL_DIR));
+
+        startTransfer(new SwingWorker<Long, long[]>() {
+            private long elapsedMillis;
+
+            @Override
+            protected Long doInBackground() throws Exception {
+                long start = System.nanoTime();
+                long count = transfer.exportTo(store, file, (records, percent) -> publish(new long[]{records, percent}));
+                elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                return count;
+            }
+
+            @Override
+            protected void process(java.util.List<long[]> chunks) {
+                showTransferProgress("Exported", chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                finishTransfer();
+                try {
+                    long count = get();
+                    stdout.println("Exported " + count + " notes to " + file + " in " + elapsedMillis + " ms ("
+                            + (count * 1000 / elapsedMillis) + " notes/s).");
+                } catch (java.util.concurrent.CancellationException ex) {
+                    stdout.println("Export to " + file + " cancelled.");
+                } catch (Exception ex) {
+                    handleTransferException("Export", ex);
+                }
+            }
+        });
+    }
+
+    private void importNotes() {
+        NoteStore store = noteStore;
+        if (store == null) {
+            JOptionPane.showMessageDialog(mainPanel, "Not connected to database.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        JFileChooser chooser = transferChooser();
+        if (chooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path file = chooser.getSelectedFile().toPath();
+        NoteTransfer transfer = new NoteTransfer(java.nio.file.Paths.get(System.getProperty("user.home"), JOURNAL_DIR));
+
+        startTransfer(new SwingWorker<NoteTransfer.ImportResult, long[]>() {
+            private long elapsedMillis;
+
+            @Override
+            protected NoteTransfer.ImportResult doInBackground() throws Exception {
+                long start = System.nanoTime();
+                NoteTransfer.ImportResult result = transfer.importFrom(store, file, (records, percent) -> publish(new long[]{records, percent}));
+                elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                return result;
+            }
+
+            @Override
+            protected void process(java.util.List<long[]> chunks) {
+                showTransferProgress("Imported", chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                finishTransfer();
+                try {
+                    NoteTransfer.ImportResult result = get();
+                    long imported = result.records - result.resumedAfter;
+                    stdout.println("Imported " + imported + " records from " + file + " in " + elapsedMillis + " ms ("
+                            + (imported * 1000 / elapsedMillis) + " records/s)"
+                            + (result.resumedAfter > 0 ? ", resuming after record " + result.resumedAfter : "")
+                            + ". Duplicates of existing notes were skipped.");
+                    loadAllContent();
+                } catch (java.util.concurrent.CancellationException ex) {
+                    stdout.println("Import from " + file + " cancelled; importing the same file again resumes where it stopped.");
+                    loadAllContent();
+                } catch (Exception ex) {
+                    handleTransferException("Import", ex);
+                }
+            }
+        });
+    }
+
+    private void startTransfer(SwingWorker<?, ?> worker) {
+        transferWorker = worker;
+        exportButton.setEnabled(false);
+        importButton.setEnabled(false);
+        cancelTransferButton.setEnabled(true);
+        transferProgress.setValue(0);
+        transferProgress.setIndeterminate(true);
+        transferProgress.setString("Starting...");
+        transferProgress.setVisible(true);
+        worker.execute();
+    }
+
+    private void showTransferProgress(String verb, long[] progress) {
+        transferProgress.setIndeterminate(progress[1] < 0);
+        if (progress[1] >= 0) {
+            transferProgress.setValue((int) progress[1]);
+        }
+        transferProgress.setString(verb + " " + progress[0]);
+    }
+
+    private void finishTransfer() {
+        transferWorker = null;
+        exportButton.setEnabled(true);
+        importButton.setEnabled(true);
+        cancelTransferButton.setEnabled(false);
+        transferProgress.setVisible(false);
+    }
+
+    private void handleTransferException(String operation, Exception ex) {
+        Throwable cause = ex instanceof java.util.concurrent.ExecutionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof SQLException) {
+            handleDbException((SQLException) cause);
+        } else {
+            JOptionPane.showMessageDialog(mainPanel, operation + " failed:\n" + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            stderr.println(operation + " error: " + cause.getMessage());
+        }
+        if ("Import".equals(operation)) {
+            stdout.println("Importing the same file again resumes after the last committed batch.");
+        }
+    }
+
     private void deleteAllNotesContent() {
         int[] viewRows = allNotesTable.getSelectedRows();
         if (viewRows.length == 0) {
@@ -622,49 +1671,35 @@ public class BurpExtender implements IBurpExtender, ITab {
         }
 
         java.util.List<Integer> ids = new java.util.ArrayList<>();
-        java.util.List<Integer> modelRows = new java.util.ArrayList<>();
         
         for (int viewRow : viewRows) {
-            int modelRow = allNotesTable.convertRowIndexToModel(viewRow);
-            modelRows.add(modelRow);
-            ids.add((Integer) allNotesModel.getValueAt(modelRow, 0));
+            Integer id = allNotesModel.getIdAt(allNotesTable.convertRowIndexToModel(viewRow));
+            if (id != null) { // Skip rows whose page has not been loaded yet
+                ids.add(id);
+            }
         }
-        
-        // Sort model rows in descending order for safe removal
-        java.util.Collections.sort(modelRows, java.util.Collections.reverseOrder());
 
-        new SwingWorker<Boolean, Void>() {
+        NoteStore store = noteStore;
+        new SwingWorker<Integer, Void>() {
             @Override
-            protected Boolean doInBackground() throws Exception {
-                if (ids.isEmpty()) return false;
-                
-                StringBuilder sqlBuilder = new StringBuilder("DELETE FROM " + DEFAULT_TABLE + " WHERE id IN (");
-                for (int i = 0; i < ids.size(); i++) {
-                    sqlBuilder.append(i == 0 ? "?" : ", ?");
-                }
-                sqlBuilder.append(")");
-                
-                try (PreparedStatement pstmt = dbConnection.prepareStatement(sqlBuilder.toString())) {
-                    for (int i = 0; i < ids.size(); i++) {
-                        pstmt.setInt(i + 1, ids.get(i));
-                    }
-                    int affectedRows = pstmt.executeUpdate();
-                    return affectedRows > 0;
-                }
+            protected Integer doInBackground() throws Exception {
+                if (ids.isEmpty()) return 0;
+                return deleteNotesById(ids);
             }
 
             @Override
             protected void done() {
+                long start = System.nanoTime();
                 try {
-                    boolean success = get();
-                    if (success) {
-                        for (int modelRow : modelRows) {
-                            allNotesModel.removeRow(modelRow);
-                        }
-                        allNotesDetailArea.setText("");
+                    int deleted = get();
+                    if (deleted > 0) {
+                        contentCache.invalidate(ids);
+                        allNotesModel.removeRows(store, ids, deleted);
+                        allNotesDetailArea.clear();
                         deleteAllButton.setEnabled(false);
-                        JOptionPane.showMessageDialog(mainPanel, "Records deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                        stdout.println("Deleted " + ids.size() + " records.");
+                        stdout.println("Deleted " + ids.size() + " records; use Undo Delete to restore them.");
+                        setUndoAvailable(ids);
+                        metrics.recordEdtSince(MeteredNoteStore.DELETE, start);
                     } else {
                         JOptionPane.showMessageDialog(mainPanel, "Delete failed: Records not found.", "Error", JOptionPane.ERROR_MESSAGE);
                     }
@@ -675,20 +1710,121 @@ public class BurpExtender implements IBurpExtender, ITab {
         }.execute();
     }
 
-    private void handleDbException(Exception ex) {
-        try {
-            if (dbConnection == null || dbConnection.isClosed()) {
-                statusLabel.setText("Connection lost");
-                statusLabel.setForeground(Color.RED);
-                insertButton.setEnabled(false);
+    /**
+     * Shows the full content of the selected note, fetching it (and the rows
+     * around it) through the content cache when it is not cached yet.
+     */
+    private void showSelectedNote(JTable table, java.util.function.IntFunction<Integer> idAt, NoteViewer area) {
+        int viewRow = table.getSelectedRow();
+        Integer id = idAt.apply(table.convertRowIndexToModel(viewRow));
+        if (id == null) {
+            area.clear();
+            return;
+        }
+        NoteStore store = noteStore;
+        String cached = contentCache.getIfPresent(id);
+        if (cached == null && store == null) {
+            area.showMessage("Not connected to database.");
+            return;
+        }
+
+        java.util.List<Integer> neighbours = new java.util.ArrayList<>();
+        for (int offset = -CONTENT_PREFETCH_ROWS; offset <= CONTENT_PREFETCH_ROWS; offset++) {
+            int row = viewRow + offset;
+            if (offset != 0 && row >= 0 && row < table.getRowCount()) {
+                neighbours.add(idAt.apply(table.convertRowIndexToModel(row)));
+            }
+        }
+
+        if (cached == null) {
+            area.showMessage("Loading...");
+        }
+        contentCache.load(store, id, neighbours, content -> {
+            // Ignore results for a row that is no longer selected
+            int current = table.getSelectedRow();
+            if (current < 0 || !id.equals(idAt.apply(table.convertRowIndexToModel(current)))) {
+                return;
             }
-        } catch (SQLException ignored) {}
+            long start = System.nanoTime();
+            // Large bodies are prepared off the EDT; the viewer starts at the top
+            area.setContent(content == null ? "(Note no longer exists)" : content);
+            metrics.recordEdtSince(MeteredNoteStore.LOAD_CONTENT, start);
+        }, this::handleDbException);
+    }
+
+    private void handleDbException(Exception ex) {
+        if (noteStore == null) {
+            statusLabel.setText("Connection lost");
+            statusLabel.setForeground(Color.RED);
+        } else if (CircuitBreaker.isConnectivityFailure(ex)) {
+            // The status bar shows the outage and the reconnect; no dialog for every call that fails meanwhile
+            showHealth(noteStore);
+            stderr.println("Database unreachable: " + ex.getMessage());
+            return;
+        }
         
         JOptionPane.showMessageDialog(mainPanel, "Database Operation Failed:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         stderr.println("Database error: " + ex.getMessage());
         ex.printStackTrace(stderr);
     }
 
+    private void shutdown() {
+        if (poolStatusTimer != null) {
+            poolStatusTimer.stop();
+        }
+        if (writeQueueTimer != null) {
+            writeQueueTimer.stop();
+        }
+        if (metricsTimer != null) {
+            metricsTimer.stop();
+        }
+        if (searchDebounceTimer != null) {
+            searchDebounceTimer.stop();
+        }
+        if (allNotesFilterTimer != null) {
+            allNotesFilterTimer.stop();
+        }
+        if (undoTimer != null) {
+            undoTimer.stop();
+        }
+        cancelSearch();
+        callbacks.removeHttpListener(hostMarker);
+        callbacks.removeContextMenuFactory(hostMarker);
+        hostIndexPoller.shutdownNow();
+        purger.shutdownNow();
+        changePollerExecutor.shutdownNow();
+        healthExecutor.shutdownNow();
+        // Stop capturing first so its last endpoints still reach the write queue
+        callbacks.removeHttpListener(endpointCapture);
+        endpointCapture.stop();
+        long unwritten = writeQueue.stop(WRITE_QUEUE_STOP_TIMEOUT_MS);
+        if (unwritten > 0) {
+            stderr.println(unwritten + " queued note(s) could not be written before unload"
+                    + (journal != null ? "; they will be replayed from the journal on next load." : "."));
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (java.io.IOException e) {
+                stderr.println("Failed to close the local journal: " + e.getMessage());
+            }
+        }
+        if (transferWorker != null) {
+            transferWorker.cancel(true);
+        }
+        if (allNotesModel != null) {
+            allNotesModel.shutdown();
+        }
+        contentCache.shutdown();
+        NoteStore store = noteStore;
+        noteStore = null;
+        if (store != null) {
+            stdout.println(store.describe());
+            store.close();
+        }
+        stdout.println("BurpNote extension unloaded.");
+    }
+
     @Override
     public String getTabCaption() {
         return "BurpNote";
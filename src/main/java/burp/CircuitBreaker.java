@@ -0,0 +1,177 @@
+package burp;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.function.Consumer;
+
+/**
+ * Fails database calls fast while the database is unreachable.
+ *
+ * Calls report whether the database answered. After failureThreshold
+ * connection failures or timeouts in a row the breaker opens: check() then
+ * throws at once instead of letting every call wait out its own timeout.
+ * While open, a probe is tried with exponential backoff, from
+ * initialRetryMillis doubling up to maxRetryMillis; the first probe that
+ * succeeds closes the breaker again. Any answer from the database, even an
+ * error, resets the failure count.
+ */
+public class CircuitBreaker {
+    public enum State {
+        /** Healthy: calls go through. */
+        CLOSED,
+        /** Unreachable: calls fail fast until the next probe. */
+        OPEN,
+        /** A probe is running; calls still fail fast. */
+        HALF_OPEN
+    }
+
+    public interface Probe {
+        void run() throws SQLException;
+    }
+
+    private final int failureThreshold;
+    private final long initialRetryMillis;
+    private final long maxRetryMillis;
+    private final Consumer<String> log;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int attempts;
+    private long retryDelay;
+    private long openedAt;
+    private long nextAttemptAt;
+    private String lastError;
+
+    public CircuitBreaker(int failureThreshold, long initialRetryMillis, long maxRetryMillis, Consumer<String> log) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.initialRetryMillis = initialRetryMillis;
+        this.maxRetryMillis = maxRetryMillis;
+        this.log = log;
+    }
+
+    /**
+     * Whether the exception means the database could not be reached or did
+     * not answer in time, as opposed to rejecting the statement.
+     */
+    public static boolean isConnectivityFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTimeoutException || t instanceof SQLTransientConnectionException
+                    || t instanceof SQLNonTransientConnectionException || t instanceof SQLRecoverableException) {
+                return true;
+            }
+            // SQLState class 08: connection exception
+            if (t instanceof SQLException) {
+                String sqlState = ((SQLException) t).getSQLState();
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Throws if calls should not reach the database right now.
+     */
+    public synchronized void check() throws SQLException {
+        if (state != State.CLOSED) {
+            long wait = Math.max(0, nextAttemptAt - System.currentTimeMillis());
+            throw new SQLTransientConnectionException("Database unreachable (" + lastError + "); "
+                    + (state == State.HALF_OPEN || wait == 0 ? "reconnecting now" : "next reconnect attempt in " + seconds(wait) + " s"));
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Counts a failed call; connectivity failures open the breaker once
+     * there are failureThreshold of them in a row.
+     */
+    public synchronized void recordFailure(SQLException e) {
+        if (!isConnectivityFailure(e)) {
+            consecutiveFailures = 0;
+            return;
+        }
+        lastError = e.getMessage();
+        if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            attempts = 0;
+            retryDelay = initialRetryMillis;
+            nextAttemptAt = openedAt + retryDelay;
+            log.accept("Database unreachable after " + consecutiveFailures + " failed call(s): " + lastError
+                    + "; failing fast and reconnecting in the background.");
+        }
+    }
+
+    /**
+     * Runs the probe if the breaker is open and the backoff delay has
+     * passed; returns true if the breaker is closed afterwards. Call it
+     * periodically from a background thread.
+     */
+    public boolean probeIfDue(Probe probe) {
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.HALF_OPEN || System.currentTimeMillis() < nextAttemptAt) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            attempts++;
+        }
+        try {
+            probe.run();
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                lastError = e.getMessage();
+                retryDelay = Math.min(retryDelay * 2, maxRetryMillis);
+                nextAttemptAt = System.currentTimeMillis() + retryDelay;
+                state = State.OPEN;
+            }
+            return false;
+        }
+        synchronized (this) {
+            log.accept("Database reachable again after " + seconds(System.currentTimeMillis() - openedAt)
+                    + " s (" + attempts + " reconnect attempt(s)).");
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        }
+        return true;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * One-line health summary for the status bar.
+     */
+    public synchronized String describe() {
+        if (state == State.CLOSED) {
+            return consecutiveFailures == 0 ? "Database healthy"
+                    : "Database slow or failing: " + consecutiveFailures + " failed call(s) in a row (" + lastError + ")";
+        }
+        long now = System.currentTimeMillis();
+        String retry = state == State.HALF_OPEN ? "reconnecting now"
+                : "reconnecting in " + seconds(Math.max(0, nextAttemptAt - now)) + " s";
+        return "Database unreachable for " + seconds(now - openedAt) + " s, " + retry
+                + " (attempt " + (attempts + (state == State.OPEN ? 1 : 0)) + "): " + lastError;
+    }
+
+    private static long seconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+}
@@ -0,0 +1,168 @@
+package burp;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NoteStore decorator that puts every call behind a CircuitBreaker.
+ *
+ * While the breaker is open calls fail at once with an
+ * SQLTransientConnectionException; probeIfDue() reconnects in the background
+ * by running a trivial query on the wrapped store. The pool drops broken
+ * connections by itself, so once a probe gets through the store is usable
+ * again without reopening it.
+ */
+public class CircuitBreakerNoteStore implements NoteStore {
+    private interface Call<T> {
+        T run() throws SQLException;
+    }
+
+    private final NoteStore delegate;
+    private final CircuitBreaker breaker;
+
+    public CircuitBreakerNoteStore(NoteStore delegate, CircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Tries to reach the database if the breaker is open and its backoff
+     * delay has passed; returns true if the store is healthy.
+     */
+    public boolean probeIfDue() {
+        return breaker.probeIfDue(delegate::changeWatermark);
+    }
+
+    private <T> T guard(Call<T> call) throws SQLException {
+        breaker.check();
+        try {
+            T result = call.run();
+            breaker.recordSuccess();
+            return result;
+        } catch (SQLException e) {
+            breaker.recordFailure(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> open() throws SQLException {
+        return delegate.open();
+    }
+
+    @Override
+    public String describe() {
+        return delegate.describe();
+    }
+
+    @Override
+    public void insertBatch(List<NoteJournal.Record> notes) throws SQLException {
+        guard(() -> {
+            delegate.insertBatch(notes);
+            return null;
+        });
+    }
+
+    @Override
+    public String search(SearchMode mode, String term, QueryCanceller canceller, RowSink sink) throws SQLException {
+        breaker.check();
+        try {
+            String strategy = delegate.search(mode, term, canceller, sink);
+            breaker.recordSuccess();
+            return strategy;
+        } catch (SQLTimeoutException e) {
+            // A heavy search running out of time says nothing about the connection
+            breaker.recordSuccess();
+            throw e;
+        } catch (SQLException e) {
+            breaker.recordFailure(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Object[]> findByDomains(Collection<String> domains) throws SQLException {
+        return guard(() -> delegate.findByDomains(domains));
+    }
+
+    @Override
+    public int count(NoteListQuery query) throws SQLException {
+        return guard(() -> delegate.count(query));
+    }
+
+    @Override
+    public List<Object[]> page(NoteListQuery query, Object[] after, int skip, int limit) throws SQLException {
+        return guard(() -> delegate.page(query, after, skip, limit));
+    }
+
+    @Override
+    public Map<Integer, String> loadContent(Collection<Integer> ids) throws SQLException {
+        return guard(() -> delegate.loadContent(ids));
+    }
+
+    @Override
+    public long exportNotes(long afterId, NoteSink sink) throws SQLException, IOException {
+        breaker.check();
+        try {
+            long count = delegate.exportNotes(afterId, sink);
+            breaker.recordSuccess();
+            return count;
+        } catch (SQLException e) {
+            breaker.recordFailure(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, Integer> delete(Collection<Integer> ids) throws SQLException {
+        return guard(() -> delegate.delete(ids));
+    }
+
+    @Override
+    public Map<String, Integer> undelete(Collection<Integer> ids) throws SQLException {
+        return guard(() -> delegate.undelete(ids));
+    }
+
+    @Override
+    public int purgeDeleted(long olderThanMillis, int limit) throws SQLException {
+        return guard(() -> delegate.purgeDeleted(olderThanMillis, limit));
+    }
+
+    @Override
+    public long maxId() throws SQLException {
+        return guard(delegate::maxId);
+    }
+
+    @Override
+    public Map<String, Integer> countByDomain(long afterId, long upToId) throws SQLException {
+        return guard(() -> delegate.countByDomain(afterId, upToId));
+    }
+
+    @Override
+    public long changeWatermark() throws SQLException {
+        return guard(delegate::changeWatermark);
+    }
+
+    @Override
+    public List<NoteChange> changesSince(long afterMillis, int afterId, int limit) throws SQLException {
+        return guard(() -> delegate.changesSince(afterMillis, afterId, limit));
+    }
+
+    @Override
+    public List<Object[]> endpoints(EndpointQuery query) throws SQLException {
+        return guard(() -> delegate.endpoints(query));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,410 @@
+package burp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small bounded JDBC connection pool shared by the BurpNote workers.
+ *
+ * Connections are handed out as proxies whose close() returns the physical
+ * connection to the pool. Their statements and result sets are proxied too,
+ * so a connection failure (SQLState class 08) raised while executing or
+ * reading results marks the connection broken and it is discarded instead
+ * of going back to the pool. Idle connections are validated before reuse and
+ * recycled once they exceed their maximum lifetime. The time callers spend
+ * waiting for a free connection is recorded so it can be shown in the UI.
+ *
+ * A connection can be borrowed with a time budget: its statements then get
+ * that query timeout, and socket reads give up shortly after it, so a call
+ * returns even when the server is too unresponsive to cancel the query.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // Lets the server cancel a timed-out query before the socket read gives up
+    private static final long NETWORK_TIMEOUT_GRACE_MS = 2_000;
+    private static final Executor DIRECT = Runnable::run;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long idleValidationMillis;
+    private final long maxLifetimeMillis;
+    private final long acquireTimeoutMillis;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicLong openCount = new AtomicLong();
+    private volatile boolean closed;
+
+    // Wait-time statistics
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          long idleValidationMillis, long maxLifetimeMillis, long acquireTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.idleValidationMillis = idleValidationMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection, blocking up to the acquire timeout when all
+     * connections are in use. Closing the returned connection gives it back.
+     */
+    public Connection getConnection() throws SQLException {
+        return borrow(acquireTimeoutMillis, 0);
+    }
+
+    /**
+     * Borrows a connection for a call that must finish within the given
+     * number of seconds: waiting for a free connection, each statement and
+     * each socket read are bounded by it.
+     */
+    public Connection getConnection(int timeoutSeconds) throws SQLException {
+        return borrow(Math.min(acquireTimeoutMillis, timeoutSeconds * 1000L), timeoutSeconds);
+    }
+
+    private Connection borrow(long waitMillis, int timeoutSeconds) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + waitMillis + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeUsable();
+            return pooled.borrow(timeoutSeconds);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeUsable() throws SQLException {
+        long now = System.currentTimeMillis();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (now - pooled.createdAt > maxLifetimeMillis) {
+                discard(pooled);
+                continue;
+            }
+            if (now - pooled.lastUsed > idleValidationMillis
+                    && !isValid(pooled.physical)) {
+                discard(pooled);
+                continue;
+            }
+            return pooled;
+        }
+        Connection physical = DriverManager.getConnection(url, user, password);
+        openCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.broken || pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.resetNetworkTimeout();
+            pooled.lastUsed = System.currentTimeMillis();
+            // LIFO keeps recently used connections warm and lets surplus ones age out
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        openCount.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {}
+    }
+
+    private void recordWait(long nanos) {
+        acquireCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = acquireCount.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary of pool usage and connection wait times.
+     */
+    public String describe() {
+        return String.format("Pool: %d/%d active, %d idle, %d open | wait avg %.2f ms, max %.2f ms over %d acquisitions",
+                getActiveCount(), maxSize, getIdleCount(), openCount.get(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getAcquireCount());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * A physical connection plus the bookkeeping needed to validate and recycle it.
+     */
+    private final class PooledConnection {
+        final Connection physical;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastUsed = createdAt;
+        volatile boolean broken;
+        // Socket read timeout set by the driver's URL, or -1 if the driver cannot change it
+        private final int defaultNetworkTimeout;
+        private volatile boolean networkTimeoutChanged;
+        private volatile int queryTimeoutSeconds;
+        // Some drivers keep a statement's query timeout for the whole session
+        private volatile boolean queryTimeoutApplied;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            int timeout;
+            try {
+                timeout = physical.getNetworkTimeout();
+            } catch (SQLException e) {
+                timeout = -1;
+            }
+            this.defaultNetworkTimeout = timeout;
+        }
+
+        Connection borrow(int timeoutSeconds) throws SQLException {
+            queryTimeoutSeconds = timeoutSeconds;
+            if (timeoutSeconds > 0 && defaultNetworkTimeout >= 0) {
+                physical.setNetworkTimeout(DIRECT, (int) (timeoutSeconds * 1000L + NETWORK_TIMEOUT_GRACE_MS));
+                networkTimeoutChanged = true;
+            }
+            return new Lease(this).proxy;
+        }
+
+        // SQLState class 08 means the connection itself is unusable
+        void checkBroken(Throwable e) {
+            if (e instanceof SQLException) {
+                String state = ((SQLException) e).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    broken = true;
+                }
+            }
+        }
+
+        void resetNetworkTimeout() throws SQLException {
+            if (networkTimeoutChanged) {
+                physical.setNetworkTimeout(DIRECT, defaultNetworkTimeout);
+                networkTimeoutChanged = false;
+            }
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection. Each borrow gets its own lease, so a
+     * stale proxy closed after the connection was lent again cannot return it
+     * a second time, and its statements stop working once it is closed.
+     */
+    private final class Lease implements InvocationHandler {
+        final PooledConnection pooled;
+        final Connection proxy;
+        volatile boolean closed;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        void checkOpen() throws SQLException {
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+        }
+
+        <T> T track(Class<T> type, T target, Object owner) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new TrackedHandler(this, target, owner)));
+        }
+
+        @Override
+        public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                if (!closed) {
+                    closed = true;
+                    release(pooled);
+                }
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return closed || pooled.physical.isClosed();
+            }
+            if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            checkOpen();
+            if ("setNetworkTimeout".equals(name)) {
+                pooled.networkTimeoutChanged = true;
+            }
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (result instanceof Statement) {
+                    if (pooled.queryTimeoutSeconds > 0 || pooled.queryTimeoutApplied) {
+                        // Callers may still set a shorter or longer timeout of their own
+                        ((Statement) result).setQueryTimeout(pooled.queryTimeoutSeconds);
+                        pooled.queryTimeoutApplied = pooled.queryTimeoutSeconds > 0;
+                    }
+                    // createStatement, prepareStatement or prepareCall: proxy the interface they declare
+                    return trackStatement(method.getReturnType(), result);
+                }
+                if (result instanceof DatabaseMetaData) {
+                    return track(DatabaseMetaData.class, (DatabaseMetaData) result, this.proxy);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                pooled.checkBroken(e.getCause());
+                throw e.getCause();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T trackStatement(Class<T> type, Object statement) {
+            return track(type, (T) statement, proxy);
+        }
+    }
+
+    /**
+     * Statement, ResultSet or DatabaseMetaData of a pooled connection: stops
+     * working once its lease is closed, reports connection failures, and hands
+     * out its own proxies for the result sets it returns and for the
+     * connection or statement it belongs to.
+     */
+    private static final class TrackedHandler implements InvocationHandler {
+        private final Lease lease;
+        private final Object target;
+        private final Object owner;
+
+        TrackedHandler(Lease lease, Object target, Object owner) {
+            this.lease = lease;
+            this.target = target;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (("getConnection".equals(name) || "getStatement".equals(name)) && method.getParameterCount() == 0) {
+                // Never leak the physical connection, whose close() would bypass the pool
+                return owner;
+            }
+            if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if (lease.closed) {
+                if ("isClosed".equals(name)) {
+                    return true;
+                }
+                if (!"close".equals(name)) {
+                    lease.checkOpen();
+                }
+            }
+            try {
+                Object result = method.invoke(target, args);
+                if (result instanceof ResultSet && method.getReturnType() == ResultSet.class) {
+                    // Metadata result sets have no statement
+                    return lease.track(ResultSet.class, (ResultSet) result, target instanceof Statement ? proxy : null);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                lease.pooled.checkBroken(e.getCause());
+                throw e.getCause();
+            }
+        }
+    }
+}
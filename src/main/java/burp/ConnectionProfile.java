@@ -0,0 +1,96 @@
+package burp;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Saved settings of the connection panel, kept by ConnectionProfiles.
+ *
+ * The password is only part of a profile when the user asks for it to be
+ * remembered, and then only encrypted by CredentialCipher.
+ */
+public final class ConnectionProfile {
+    public final String name;
+    public final String storage;
+    public final String host;
+    public final String port;
+    public final String database;
+    public final String user;
+    public final int poolSize;
+    public final boolean compress;
+    public final boolean autoConnect;
+    /** Encrypted password, or null if it is not remembered. */
+    public final String encryptedPassword;
+
+    public ConnectionProfile(String name, String storage, String host, String port, String database, String user,
+                             int poolSize, boolean compress, boolean autoConnect, String encryptedPassword) {
+        this.name = name;
+        this.storage = storage;
+        this.host = host;
+        this.port = port;
+        this.database = database;
+        this.user = user;
+        this.poolSize = poolSize;
+        this.compress = compress;
+        this.autoConnect = autoConnect;
+        this.encryptedPassword = encryptedPassword;
+    }
+
+    public ConnectionProfile withEncryptedPassword(String encryptedPassword) {
+        return new ConnectionProfile(name, storage, host, port, database, user, poolSize, compress, autoConnect,
+                encryptedPassword);
+    }
+
+    /**
+     * What a remembered password is bound to; it does not decrypt for any other server, database or user.
+     */
+    public String credentialContext() {
+        return user + "@" + host + ":" + port + "/" + database;
+    }
+
+    String toSetting() {
+        Properties properties = new Properties();
+        properties.setProperty("storage", storage);
+        properties.setProperty("host", host);
+        properties.setProperty("port", port);
+        properties.setProperty("database", database);
+        properties.setProperty("user", user);
+        properties.setProperty("poolSize", Integer.toString(poolSize));
+        properties.setProperty("compress", Boolean.toString(compress));
+        properties.setProperty("autoConnect", Boolean.toString(autoConnect));
+        if (encryptedPassword != null) {
+            properties.setProperty("password", encryptedPassword);
+        }
+        StringWriter out = new StringWriter();
+        try {
+            properties.store(out, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    static ConnectionProfile fromSetting(String name, String value) {
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int poolSize;
+        try {
+            poolSize = Integer.parseInt(properties.getProperty("poolSize", ""));
+        } catch (NumberFormatException e) {
+            poolSize = 0;
+        }
+        return new ConnectionProfile(name, properties.getProperty("storage", ""), properties.getProperty("host", ""),
+                properties.getProperty("port", ""), properties.getProperty("database", ""),
+                properties.getProperty("user", ""), poolSize,
+                Boolean.parseBoolean(properties.getProperty("compress")),
+                Boolean.parseBoolean(properties.getProperty("autoConnect")),
+                properties.getProperty("password"));
+    }
+}
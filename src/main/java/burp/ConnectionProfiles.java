@@ -0,0 +1,82 @@
+package burp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection profiles persisted in Burp's extension settings, so they
+ * survive restarts of Burp.
+ *
+ * The profile names are kept in one setting, each profile in a setting of
+ * its own, plus the name of the profile last connected to, which is the one
+ * connected to on startup if it asks for that.
+ */
+public class ConnectionProfiles {
+    private static final String NAMES = "profiles";
+    private static final String PREFIX = "profile.";
+    private static final String LAST = "lastProfile";
+
+    private final IBurpExtenderCallbacks callbacks;
+
+    public ConnectionProfiles(IBurpExtenderCallbacks callbacks) {
+        this.callbacks = callbacks;
+    }
+
+    public List<String> names() {
+        List<String> names = new ArrayList<>();
+        String value = callbacks.loadExtensionSetting(NAMES);
+        if (value != null) {
+            for (String name : value.split("\n")) {
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The named profile, or null if there is none.
+     */
+    public ConnectionProfile get(String name) {
+        String value = name == null ? null : callbacks.loadExtensionSetting(PREFIX + name);
+        return value == null ? null : ConnectionProfile.fromSetting(name, value);
+    }
+
+    /**
+     * Adds the profile, or replaces the one of the same name.
+     */
+    public void save(ConnectionProfile profile) {
+        if (profile.name.isEmpty() || profile.name.contains("\n")) {
+            throw new IllegalArgumentException("Invalid profile name: " + profile.name);
+        }
+        callbacks.saveExtensionSetting(PREFIX + profile.name, profile.toSetting());
+        List<String> names = names();
+        if (!names.contains(profile.name)) {
+            names.add(profile.name);
+            callbacks.saveExtensionSetting(NAMES, String.join("\n", names));
+        }
+    }
+
+    public void delete(String name) {
+        List<String> names = names();
+        if (names.remove(name)) {
+            callbacks.saveExtensionSetting(NAMES, String.join("\n", names));
+        }
+        callbacks.saveExtensionSetting(PREFIX + name, null);
+        if (name.equals(callbacks.loadExtensionSetting(LAST))) {
+            callbacks.saveExtensionSetting(LAST, null);
+        }
+    }
+
+    /**
+     * The profile last connected to, or null.
+     */
+    public ConnectionProfile getLast() {
+        return get(callbacks.loadExtensionSetting(LAST));
+    }
+
+    public void setLast(String name) {
+        callbacks.saveExtensionSetting(LAST, name);
+    }
+}
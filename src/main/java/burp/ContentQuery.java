@@ -0,0 +1,167 @@
+package burp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Translates a content search into a FULLTEXT lookup plus exact verification.
+ *
+ * The input is a list of terms separated by whitespace; a "double quoted"
+ * term is a phrase. A note matches when it contains every term verbatim
+ * (case-insensitively), so "/api/v2/users/{id}" finds exactly that path.
+ *
+ * InnoDB's FULLTEXT parser only indexes whole words of word characters,
+ * drops short tokens and ignores stopwords, so each term is split into the
+ * tokens the index can answer. Terms match anywhere, also inside a word, so
+ * only a token with a non-word character of the term on both sides is a
+ * whole word the note must contain ("api" in "/api/v2"); one with such a
+ * character only before it is the start of a word ("users*" for
+ * "/v2/users"); others, like "user" on its own, can be any part of a word
+ * and are left to the LIKE check. The required words and prefixes make up a
+ * BOOLEAN MODE query that narrows the candidates through the index; a LIKE
+ * on each original term then runs only on those candidates. A query without
+ * any of them is a scan, the same results every store gives.
+ *
+ * Compressed notes are searched through indexTerms(), the distinct words of
+ * the body stored as text next to the blob: the same boolean expression
+ * finds the candidates there, or wordPatterns() when it cannot, and only
+ * those candidates are decompressed and checked with matches().
+ */
+public class ContentQuery {
+    // content_terms is a MEDIUMTEXT: 16 MB holds this many utf8mb4 characters
+    public static final int MAX_INDEX_TERMS_CHARS = 4_000_000;
+    // innodb_ft_min_token_size default
+    private static final int MIN_TOKEN_LENGTH = 3;
+    private static final Pattern TERM = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}_]+");
+    // INFORMATION_SCHEMA.INNODB_FT_DEFAULT_STOPWORD
+    private static final Set<String> STOPWORDS = new HashSet<>(Arrays.asList(
+            "a", "about", "an", "are", "as", "at", "be", "by", "com", "de", "en", "for", "from", "how", "i",
+            "in", "is", "it", "la", "of", "on", "or", "that", "the", "this", "to", "was", "what", "when",
+            "where", "who", "will", "with", "und", "www"));
+
+    private final List<String> terms = new ArrayList<>();
+    private final Set<String> tokens = new HashSet<>();
+
+    public ContentQuery(String input) {
+        Matcher m = TERM.matcher(input);
+        while (m.find()) {
+            String term = m.group(1) != null ? m.group(1).trim() : m.group(2);
+            if (term.isEmpty()) {
+                continue;
+            }
+            terms.add(term);
+            String lower = term.toLowerCase(Locale.ROOT);
+            Matcher word = WORD.matcher(lower);
+            while (word.find()) {
+                String token = word.group();
+                if (word.start() == 0 || token.length() < MIN_TOKEN_LENGTH || STOPWORDS.contains(token)) {
+                    // May be the end or the middle of a longer word
+                    continue;
+                }
+                tokens.add(word.end() < lower.length() ? token : token + "*");
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    /**
+     * Whether the FULLTEXT index can narrow the search; if not the query has
+     * to fall back to scanning with LIKE alone.
+     */
+    public boolean isIndexable() {
+        return !tokens.isEmpty();
+    }
+
+    /**
+     * Boolean-mode expression requiring every indexable token, e.g. "+api +users*".
+     */
+    public String booleanExpression() {
+        StringBuilder expression = new StringBuilder();
+        for (String token : tokens) {
+            if (expression.length() > 0) {
+                expression.append(' ');
+            }
+            expression.append('+').append(token);
+        }
+        return expression.toString();
+    }
+
+    /**
+     * Whether the content contains every term, case-insensitively; the same
+     * check the LIKE patterns make, for stores that search in memory.
+     */
+    public boolean matches(String content) {
+        if (content == null) {
+            return false;
+        }
+        String lower = content.toLowerCase(Locale.ROOT);
+        for (String term : terms) {
+            if (!lower.contains(term.toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One "content_terms LIKE ?" pattern per word of the terms; every note
+     * containing the terms has each of them inside one of its index terms.
+     * Empty if the terms have no word characters, e.g. "{}".
+     */
+    public List<String> wordPatterns() {
+        Set<String> patterns = new LinkedHashSet<>();
+        for (String term : terms) {
+            Matcher m = WORD.matcher(term.toLowerCase(Locale.ROOT));
+            while (m.find()) {
+                patterns.add("%" + DomainGramIndex.escapeLike(m.group()) + "%");
+            }
+        }
+        return new ArrayList<>(patterns);
+    }
+
+    /**
+     * The distinct lower-cased words of the content separated by spaces, the
+     * searchable form of a compressed body; null if they would take more
+     * than MAX_INDEX_TERMS_CHARS, in which case the body stays text.
+     */
+    public static String indexTerms(String content) {
+        Set<String> seen = new HashSet<>();
+        StringBuilder words = new StringBuilder();
+        Matcher m = WORD.matcher(content.toLowerCase(Locale.ROOT));
+        while (m.find()) {
+            String word = m.group();
+            if (seen.add(word)) {
+                if (words.length() + word.length() + 1 > MAX_INDEX_TERMS_CHARS) {
+                    return null;
+                }
+                if (words.length() > 0) {
+                    words.append(' ');
+                }
+                words.append(word);
+            }
+        }
+        return words.toString();
+    }
+
+    /**
+     * One "content LIKE ?" pattern per term, escaped for use with the default escape character.
+     */
+    public List<String> likePatterns() {
+        List<String> patterns = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            patterns.add("%" + DomainGramIndex.escapeLike(term) + "%");
+        }
+        return patterns;
+    }
+}
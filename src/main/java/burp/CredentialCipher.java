@@ -0,0 +1,183 @@
+package burp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts remembered database passwords before they go into Burp's
+ * extension settings.
+ *
+ * AES-256-GCM with a random 96-bit IV per value, authenticated together
+ * with the profile's credential context. The key is generated on first use
+ * into a file readable by the owner only, outside Burp's settings, so a
+ * copied settings or project file does not reveal the password on its own.
+ */
+public class CredentialCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int KEY_BITS = 256;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    // Base64 length of the key
+    private static final int KEY_TEXT_CHARS = (KEY_BITS / 8 + 2) / 3 * 4;
+    private static final long KEY_RETRY_MS = 200;
+
+    private final Path keyFile;
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey key;
+
+    public CredentialCipher(Path keyFile) {
+        this.keyFile = keyFile;
+    }
+
+    public Path getKeyFile() {
+        return keyFile;
+    }
+
+    /**
+     * Encrypts the secret for the given context; the result is Base64 text.
+     */
+    public String encrypt(String secret, String context) throws GeneralSecurityException, IOException {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key(true), new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(context.getBytes(StandardCharsets.UTF_8));
+        byte[] plain = secret.getBytes(StandardCharsets.UTF_8);
+        byte[] sealed = cipher.doFinal(plain);
+        Arrays.fill(plain, (byte) 0);
+        byte[] out = Arrays.copyOf(iv, IV_BYTES + sealed.length);
+        System.arraycopy(sealed, 0, out, IV_BYTES, sealed.length);
+        return Base64.getEncoder().encodeToString(out);
+    }
+
+    /**
+     * Decrypts a value from encrypt(); fails if the key file is gone or the
+     * value was made for another context.
+     */
+    public String decrypt(String value, String context) throws GeneralSecurityException, IOException {
+        byte[] in = Base64.getDecoder().decode(value);
+        if (in.length < IV_BYTES) {
+            throw new GeneralSecurityException("Encrypted value is too short");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key(false), new GCMParameterSpec(TAG_BITS, in, 0, IV_BYTES));
+        cipher.updateAAD(context.getBytes(StandardCharsets.UTF_8));
+        byte[] plain = cipher.doFinal(in, IV_BYTES, in.length - IV_BYTES);
+        try {
+            return new String(plain, StandardCharsets.UTF_8);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    private synchronized SecretKey key(boolean create) throws GeneralSecurityException, IOException {
+        if (key != null) {
+            return key;
+        }
+        byte[] encoded = readKey();
+        if (encoded == null && Files.exists(keyFile)) {
+            // Empty or cut short: possibly still being written by an older version, give it a moment
+            try {
+                Thread.sleep(KEY_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            encoded = readKey();
+        }
+        if (encoded == null) {
+            if (!create) {
+                throw new IOException("Key file " + keyFile + " not found or incomplete");
+            }
+            createKeyFile();
+            encoded = readKey();
+            if (encoded == null) {
+                throw new IOException("Failed to create key file " + keyFile);
+            }
+        }
+        key = new SecretKeySpec(encoded, "AES");
+        return key;
+    }
+
+    // The key, or null if the file is missing, empty or too short to hold one
+    private byte[] readKey() throws GeneralSecurityException, IOException {
+        byte[] text;
+        try {
+            text = Files.readAllBytes(keyFile);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String value = new String(text, StandardCharsets.US_ASCII).trim();
+        if (value.length() < KEY_TEXT_CHARS) {
+            return null;
+        }
+        byte[] encoded;
+        try {
+            encoded = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            encoded = null;
+        }
+        if (encoded == null || encoded.length != KEY_BITS / 8) {
+            throw new GeneralSecurityException("Key file " + keyFile + " is not a " + KEY_BITS + "-bit key");
+        }
+        return encoded;
+    }
+
+    /**
+     * Writes a new key to a temporary owner-only file and then puts that in
+     * place in one step, so no reader ever sees a partial key. A key another
+     * Burp instance put there first is kept.
+     */
+    private void createKeyFile() throws GeneralSecurityException, IOException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(KEY_BITS, random);
+        byte[] encoded = Base64.getEncoder().encode(generator.generateKey().getEncoded());
+        Path directory = keyFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp;
+        if (keyFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            temp = Files.createTempFile(directory, keyFile.getFileName().toString(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            temp = Files.createTempFile(directory, keyFile.getFileName().toString(), ".tmp");
+            temp.toFile().setReadable(false, false);
+            temp.toFile().setReadable(true, true);
+            temp.toFile().setWritable(false, false);
+            temp.toFile().setWritable(true, true);
+        }
+        try {
+            Files.write(temp, encoded);
+            try {
+                // A hard link never replaces an existing file, unlike a move on POSIX
+                Files.createLink(keyFile, temp);
+            } catch (FileAlreadyExistsException e) {
+                if (readKey() == null) {
+                    // Left empty or cut short by an older version; nothing was ever encrypted with it
+                    Files.move(temp, keyFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // No hard links on this file system
+                if (!Files.exists(keyFile)) {
+                    Files.move(temp, keyFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
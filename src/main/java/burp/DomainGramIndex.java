@@ -0,0 +1,204 @@
+package burp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Trigram index over the distinct note domains, used by the fuzzy search.
+ *
+ * A leading-wildcard LIKE cannot use an index, so instead every domain is
+ * split into its lowercase 3-character substrings and stored in a
+ * (gram, domain) table. A substring search looks up the grams of the search
+ * term, keeps the domains that contain all of them, verifies the candidates
+ * and ranks them. Only then are notes fetched, via the domain index.
+ *
+ * The index lives on distinct domains rather than notes, so it stays small
+ * even when a domain has thousands of notes.
+ */
+public class DomainGramIndex {
+    public static final int GRAM_LENGTH = 3;
+    private static final int BATCH_SIZE = 500;
+
+    private final String gramTable;
+    private final String noteTable;
+
+    public DomainGramIndex(String gramTable, String noteTable) {
+        this.gramTable = gramTable;
+        this.noteTable = noteTable;
+    }
+
+    public String getGramTable() {
+        return gramTable;
+    }
+
+    /**
+     * Distinct lowercase trigrams of a value, in order of first appearance.
+     */
+    public static Set<String> grams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (value == null) {
+            return grams;
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + GRAM_LENGTH <= lower.length(); i++) {
+            grams.add(lower.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * Whether a term is long enough to be answered from the index.
+     */
+    public static boolean isIndexable(String term) {
+        return term.length() >= GRAM_LENGTH;
+    }
+
+    /**
+     * Adds the grams of the given domains; already indexed domains are ignored.
+     */
+    public void index(Connection conn, Collection<String> domains) throws SQLException {
+        String sql = "INSERT IGNORE INTO " + gramTable + " (gram, domain) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int pending = 0;
+            for (String domain : domains) {
+                for (String gram : grams(domain)) {
+                    pstmt.setString(1, gram);
+                    pstmt.setString(2, domain);
+                    pstmt.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Removes the grams of any of the given domains that no longer have notes.
+     */
+    public void prune(Connection conn, Collection<String> domains) throws SQLException {
+        if (domains.isEmpty()) {
+            return;
+        }
+        String sql = "DELETE FROM " + gramTable + " WHERE domain = ? AND NOT EXISTS (" +
+                "SELECT 1 FROM " + noteTable + " WHERE domain = ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (String domain : domains) {
+                pstmt.setString(1, domain);
+                pstmt.setString(2, domain);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Indexes every domain already present in the notes table.
+     */
+    public void rebuild(Connection conn) throws SQLException {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT domain FROM " + noteTable + " WHERE domain IS NOT NULL")) {
+            while (rs.next()) {
+                batch.add(rs.getString(1));
+                if (batch.size() == BATCH_SIZE) {
+                    index(conn, batch);
+                    batch.clear();
+                }
+            }
+        }
+        index(conn, batch);
+    }
+
+    /**
+     * Domains containing the term (case-insensitive), best matches first.
+     */
+    public List<String> search(Connection conn, String term, int limit) throws SQLException {
+        Set<String> termGrams = grams(term);
+        StringBuilder sql = new StringBuilder("SELECT domain FROM " + gramTable + " WHERE gram IN (");
+        int i = 0;
+        for (String ignored : termGrams) {
+            sql.append(i++ == 0 ? "?" : ", ?");
+        }
+        // A domain containing the term must contain every one of its grams
+        sql.append(") GROUP BY domain HAVING COUNT(*) = ?");
+
+        String lowerTerm = term.toLowerCase(Locale.ROOT);
+        List<String> matches = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (String gram : termGrams) {
+                pstmt.setString(index++, gram);
+            }
+            pstmt.setInt(index, termGrams.size());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String domain = rs.getString(1);
+                    // Grams only prove the pieces exist; check they are contiguous
+                    if (domain.toLowerCase(Locale.ROOT).contains(lowerTerm)) {
+                        matches.add(domain);
+                    }
+                }
+            }
+        }
+        matches.sort(rankComparator(term));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Orders domains by how well they match: exact, then at a label boundary
+     * (e.g. "api" in "api.example.com" or "dev.api.example.com"), then anywhere;
+     * ties go to the shorter domain.
+     */
+    public static Comparator<String> rankComparator(String term) {
+        String lowerTerm = term.toLowerCase(Locale.ROOT);
+        return Comparator.<String>comparingInt(domain -> matchRank(domain.toLowerCase(Locale.ROOT), lowerTerm))
+                .thenComparingInt(String::length)
+                .thenComparing(Comparator.naturalOrder());
+    }
+
+    private static int matchRank(String domain, String term) {
+        if (domain.equals(term)) {
+            return 0;
+        }
+        if (domain.startsWith(term) || domain.endsWith("." + term)) {
+            return 1;
+        }
+        int at = domain.indexOf(term);
+        if (at > 0 && domain.charAt(at - 1) == '.') {
+            return 2;
+        }
+        return at >= 0 ? 3 : 4;
+    }
+
+    /**
+     * For a "*.example.com" style term, the LIKE pattern on the reversed domain
+     * column ("moc.elpmaxe.%") that turns the suffix match into a range scan.
+     * Returns null if the term is not a wildcard suffix.
+     */
+    public static String reversedSuffixPattern(String term) {
+        if (!term.startsWith("*.") || term.length() < 3) {
+            return null;
+        }
+        String reversed = new StringBuilder(term.substring(1).toLowerCase(Locale.ROOT)).reverse().toString();
+        return escapeLike(reversed) + "%";
+    }
+
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
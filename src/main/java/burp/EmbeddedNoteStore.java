@@ -0,0 +1,295 @@
+package burp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * NoteStore in a single local file, for solo testers who do not want to run
+ * a MySQL server.
+ *
+ * Notes are served from memory like InMemoryNoteStore; every change is first
+ * appended to the file and forced to disk, so an action costs one local
+ * write instead of a network round-trip. The file uses the journal's record
+ * framing ([length][CRC32][payload]); a payload is either an insert (id,
+ * time, client reference, domain, content, the content optionally
+ * compressed), a delete (ids) or the next id to hand out, so ids of deleted
+ * notes are never reused. On open the file is replayed and a torn tail is
+ * truncated. When deleted notes make up most of the file it is rewritten
+ * with only the live notes, using the current compression setting. An undone
+ * delete writes its notes again as inserts; deleted notes are not kept across
+ * a restart, so the undo window ends with the session.
+ */
+public class EmbeddedNoteStore extends InMemoryNoteStore {
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+    private static final byte NEXT_ID = 3;
+    private static final byte INSERT_COMPRESSED = 4;
+    private static final int MIN_COMPACT_GARBAGE = 1000;
+
+    private final Path file;
+    private FileChannel channel;
+    private int liveNotes;
+    private int garbageRecords;
+    private volatile int compressionThreshold;
+
+    public EmbeddedNoteStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes bodies of at least thresholdChars compressed (see NoteCodec); 0
+     * writes them as text. Compressed records are read back either way, and
+     * notes in memory are always kept as text.
+     */
+    public void setCompressionThreshold(int thresholdChars) {
+        this.compressionThreshold = thresholdChars;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized List<String> open() throws SQLException {
+        List<String> changes = new ArrayList<>();
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            if (!Files.exists(file)) {
+                changes.add("Create " + file);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long valid = replay();
+            if (valid < channel.size()) {
+                changes.add("Discard " + (channel.size() - valid) + " byte(s) of torn records at the end of " + file);
+                channel.truncate(valid);
+                channel.force(true);
+            }
+            channel.position(valid);
+            if (shouldCompact()) {
+                changes.add("Compact " + file + ", dropping " + garbageRecords + " record(s) of deleted notes");
+                compact(Collections.<Integer>emptySet());
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to open " + file + ": " + e.getMessage(), e);
+        }
+        return changes;
+    }
+
+    private long replay() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(NoteJournal.HEADER_BYTES);
+        while (position + NoteJournal.HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > NoteJournal.MAX_RECORD_BYTES || position + NoteJournal.HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + NoteJournal.HEADER_BYTES);
+            if (NoteJournal.crc(payload.array()) != checksum) {
+                break;
+            }
+            payload.flip();
+            apply(payload);
+            position += NoteJournal.HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private void apply(ByteBuffer payload) {
+        byte type = payload.get();
+        if (type == INSERT || type == INSERT_COMPRESSED) {
+            int id = payload.getInt();
+            Timestamp time = new Timestamp(payload.getLong());
+            String ref = NoteJournal.readString(payload);
+            String domain = NoteJournal.readString(payload);
+            String content;
+            if (type == INSERT) {
+                content = NoteJournal.readString(payload);
+            } else {
+                byte[] data = new byte[payload.getInt()];
+                payload.get(data);
+                content = NoteCodec.decompress(NoteCodec.DEFLATE, data);
+            }
+            restore(new Note(id, ref, domain, content, time));
+            liveNotes++;
+        } else if (type == DELETE) {
+            int count = payload.getInt();
+            for (int i = 0; i < count; i++) {
+                if (remove(payload.getInt()) != null) {
+                    liveNotes--;
+                    garbageRecords++;
+                }
+            }
+            garbageRecords++;
+        } else if (type == NEXT_ID) {
+            reserveIds(payload.getInt());
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    @Override
+    protected void beforeInsert(List<Note> notes) throws SQLException {
+        try {
+            // Nothing is written unless every note fits in a record
+            List<byte[]> records = new ArrayList<>(notes.size());
+            for (Note note : notes) {
+                byte[] payload = encodeInsert(note);
+                if (payload.length > NoteJournal.MAX_RECORD_BYTES) {
+                    throw new SQLDataException("Note for " + note.domain + " is too large for " + file + ": "
+                            + payload.length / (1024 * 1024) + " MB", "22001");
+                }
+                records.add(payload);
+            }
+            // One fsync for the whole batch
+            for (byte[] payload : records) {
+                write(payload);
+            }
+            channel.force(false);
+            liveNotes += notes.size();
+        } catch (IOException e) {
+            throw new SQLException("Failed to write to " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void beforeDelete(Collection<Integer> ids) throws SQLException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(5 + ids.size() * 4);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(DELETE);
+            out.writeInt(ids.size());
+            for (Integer id : ids) {
+                out.writeInt(id);
+            }
+            out.flush();
+            write(bytes.toByteArray());
+            channel.force(false);
+            liveNotes -= ids.size();
+            garbageRecords += ids.size() + 1;
+            if (shouldCompact()) {
+                // The deleted notes are still in memory at this point
+                compact(ids);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to write to " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private byte[] encodeInsert(Note note) throws IOException {
+        byte[] compressed = NoteCodec.compress(note.content, compressionThreshold);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((compressed != null ? compressed.length : note.content.length()) + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(compressed != null ? INSERT_COMPRESSED : INSERT);
+        out.writeInt(note.id);
+        out.writeLong(note.createTime.getTime());
+        NoteJournal.writeString(out, note.ref);
+        NoteJournal.writeString(out, note.domain);
+        if (compressed != null) {
+            out.writeInt(compressed.length);
+            out.write(compressed);
+        } else {
+            NoteJournal.writeString(out, note.content);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void write(byte[] payload) throws IOException {
+        NoteJournal.checkRecordSize(payload.length);
+        ByteBuffer record = ByteBuffer.allocate(NoteJournal.HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(NoteJournal.crc(payload)).put(payload);
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    private boolean shouldCompact() {
+        return garbageRecords >= MIN_COMPACT_GARBAGE && garbageRecords > liveNotes;
+    }
+
+    /**
+     * Rewrites the file with only the live notes, minus the excluded ids, and
+     * swaps it in atomically.
+     */
+    private void compact(Collection<Integer> excluded) throws IOException {
+        Set<Integer> skip = new HashSet<>(excluded);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            FileChannel original = channel;
+            channel = out;
+            try {
+                write(ByteBuffer.allocate(5).put(NEXT_ID).putInt(nextId()).array());
+                for (Note note : snapshot()) {
+                    if (!skip.contains(note.id)) {
+                        write(encodeInsert(note));
+                    }
+                }
+            } finally {
+                channel = original;
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        garbageRecords = 0;
+    }
+
+    @Override
+    public synchronized String describe() {
+        long size;
+        try {
+            size = channel == null ? 0 : channel.size();
+        } catch (IOException e) {
+            size = 0;
+        }
+        return "Embedded store " + file + ": " + liveNotes + " notes, " + size / 1024 + " KB on disk";
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException ignored) {
+            // Every change was already forced when it was made
+        }
+        channel = null;
+    }
+}
@@ -0,0 +1,195 @@
+package burp;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Captures API endpoint templates per host from live proxy traffic.
+ *
+ * The HTTP listener runs on Burp's proxy threads, so it does nothing but
+ * drop the message into a lock-free bounded ring buffer; when the buffer is
+ * full the message is skipped rather than slowing the proxy. A single
+ * background thread parses the request line, normalizes the path, filters
+ * static assets and out-of-scope hosts, and deduplicates against everything
+ * seen this session. New endpoints are periodically written as one note per
+ * host through the write-behind queue.
+ *
+ * The time spent inside the listener is measured so its cost on the proxy
+ * can be checked at any time.
+ */
+public class EndpointCapture implements IHttpListener {
+    private static final int BUFFER_CAPACITY = 16_384;
+    private static final int MAX_SEEN = 500_000;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long ENQUEUE_TIMEOUT_MS = 1_000;
+    private static final String NOTE_HEADER = "# Endpoints captured from proxy traffic\n";
+
+    private final IBurpExtenderCallbacks callbacks;
+    private final NoteWriteQueue writeQueue;
+    private final long flushIntervalMillis;
+    private final MpscRingBuffer<IHttpRequestResponse> buffer = new MpscRingBuffer<>(BUFFER_CAPACITY);
+
+    private volatile boolean enabled;
+    private volatile boolean inScopeOnly = true;
+    private volatile boolean running;
+    private Thread pipeline;
+
+    // Hot-path counters; LongAdder avoids contention between proxy threads
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder listenerNanos = new LongAdder();
+    // Pipeline counters, written by the pipeline thread only
+    private volatile long processed;
+    private volatile long uniqueEndpoints;
+    private volatile long notesWritten;
+
+    // Pipeline thread state
+    private final Set<String> seen = new HashSet<>();
+    private final Map<String, Set<String>> fresh = new HashMap<>();
+
+    public EndpointCapture(IBurpExtenderCallbacks callbacks, NoteWriteQueue writeQueue, long flushIntervalMillis) {
+        this.callbacks = callbacks;
+        this.writeQueue = writeQueue;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    @Override
+    public void processHttpMessage(int toolFlag, boolean messageIsRequest, IHttpRequestResponse messageInfo) {
+        // Capture on the response so the request is final and actually reached a server
+        if (!enabled || messageIsRequest || toolFlag != IBurpExtenderCallbacks.TOOL_PROXY) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (!buffer.offer(messageInfo)) {
+            dropped.increment();
+        }
+        offered.increment();
+        listenerNanos.add(System.nanoTime() - start);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setInScopeOnly(boolean inScopeOnly) {
+        this.inScopeOnly = inScopeOnly;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        pipeline = new Thread(this::run, "BurpNote-endpoint-capture");
+        pipeline.setDaemon(true);
+        pipeline.start();
+    }
+
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = pipeline;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(ENQUEUE_TIMEOUT_MS * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        long nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+        while (running) {
+            IHttpRequestResponse message = buffer.poll();
+            if (message != null) {
+                process(message);
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            if (System.currentTimeMillis() >= nextFlush) {
+                flush();
+                nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+            }
+        }
+        flush();
+    }
+
+    private void process(IHttpRequestResponse message) {
+        processed++;
+        try {
+            IHttpService service = message.getHttpService();
+            String[] requestLine = EndpointNormalizer.parseRequestLine(message.getRequest());
+            if (service == null || requestLine == null || EndpointNormalizer.isStaticAsset(stripQuery(requestLine[1]))) {
+                return;
+            }
+            String host = service.getHost();
+            if (inScopeOnly && !callbacks.isInScope(new URL(service.getProtocol(), host, service.getPort(), stripQuery(requestLine[1])))) {
+                return;
+            }
+            String endpoint = requestLine[0] + " " + EndpointNormalizer.normalizePath(requestLine[1]);
+            if (seen.size() >= MAX_SEEN) {
+                // Bounded memory; at worst an endpoint is recorded again later
+                seen.clear();
+            }
+            if (seen.add(host + " " + endpoint)) {
+                uniqueEndpoints++;
+                fresh.computeIfAbsent(host, h -> new TreeSet<>()).add(endpoint);
+            }
+        } catch (Exception ignored) {
+            // Malformed or unusual messages are simply not captured
+        }
+    }
+
+    private void flush() {
+        if (fresh.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Set<String>> entry : fresh.entrySet()) {
+            StringBuilder content = new StringBuilder(NOTE_HEADER);
+            for (String endpoint : entry.getValue()) {
+                content.append(endpoint).append('\n');
+            }
+            try {
+                if (writeQueue.submit(entry.getKey(), content.toString(), ENQUEUE_TIMEOUT_MS)) {
+                    notesWritten++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                callbacks.printError("Failed to queue captured endpoints for " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        fresh.clear();
+    }
+
+    private static String stripQuery(String path) {
+        int query = path.indexOf('?');
+        return query >= 0 ? path.substring(0, query) : path;
+    }
+
+    /**
+     * One-line summary including the average time spent on the proxy thread.
+     */
+    public String describe() {
+        long calls = offered.sum();
+        double avgNanos = calls == 0 ? 0 : (double) listenerNanos.sum() / calls;
+        return String.format("Captured %d responses, %d unique endpoints, %d notes | dropped %d | listener avg %.0f ns",
+                processed, uniqueEndpoints, notesWritten, dropped.sum(), avgNanos);
+    }
+}
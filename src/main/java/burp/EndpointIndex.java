@@ -0,0 +1,154 @@
+package burp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Child table of the endpoints listed in each note, for set queries across
+ * notes ("which endpoints of api.example.com are not in note #12?").
+ *
+ * Every note body is parsed once, on insert or by EndpointIndexer, into
+ * (note_id, domain, method, path) rows with the path normalized by
+ * EndpointNormalizer. The primary key (domain, method, path, note_id) answers
+ * domain operands and the EXISTS probes of intersections and differences; a
+ * second key on (note_id, method, path) answers note operands. Rows go away
+ * with their note through the foreign key once it is purged; until then
+ * queries skip tombstoned notes.
+ */
+public class EndpointIndex {
+    private static final int BATCH_SIZE = 500;
+
+    private final String endpointTable;
+    private final String noteTable;
+
+    public EndpointIndex(String endpointTable, String noteTable) {
+        this.endpointTable = endpointTable;
+        this.noteTable = noteTable;
+    }
+
+    public String getEndpointTable() {
+        return endpointTable;
+    }
+
+    /**
+     * Adds the endpoints of the given notes, each {id, domain, content};
+     * endpoints already indexed for a note are ignored.
+     */
+    public int index(Connection conn, List<Object[]> notes) throws SQLException {
+        String sql = "INSERT IGNORE INTO " + endpointTable + " (note_id, domain, method, path) VALUES (?, ?, ?, ?)";
+        int added = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int pending = 0;
+            for (Object[] note : notes) {
+                for (String[] endpoint : EndpointNormalizer.parseEndpoints((String) note[2])) {
+                    pstmt.setInt(1, (Integer) note[0]);
+                    pstmt.setString(2, note[1] == null ? "" : (String) note[1]);
+                    pstmt.setString(3, endpoint[0]);
+                    pstmt.setString(4, endpoint[1]);
+                    pstmt.addBatch();
+                    added++;
+                    if (++pending == BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                pstmt.executeBatch();
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Evaluates the query on the index; rows as described by EndpointQuery.
+     */
+    public List<Object[]> query(Connection conn, EndpointQuery query, int timeoutSeconds) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql;
+        String a = condition(conn, "x", query.a, params);
+        if (query.operation == EndpointQuery.Operation.COUNT) {
+            sql = "SELECT domain, COUNT(*) FROM (SELECT DISTINCT x.domain, x.method, x.path FROM " + endpointTable + " x" +
+                    " WHERE " + a + ") d GROUP BY domain ORDER BY domain";
+        } else if (query.operation == EndpointQuery.Operation.UNION) {
+            String from = endpointTable + " x WHERE " + a;
+            if (query.b != null) {
+                // Each side on its own index; the UNION drops notes in both
+                String b = condition(conn, "x", query.b, params);
+                from = "(SELECT x.note_id, x.method, x.path FROM " + from +
+                        " UNION SELECT x.note_id, x.method, x.path FROM " + endpointTable + " x WHERE " + b + ") x";
+            }
+            sql = "SELECT x.method, x.path, COUNT(DISTINCT x.note_id) FROM " + from +
+                    " GROUP BY x.method, x.path ORDER BY x.path, x.method";
+        } else {
+            String b = condition(conn, "y", query.b, params);
+            sql = "SELECT x.method, x.path, COUNT(DISTINCT x.note_id) FROM " + endpointTable + " x WHERE " + a +
+                    (query.operation == EndpointQuery.Operation.DIFF ? " AND NOT EXISTS" : " AND EXISTS") +
+                    " (SELECT 1 FROM " + endpointTable + " y WHERE " + b + " AND y.method = x.method AND y.path = x.path)" +
+                    " GROUP BY x.method, x.path ORDER BY x.path, x.method";
+        }
+        sql += " LIMIT " + EndpointQuery.RESULT_LIMIT;
+
+        List<Object[]> rows = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setQueryTimeout(timeoutSeconds);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            int columns = query.columnNames().length;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(columns == 2
+                            ? new Object[]{rs.getString(1), rs.getInt(2)}
+                            : new Object[]{rs.getString(1), rs.getString(2), rs.getInt(3)});
+                }
+            }
+        }
+        return rows;
+    }
+
+    // SQL condition selecting the operand's rows of the aliased endpoint table,
+    // leaving out notes waiting to be purged (there are few, so the subquery is small)
+    private String condition(Connection conn, String alias, EndpointQuery.Operand operand, List<Object> params)
+            throws SQLException {
+        return "(" + operandCondition(conn, alias, operand, params) + " AND " + alias + ".note_id NOT IN (" +
+                "SELECT id FROM " + noteTable + " WHERE deleted_at IS NOT NULL))";
+    }
+
+    private String operandCondition(Connection conn, String alias, EndpointQuery.Operand operand, List<Object> params)
+            throws SQLException {
+        if (operand.noteId != null) {
+            params.add(operand.noteId);
+            return alias + ".note_id = ?";
+        }
+        if (!operand.suffix) {
+            params.add(operand.domain);
+            return alias + ".domain = ?";
+        }
+        // Resolve "*.example.com" on the reversed domain index first, so the
+        // endpoint table is only probed by its primary key
+        List<String> domains = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT DISTINCT domain FROM " + noteTable + " WHERE domain_rev LIKE ?")) {
+            pstmt.setString(1, DomainGramIndex.reversedSuffixPattern("*" + operand.domain));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    domains.add(rs.getString(1));
+                }
+            }
+        }
+        if (domains.isEmpty()) {
+            return "1 = 0";
+        }
+        StringBuilder in = new StringBuilder(alias).append(".domain IN (");
+        for (int i = 0; i < domains.size(); i++) {
+            in.append(i == 0 ? "?" : ", ?");
+        }
+        params.addAll(domains);
+        return in.append(')').toString();
+    }
+}
@@ -0,0 +1,120 @@
+package burp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Background job that fills the endpoint table for notes stored before it
+ * existed.
+ *
+ * It walks the table in ascending id chunks, like NoteDeduplicator, reads
+ * each body (decompressing it if needed) and adds its endpoints with
+ * INSERT IGNORE, so re-running a chunk is harmless. Notes inserted since the
+ * table was created are indexed on insert; the job stores its progress in
+ * the jobs table and does nothing once it has caught up.
+ */
+public class EndpointIndexer implements Runnable {
+    public static final String JOB_NAME = "index_endpoints";
+    private static final String DONE = "done";
+
+    private final String table;
+    private final String jobTable;
+    private final EndpointIndex endpointIndex;
+    private final ConnectionPool pool;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final Consumer<String> log;
+
+    public EndpointIndexer(String table, String jobTable, EndpointIndex endpointIndex, ConnectionPool pool,
+                           int chunkSize, long pauseMillis, Consumer<String> log) {
+        this.table = table;
+        this.jobTable = jobTable;
+        this.endpointIndex = endpointIndex;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.log = log;
+    }
+
+    @Override
+    public void run() {
+        try {
+            String state = readState();
+            if (DONE.equals(state)) {
+                return;
+            }
+            long lastId = state == null ? 0 : Long.parseLong(state);
+            long maxId = readMaxId();
+            long endpoints = 0;
+            while (lastId < maxId && !pool.isClosed() && !Thread.currentThread().isInterrupted()) {
+                long upTo = Math.min(lastId + chunkSize, maxId);
+                endpoints += processChunk(lastId, upTo);
+                lastId = upTo;
+                writeState(Long.toString(lastId));
+                Thread.sleep(pauseMillis);
+            }
+            if (lastId >= maxId) {
+                writeState(DONE);
+                log.accept("Endpoint index built; found " + endpoints + " endpoint(s) in existing notes.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Progress is saved per chunk; the next connect resumes from there
+            log.accept("Endpoint indexing paused: " + e.getMessage());
+        }
+    }
+
+    private long processChunk(long afterId, long upToId) throws SQLException {
+        List<Object[]> notes = new ArrayList<>();
+        try (Connection conn = pool.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT id, domain, content, content_codec, content_blob FROM " + table + " WHERE id > ? AND id <= ?")) {
+                pstmt.setLong(1, afterId);
+                pstmt.setLong(2, upToId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        byte codec = rs.getByte(4);
+                        String content = codec == NoteCodec.PLAIN ? rs.getString(3) : NoteCodec.decompress(codec, rs.getBytes(5));
+                        notes.add(new Object[]{rs.getInt(1), rs.getString(2), content});
+                    }
+                }
+            }
+            return endpointIndex.index(conn, notes);
+        }
+    }
+
+    private long readMaxId() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM " + table);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private String readState() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT state FROM " + jobTable + " WHERE name = ?")) {
+            pstmt.setString(1, JOB_NAME);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private void writeState(String state) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "INSERT INTO " + jobTable + " (name, state) VALUES (?, ?) ON DUPLICATE KEY UPDATE state = VALUES(state)")) {
+            pstmt.setString(1, JOB_NAME);
+            pstmt.setString(2, state);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package burp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns concrete request paths into endpoint templates, e.g.
+ * "/api/v2/users/1234/orders/9f1c...e2" becomes "/api/v2/users/{id}/orders/{uuid}".
+ */
+public final class EndpointNormalizer {
+    private static final Pattern NUMERIC = Pattern.compile("\\d+");
+    private static final Pattern UUID = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]{16,}");
+    // Long opaque tokens mixing letters and digits (session ids, base64 keys)
+    private static final Pattern TOKEN = Pattern.compile("(?=.*\\d)(?=.*[A-Za-z])[A-Za-z0-9_\\-=]{24,}");
+    private static final Pattern STATIC_ASSET = Pattern.compile(
+            ".*\\.(?:js|mjs|css|map|png|jpe?g|gif|svg|ico|webp|bmp|woff2?|ttf|eot|otf|mp4|webm|mp3)$",
+            Pattern.CASE_INSENSITIVE);
+    private static final int MAX_REQUEST_LINE = 8192;
+    private static final Pattern METHOD = Pattern.compile("[A-Z]{3,10}");
+    /** Method recorded for a path listed without one. */
+    public static final String ANY_METHOD = "*";
+    /** Longer paths are not indexed; they fit no sensible endpoint template. */
+    public static final int MAX_PATH_CHARS = 500;
+
+    private EndpointNormalizer() {
+    }
+
+    /**
+     * Strips the query and fragment and replaces variable segments with placeholders.
+     */
+    public static String normalizePath(String path) {
+        int end = path.length();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = path.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        String[] segments = path.substring(0, end).split("/", -1);
+        StringBuilder normalized = new StringBuilder(end + 8);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (i > 0) {
+                normalized.append('/');
+            }
+            if (NUMERIC.matcher(segment).matches()) {
+                normalized.append("{id}");
+            } else if (UUID.matcher(segment).matches()) {
+                normalized.append("{uuid}");
+            } else if (HEX.matcher(segment).matches()) {
+                normalized.append("{hex}");
+            } else if (TOKEN.matcher(segment).matches()) {
+                normalized.append("{token}");
+            } else {
+                normalized.append(segment);
+            }
+        }
+        return normalized.length() == 0 ? "/" : normalized.toString();
+    }
+
+    /**
+     * Distinct {method, normalized path} pairs listed in a note, one endpoint
+     * per line: "GET /api/users/1", "POST https://host/api/login -> 200",
+     * "- /health". Lines without a path, such as "#" headings, are skipped;
+     * a path without a method gets ANY_METHOD.
+     */
+    public static List<String[]> parseEndpoints(String content) {
+        List<String[]> endpoints = new ArrayList<>();
+        if (content == null) {
+            return endpoints;
+        }
+        Set<String> seen = new HashSet<>();
+        for (String line : content.split("\n")) {
+            String[] tokens = line.trim().split("\\s+");
+            int i = 0;
+            if (i < tokens.length && (tokens[i].equals("-") || tokens[i].equals("*"))) {
+                i++; // List bullet
+            }
+            String method = ANY_METHOD;
+            if (i < tokens.length && METHOD.matcher(tokens[i]).matches()) {
+                method = tokens[i++];
+            }
+            if (i >= tokens.length) {
+                continue;
+            }
+            String target = tokens[i];
+            int scheme = target.indexOf("://");
+            if (scheme > 0) {
+                int pathStart = target.indexOf('/', scheme + 3);
+                target = pathStart >= 0 ? target.substring(pathStart) : "/";
+            }
+            if (!target.startsWith("/")) {
+                continue;
+            }
+            String path = normalizePath(target);
+            if (path.length() <= MAX_PATH_CHARS && seen.add(method + " " + path)) {
+                endpoints.add(new String[]{method, path});
+            }
+        }
+        return endpoints;
+    }
+
+    public static boolean isStaticAsset(String path) {
+        return STATIC_ASSET.matcher(path).matches();
+    }
+
+    /**
+     * Method and path from the request line of a raw HTTP request, or null if
+     * it cannot be parsed. Absolute-form targets ("http://host/path") are
+     * reduced to their path.
+     */
+    public static String[] parseRequestLine(byte[] request) {
+        if (request == null) {
+            return null;
+        }
+        int limit = Math.min(request.length, MAX_REQUEST_LINE);
+        int lineEnd = 0;
+        while (lineEnd < limit && request[lineEnd] != '\r' && request[lineEnd] != '\n') {
+            lineEnd++;
+        }
+        String line = new String(request, 0, lineEnd, StandardCharsets.ISO_8859_1);
+        int firstSpace = line.indexOf(' ');
+        int lastSpace = line.lastIndexOf(' ');
+        if (firstSpace <= 0 || lastSpace <= firstSpace) {
+            return null;
+        }
+        String method = line.substring(0, firstSpace).toUpperCase(Locale.ROOT);
+        String target = line.substring(firstSpace + 1, lastSpace);
+        int scheme = target.indexOf("://");
+        if (scheme >= 0) {
+            int pathStart = target.indexOf('/', scheme + 3);
+            target = pathStart >= 0 ? target.substring(pathStart) : "/";
+        }
+        if (!target.startsWith("/")) {
+            return null; // CONNECT host:port, OPTIONS *
+        }
+        return new String[]{method, target};
+    }
+}
@@ -0,0 +1,186 @@
+package burp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A set query over the endpoints listed in notes.
+ *
+ * Each operand is either a note ("#123") or a domain ("api.example.com", or
+ * "*.example.com" for its subdomains). UNION, INTERSECT and DIFF return the
+ * distinct (method, path) pairs in A or B, in both, and in A but not B,
+ * each with the number of notes in A (and B, for a union) that list it;
+ * COUNT returns the number of distinct endpoints per domain of A. Stores
+ * answer it with an index on the endpoint table where they have one;
+ * evaluate() is the reference implementation for stores that scan notes.
+ */
+public class EndpointQuery {
+    public static final int RESULT_LIMIT = 10_000;
+    public static final String[] SET_COLUMNS = {"Method", "Path", "Notes"};
+    public static final String[] COUNT_COLUMNS = {"Domain", "Endpoints"};
+
+    public enum Operation {
+        UNION("Union (A or B)"),
+        INTERSECT("Intersection (A and B)"),
+        DIFF("Difference (A not B)"),
+        COUNT("Count per domain (A)");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * A note id or a domain pattern.
+     */
+    public static final class Operand {
+        public final Integer noteId;
+        public final String domain;
+        public final boolean suffix;
+
+        private Operand(Integer noteId, String domain, boolean suffix) {
+            this.noteId = noteId;
+            this.domain = domain;
+            this.suffix = suffix;
+        }
+
+        /**
+         * "#123" is a note, "*.example.com" every subdomain of example.com,
+         * anything else a single domain.
+         */
+        public static Operand parse(String text) {
+            String value = text.trim();
+            if (value.startsWith("#")) {
+                try {
+                    return new Operand(Integer.parseInt(value.substring(1).trim()), null, false);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a note id: " + value);
+                }
+            }
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Enter a note (#id) or a domain");
+            }
+            if (DomainGramIndex.reversedSuffixPattern(value) != null) {
+                return new Operand(null, value.substring(1).toLowerCase(Locale.ROOT), true);
+            }
+            return new Operand(null, value, false);
+        }
+
+        /**
+         * Whether a note with this id and domain belongs to the operand.
+         */
+        public boolean matches(int id, String noteDomain) {
+            if (noteId != null) {
+                return noteId == id;
+            }
+            String lower = noteDomain == null ? "" : noteDomain.toLowerCase(Locale.ROOT);
+            return suffix ? lower.endsWith(domain) : lower.equals(domain.toLowerCase(Locale.ROOT));
+        }
+
+        @Override
+        public String toString() {
+            return noteId != null ? "#" + noteId : suffix ? "*" + domain : domain;
+        }
+    }
+
+    /**
+     * Source of the notes to evaluate against: {id, domain, content}.
+     */
+    public interface NoteSource {
+        void forEach(NoteVisitor visitor);
+    }
+
+    public interface NoteVisitor {
+        void visit(int id, String domain, String content);
+    }
+
+    public final Operation operation;
+    public final Operand a;
+    public final Operand b;
+
+    /**
+     * @param b ignored for COUNT; may be null for UNION
+     */
+    public EndpointQuery(Operation operation, Operand a, Operand b) {
+        if ((operation == Operation.INTERSECT || operation == Operation.DIFF) && b == null) {
+            throw new IllegalArgumentException(operation + " needs both A and B");
+        }
+        this.operation = operation;
+        this.a = a;
+        this.b = operation == Operation.COUNT ? null : b;
+    }
+
+    public String[] columnNames() {
+        return operation == Operation.COUNT ? COUNT_COLUMNS : SET_COLUMNS;
+    }
+
+    /**
+     * Evaluates the query by parsing every matching note. Rows are sorted by
+     * path and method (by domain for COUNT) and capped at RESULT_LIMIT.
+     */
+    public List<Object[]> evaluate(NoteSource notes) {
+        // "METHOD path" -> notes listing it (in A, or in A or B for a union)
+        Map<String, Set<Integer>> inA = new HashMap<>();
+        Set<String> inB = new HashSet<>();
+        Map<String, Set<String>> perDomain = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        notes.forEach((id, domain, content) -> {
+            boolean matchesA = a.matches(id, domain);
+            boolean matchesB = b != null && b.matches(id, domain);
+            if (!matchesA && !matchesB) {
+                return;
+            }
+            for (String[] endpoint : EndpointNormalizer.parseEndpoints(content)) {
+                String key = endpoint[0] + " " + endpoint[1];
+                if (operation == Operation.COUNT) {
+                    perDomain.computeIfAbsent(domain == null ? "" : domain, d -> new HashSet<>()).add(key);
+                    continue;
+                }
+                if (matchesA || (operation == Operation.UNION && matchesB)) {
+                    inA.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+                }
+                if (matchesB) {
+                    inB.add(key);
+                }
+            }
+        });
+        List<Object[]> rows = new ArrayList<>();
+        if (operation == Operation.COUNT) {
+            for (Map.Entry<String, Set<String>> entry : perDomain.entrySet()) {
+                rows.add(new Object[]{entry.getKey(), entry.getValue().size()});
+            }
+        } else {
+            for (Map.Entry<String, Set<Integer>> entry : inA.entrySet()) {
+                boolean keep = operation == Operation.UNION
+                        || (operation == Operation.INTERSECT) == inB.contains(entry.getKey());
+                if (keep) {
+                    int space = entry.getKey().indexOf(' ');
+                    rows.add(new Object[]{entry.getKey().substring(0, space), entry.getKey().substring(space + 1), entry.getValue().size()});
+                }
+            }
+            Collections.sort(rows, (x, y) -> {
+                int byPath = ((String) x[1]).compareTo((String) y[1]);
+                return byPath != 0 ? byPath : ((String) x[0]).compareTo((String) y[0]);
+            });
+        }
+        return rows.size() > RESULT_LIMIT ? new ArrayList<>(rows.subList(0, RESULT_LIMIT)) : rows;
+    }
+
+    @Override
+    public String toString() {
+        return operation == Operation.COUNT || b == null ? operation.name() + " " + a : operation.name() + " " + a + ", " + b;
+    }
+}
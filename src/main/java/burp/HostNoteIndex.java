@@ -0,0 +1,293 @@
+package burp;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of which hosts have notes, for lookups on the proxy path.
+ *
+ * Hosts are stored in a trie keyed by their labels in reverse order
+ * ("api.example.com" is com -> example -> api), with the number of notes
+ * for each exact host. Readers walk an immutable snapshot published through
+ * a volatile field, so lookups take no locks and allocate nothing: labels
+ * are hashed and compared directly against the host string.
+ *
+ * Writers update a mutable copy under a lock and republish only the nodes
+ * on changed paths; unchanged subtrees are shared with the old snapshot.
+ * The index is loaded at connect, adjusted by deletes, and kept current by
+ * a cheap watermark poll on MAX(id) that also picks up teammates' inserts.
+ *
+ * Hosts are normalized ("https://API.example.com/" is "api.example.com"),
+ * so the writer side also remembers the domains as stored in the notes,
+ * which are what the store's findByDomains matches against.
+ */
+public class HostNoteIndex {
+    private static final Node EMPTY = new Node(new String[0], new int[0], new Node[0], 0);
+
+    /**
+     * Immutable trie node; children are an open-addressing table keyed by label.
+     */
+    private static final class Node {
+        final String[] labels;
+        final int[] hashes;
+        final Node[] children;
+        final int count;
+
+        Node(String[] labels, int[] hashes, Node[] children, int count) {
+            this.labels = labels;
+            this.hashes = hashes;
+            this.children = children;
+            this.count = count;
+        }
+
+        Node child(String host, int start, int end, int hash) {
+            int length = labels.length;
+            if (length == 0) {
+                return null;
+            }
+            int mask = length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                String label = labels[i];
+                if (label == null) {
+                    return null;
+                }
+                if (hashes[i] == hash && label.length() == end - start
+                        && label.regionMatches(true, 0, host, start, end - start)) {
+                    return children[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Writer-side node; caches its frozen form until something below it changes.
+     */
+    private static final class MutableNode {
+        final Map<String, MutableNode> children = new HashMap<>();
+        int count;
+        Node frozen;
+    }
+
+    private volatile Node root = EMPTY;
+    private MutableNode master = new MutableNode();
+    private int hostCount;
+    private long watermark;
+    // Stored domains that normalize to each host, with their note counts
+    private final Map<String, Map<String, Integer>> domains = new HashMap<>();
+
+    /**
+     * Notes for exactly this host.
+     */
+    public int exactCount(String host) {
+        Node node = root;
+        int end = host.length();
+        while (end > 0 && node != null) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            node = node.child(host, start, end, hash(host, start, end));
+            end = start - 1;
+        }
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Notes for this host plus all of its parent domains, so notes filed under
+     * "example.com" also count for "api.example.com".
+     */
+    public int matchCount(String host) {
+        Node node = root;
+        int total = 0;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            node = node.child(host, start, end, hash(host, start, end));
+            if (node == null) {
+                break;
+            }
+            total += node.count;
+            end = start - 1;
+        }
+        return total;
+    }
+
+    public synchronized int getHostCount() {
+        return hostCount;
+    }
+
+    /**
+     * Domains as stored in the notes that normalize to exactly this host.
+     */
+    public synchronized Set<String> domainsFor(String host) {
+        String key = normalizeHost(host);
+        Map<String, Integer> stored = key == null ? null : domains.get(key);
+        return stored == null ? Collections.<String>emptySet() : new HashSet<>(stored.keySet());
+    }
+
+    /**
+     * Reads per-domain note counts and replaces the whole index.
+     */
+    public void load(NoteStore store) throws SQLException {
+        long mark = store.maxId();
+        Map<String, Integer> counts = store.countByDomain(0, mark);
+        synchronized (this) {
+            master = new MutableNode();
+            domains.clear();
+            hostCount = 0;
+            watermark = mark;
+            applyLocked(counts);
+        }
+    }
+
+    /**
+     * Adds the notes inserted since the last watermark. Returns the number of new notes.
+     */
+    public int pollChanges(NoteStore store) throws SQLException {
+        long from;
+        synchronized (this) {
+            from = watermark;
+        }
+        long mark = store.maxId();
+        if (mark <= from) {
+            return 0;
+        }
+        Map<String, Integer> counts = store.countByDomain(from, mark);
+        int added = 0;
+        for (int count : counts.values()) {
+            added += count;
+        }
+        synchronized (this) {
+            // Another poll may have covered this range meanwhile
+            if (watermark != from) {
+                return 0;
+            }
+            watermark = mark;
+            applyLocked(counts);
+        }
+        return added;
+    }
+
+    /**
+     * Adjusts counts by per-domain deltas, e.g. negative counts after a delete.
+     */
+    public synchronized void adjust(Map<String, Integer> domainDeltas) {
+        applyLocked(domainDeltas);
+    }
+
+    /**
+     * Lowercase host part of a domain as users tend to type it
+     * ("https://API.example.com:8443/v1" -> "api.example.com"), or null if empty.
+     */
+    public static String normalizeHost(String domain) {
+        if (domain == null) {
+            return null;
+        }
+        String host = domain.trim().toLowerCase(Locale.ROOT);
+        int scheme = host.indexOf("://");
+        if (scheme >= 0) {
+            host = host.substring(scheme + 3);
+        }
+        int end = host.length();
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c == '/' || c == ':' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        host = host.substring(0, end);
+        while (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        return host.isEmpty() ? null : host;
+    }
+
+    private void applyLocked(Map<String, Integer> domainDeltas) {
+        Map<String, Integer> deltas = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : domainDeltas.entrySet()) {
+            String domain = entry.getKey();
+            String host = normalizeHost(domain);
+            if (host == null) {
+                continue;
+            }
+            deltas.merge(host, entry.getValue(), Integer::sum);
+            Map<String, Integer> stored = domains.computeIfAbsent(host, key -> new HashMap<>());
+            if (stored.merge(domain, entry.getValue(), Integer::sum) <= 0) {
+                stored.remove(domain);
+            }
+            if (stored.isEmpty()) {
+                domains.remove(host);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+            String host = entry.getKey();
+            MutableNode node = master;
+            node.frozen = null;
+            int end = host.length();
+            while (end > 0) {
+                int start = host.lastIndexOf('.', end - 1) + 1;
+                node = node.children.computeIfAbsent(host.substring(start, end), label -> new MutableNode());
+                node.frozen = null;
+                end = start - 1;
+            }
+            int before = node.count;
+            node.count = Math.max(0, before + entry.getValue());
+            if (before == 0 && node.count > 0) {
+                hostCount++;
+            } else if (before > 0 && node.count == 0) {
+                hostCount--;
+            }
+        }
+        prune(master);
+        root = freeze(master);
+    }
+
+    // Drops empty leaves so hosts whose notes were all deleted do not linger
+    private static boolean prune(MutableNode node) {
+        if (node.frozen != null) {
+            return node.count == 0 && node.children.isEmpty();
+        }
+        node.children.values().removeIf(HostNoteIndex::prune);
+        return node.count == 0 && node.children.isEmpty();
+    }
+
+    private static Node freeze(MutableNode node) {
+        if (node.frozen != null) {
+            return node.frozen;
+        }
+        int size = Integer.highestOneBit(Math.max(1, node.children.size() * 2 - 1)) << 1;
+        if (node.children.isEmpty()) {
+            size = 0;
+        }
+        String[] labels = new String[size];
+        int[] hashes = new int[size];
+        Node[] children = new Node[size];
+        for (Map.Entry<String, MutableNode> entry : node.children.entrySet()) {
+            String label = entry.getKey();
+            int hash = hash(label, 0, label.length());
+            int i = hash & (size - 1);
+            while (labels[i] != null) {
+                i = (i + 1) & (size - 1);
+            }
+            labels[i] = label;
+            hashes[i] = hash;
+            children[i] = freeze(entry.getValue());
+        }
+        node.frozen = new Node(labels, hashes, children, node.count);
+        return node.frozen;
+    }
+
+    private static int hash(String value, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(value.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,94 @@
+package burp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.swing.JMenuItem;
+
+/**
+ * Marks proxy traffic for hosts that have notes and adds a
+ * "Show BurpNote notes for these hosts" context menu entry.
+ *
+ * Both only consult the in-memory HostNoteIndex; the database is touched
+ * once, by the context menu, with a single batched query for the stored
+ * domains of all selected hosts that actually have notes.
+ */
+public class HostNoteMarker implements IHttpListener, IContextMenuFactory {
+    private static final String HIGHLIGHT = "yellow";
+
+    private final HostNoteIndex index;
+    private final Consumer<Collection<String>> showNotes;
+    private volatile boolean highlightEnabled;
+
+    public HostNoteMarker(HostNoteIndex index, Consumer<Collection<String>> showNotes) {
+        this.index = index;
+        this.showNotes = showNotes;
+    }
+
+    public void setHighlightEnabled(boolean highlightEnabled) {
+        this.highlightEnabled = highlightEnabled;
+    }
+
+    @Override
+    public void processHttpMessage(int toolFlag, boolean messageIsRequest, IHttpRequestResponse messageInfo) {
+        if (!highlightEnabled || messageIsRequest || toolFlag != IBurpExtenderCallbacks.TOOL_PROXY) {
+            return;
+        }
+        IHttpService service = messageInfo.getHttpService();
+        if (service == null) {
+            return;
+        }
+        int notes = index.matchCount(service.getHost());
+        if (notes > 0) {
+            messageInfo.setHighlight(HIGHLIGHT);
+            String comment = messageInfo.getComment();
+            if (comment == null || comment.isEmpty()) {
+                messageInfo.setComment("BurpNote: " + notes + (notes == 1 ? " note" : " notes"));
+            }
+        }
+    }
+
+    @Override
+    public List<JMenuItem> createMenuItems(IContextMenuInvocation invocation) {
+        IHttpRequestResponse[] messages = invocation.getSelectedMessages();
+        if (messages == null || messages.length == 0) {
+            return Collections.emptyList();
+        }
+        JMenuItem item = new JMenuItem("Show BurpNote notes for these hosts");
+        item.addActionListener(e -> showNotes.accept(domainsWithNotes(messages)));
+        List<JMenuItem> items = new ArrayList<>(1);
+        items.add(item);
+        return items;
+    }
+
+    /**
+     * Stored domains of the messages' hosts and their parent domains, as
+     * the index knows them; notes filed as "https://Example.com/" are found
+     * for "example.com".
+     */
+    private Collection<String> domainsWithNotes(IHttpRequestResponse[] messages) {
+        Set<String> selected = new LinkedHashSet<>();
+        for (IHttpRequestResponse message : messages) {
+            IHttpService service = message.getHttpService();
+            if (service != null) {
+                selected.add(service.getHost().toLowerCase(Locale.ROOT));
+            }
+        }
+        Set<String> domains = new LinkedHashSet<>();
+        for (String host : selected) {
+            while (host != null) {
+                if (index.exactCount(host) > 0) {
+                    domains.addAll(index.domainsFor(host));
+                }
+                int dot = host.indexOf('.');
+                host = dot >= 0 ? host.substring(dot + 1) : null;
+            }
+        }
+        return domains;
+    }
+}
@@ -0,0 +1,512 @@
+package burp;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * NoteStore that keeps every note on the heap; nothing survives an unload.
+ *
+ * Meant for throwaway sessions and as the baseline when benchmarking the
+ * other backends. Notes are kept by id and in list order, so paging is a
+ * sorted-set range and needs no boundary bookkeeping; other orders and
+ * filters sort the matching rows once and reuse them until the next change.
+ * Searches scan all notes, which is fast enough for the sizes a single
+ * tester collects. Deleted notes are kept aside until purged so a delete can
+ * be undone.
+ *
+ * Subclasses can persist changes through the beforeInsert/beforeDelete
+ * hooks, which run under the store lock before the change becomes visible.
+ */
+public class InMemoryNoteStore implements NoteStore {
+    /**
+     * A stored note; immutable.
+     */
+    protected static final class Note {
+        final int id;
+        final String ref;
+        final String domain;
+        final String content;
+        final Timestamp createTime;
+
+        Note(int id, String ref, String domain, String content, Timestamp createTime) {
+            this.id = id;
+            this.ref = ref;
+            this.domain = domain;
+            this.content = content;
+            this.createTime = createTime;
+        }
+
+        String dedupeKey() {
+            // Domains compare case-insensitively, like the MySQL collation
+            return domain.toLowerCase(Locale.ROOT) + '\u0000'
+                    + Base64.getEncoder().encodeToString(NoteDeduplicator.contentHash(content));
+        }
+
+        Object[] toRow() {
+            // Counted in code points, like the MySQL store's preview and CHAR_LENGTH()
+            return new Object[]{id, domain, NoteCodec.preview(content), NoteCodec.length(content), createTime};
+        }
+    }
+
+    private static final class Tombstone {
+        final Note note;
+        final long deletedAt;
+
+        Tombstone(Note note, long deletedAt) {
+            this.note = note;
+            this.deletedAt = deletedAt;
+        }
+    }
+
+    private static final Comparator<Note> LIST_ORDER = Comparator.<Note, Timestamp>comparing(n -> n.createTime)
+            .thenComparingInt(n -> n.id).reversed();
+
+    private final TreeMap<Integer, Note> byId = new TreeMap<>();
+    private final TreeSet<Note> ordered = new TreeSet<>(LIST_ORDER);
+    private final Map<String, Integer> refs = new HashMap<>();
+    private final Map<String, Integer> dedupeKeys = new HashMap<>();
+    // Deleted notes that can still be restored, in delete order
+    private final LinkedHashMap<Integer, Tombstone> tombstones = new LinkedHashMap<>();
+    // Latest change per note, tombstones included, in (time, id) order for delta polls
+    private final TreeSet<NoteChange> changes = new TreeSet<>(
+            Comparator.<NoteChange>comparingLong(c -> c.changedAt).thenComparingInt(NoteChange::id));
+    private final Map<Integer, NoteChange> lastChanges = new HashMap<>();
+    private long changeClock;
+    private int nextId = 1;
+    // Rows of the last sorted or filtered list query; dropped on any change
+    private NoteListQuery sortedQuery;
+    private List<Object[]> sortedRows;
+    private static final int EXPORT_CHUNK = 1000;
+
+    @Override
+    public List<String> open() throws SQLException {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public synchronized String describe() {
+        return "In-memory store: " + byId.size() + " notes";
+    }
+
+    @Override
+    public synchronized void insertBatch(List<NoteJournal.Record> notes) throws SQLException {
+        List<Note> accepted = new ArrayList<>(notes.size());
+        Set<String> batchRefs = new HashSet<>();
+        Set<String> batchKeys = new HashSet<>();
+        int id = nextId;
+        long now = System.currentTimeMillis();
+        for (NoteJournal.Record record : notes) {
+            Note note = new Note(id, record.ref, record.domain == null ? "" : record.domain,
+                    record.content == null ? "" : record.content,
+                    record.createTime != null ? record.createTime : new Timestamp(now));
+            String key = note.dedupeKey();
+            if (refs.containsKey(note.ref) || dedupeKeys.containsKey(key)
+                    || !batchRefs.add(note.ref) || !batchKeys.add(key)) {
+                continue;
+            }
+            accepted.add(note);
+            id++;
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        beforeInsert(accepted);
+        for (Note note : accepted) {
+            restore(note);
+            recordChange(note, false);
+        }
+    }
+
+    @Override
+    public synchronized String search(SearchMode mode, String term, QueryCanceller canceller, RowSink sink) throws SQLException {
+        String lowerTerm = term.toLowerCase(Locale.ROOT);
+        if (mode == SearchMode.CONTENT) {
+            ContentQuery query = new ContentQuery(term);
+            int found = 0;
+            for (Note note : ordered) {
+                if (found >= CONTENT_SEARCH_LIMIT || canceller.isCancelled()) {
+                    break;
+                }
+                if (!query.isEmpty() && query.matches(note.content)) {
+                    sink.accept(note.toRow());
+                    found++;
+                }
+            }
+            return "content scan";
+        }
+        if (mode == SearchMode.EXACT) {
+            for (Note note : ordered) {
+                if (canceller.isCancelled()) {
+                    break;
+                }
+                if (note.domain.equalsIgnoreCase(term)) {
+                    sink.accept(note.toRow());
+                }
+            }
+            return "exact scan";
+        }
+        // "*.example.com" matches subdomains only, like the MySQL suffix search
+        boolean suffix = DomainGramIndex.reversedSuffixPattern(term) != null;
+        String needle = suffix ? lowerTerm.substring(1) : lowerTerm;
+        List<Object[]> rows = new ArrayList<>();
+        for (Note note : ordered) {
+            if (canceller.isCancelled()) {
+                return suffix ? "suffix scan" : "substring scan";
+            }
+            String domain = note.domain.toLowerCase(Locale.ROOT);
+            if (suffix ? domain.endsWith(needle) : domain.contains(needle)) {
+                rows.add(note.toRow());
+            }
+        }
+        // Ranking needs every match, so these rows are only handed over at the end
+        NoteStore.rankRows(rows, suffix ? term.substring(2) : term);
+        for (Object[] row : rows) {
+            sink.accept(row);
+        }
+        return suffix ? "suffix scan" : "substring scan";
+    }
+
+    @Override
+    public synchronized List<Object[]> findByDomains(Collection<String> domains) throws SQLException {
+        Set<String> wanted = new HashSet<>();
+        for (String domain : domains) {
+            wanted.add(domain.toLowerCase(Locale.ROOT));
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Note note : ordered) {
+            if (wanted.contains(note.domain.toLowerCase(Locale.ROOT))) {
+                rows.add(note.toRow());
+            }
+        }
+        // Stable sort keeps newest first within each domain
+        rows.sort(Comparator.comparing(row -> ((String) row[1]).toLowerCase(Locale.ROOT)));
+        return rows;
+    }
+
+    @Override
+    public synchronized int count(NoteListQuery query) throws SQLException {
+        return query.isFiltered() ? sorted(query.sortedBy(query.sort, true)).size() : byId.size();
+    }
+
+    @Override
+    public synchronized List<Object[]> page(NoteListQuery query, Object[] after, int skip, int limit) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        if (!query.isFiltered() && query.sort == NoteListQuery.SortColumn.TIME) {
+            // The list order is kept sorted; walk it from the key
+            NavigableSet<Note> notes = query.ascending ? ordered.descendingSet() : ordered;
+            if (after != null) {
+                notes = notes.tailSet(new Note((Integer) after[0], null, null, null, (Timestamp) after[4]), false);
+            }
+            int skipped = 0;
+            for (Note note : notes) {
+                if (rows.size() >= limit) {
+                    break;
+                }
+                if (skipped < skip) {
+                    skipped++;
+                    continue;
+                }
+                rows.add(note.toRow());
+            }
+            return rows;
+        }
+        if (!query.isFiltered() && query.sort == NoteListQuery.SortColumn.ID) {
+            NavigableMap<Integer, Note> notes = query.ascending ? byId : byId.descendingMap();
+            if (after != null) {
+                notes = notes.tailMap((Integer) after[0], false);
+            }
+            for (Note note : notes.values()) {
+                if (rows.size() >= limit) {
+                    break;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                rows.add(note.toRow());
+            }
+            return rows;
+        }
+        // One ascending list serves both directions
+        NoteListQuery ascending = query.sortedBy(query.sort, true);
+        List<Object[]> all = sorted(ascending);
+        int position = query.ascending ? 0 : all.size();
+        if (after != null) {
+            int found = Collections.binarySearch(all, after, ascending.rowComparator());
+            position = found >= 0 ? (query.ascending ? found + 1 : found) : -(found + 1);
+        }
+        if (query.ascending) {
+            int start = (int) Math.min(all.size(), (long) position + skip);
+            rows.addAll(all.subList(start, (int) Math.min(all.size(), (long) start + limit)));
+        } else {
+            for (int i = position - 1 - skip; i >= 0 && rows.size() < limit; i--) {
+                rows.add(all.get(i));
+            }
+        }
+        return rows;
+    }
+
+    // Rows passing the filter in ascending order, sorted once per query until the next change
+    private List<Object[]> sorted(NoteListQuery ascending) {
+        if (sortedRows != null && ascending.equals(sortedQuery)) {
+            return sortedRows;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Note note : ordered) {
+            Object[] row = note.toRow();
+            if (ascending.matches(row)) {
+                rows.add(row);
+            }
+        }
+        rows.sort(ascending.rowComparator());
+        sortedQuery = ascending;
+        sortedRows = rows;
+        return rows;
+    }
+
+    @Override
+    public synchronized Map<Integer, String> loadContent(Collection<Integer> ids) throws SQLException {
+        Map<Integer, String> loaded = new HashMap<>();
+        for (Integer id : ids) {
+            Note note = byId.get(id);
+            if (note != null) {
+                loaded.put(id, note.content);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public long exportNotes(long afterId, NoteSink sink) throws SQLException, IOException {
+        long count = 0;
+        long after = afterId;
+        List<Note> chunk = new ArrayList<>(EXPORT_CHUNK);
+        do {
+            // Notes are immutable, so the lock is only held while copying a chunk
+            chunk.clear();
+            synchronized (this) {
+                for (Note note : byId.tailMap((int) Math.min(after, Integer.MAX_VALUE), false).values()) {
+                    if (chunk.size() == EXPORT_CHUNK) {
+                        break;
+                    }
+                    chunk.add(note);
+                }
+            }
+            for (Note note : chunk) {
+                sink.accept(note.id, note.domain, note.content, note.createTime);
+                after = note.id;
+                count++;
+            }
+        } while (chunk.size() == EXPORT_CHUNK);
+        return count;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> delete(Collection<Integer> ids) throws SQLException {
+        List<Integer> existing = new ArrayList<>();
+        for (Integer id : ids) {
+            if (byId.containsKey(id) && !existing.contains(id)) {
+                existing.add(id);
+            }
+        }
+        Map<String, Integer> deleted = new HashMap<>();
+        if (existing.isEmpty()) {
+            return deleted;
+        }
+        beforeDelete(existing);
+        long now = System.currentTimeMillis();
+        for (Integer id : existing) {
+            Note note = remove(id);
+            tombstones.put(id, new Tombstone(note, now));
+            recordChange(note, true);
+            deleted.merge(note.domain, 1, Integer::sum);
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> undelete(Collection<Integer> ids) throws SQLException {
+        List<Note> restored = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        for (Integer id : ids) {
+            Tombstone tombstone = tombstones.get(id);
+            // A copy stored since the delete wins over the deleted note
+            if (tombstone != null && !dedupeKeys.containsKey(tombstone.note.dedupeKey())
+                    && keys.add(tombstone.note.dedupeKey())) {
+                restored.add(tombstone.note);
+            }
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        if (restored.isEmpty()) {
+            return counts;
+        }
+        beforeInsert(restored);
+        for (Note note : restored) {
+            tombstones.remove(note.id);
+            restore(note);
+            recordChange(note, false);
+            counts.merge(note.domain, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized int purgeDeleted(long olderThanMillis, int limit) throws SQLException {
+        // Tombstones are kept in delete order, so the oldest come first
+        long cutoff = System.currentTimeMillis() - olderThanMillis;
+        int purged = 0;
+        Iterator<Tombstone> it = tombstones.values().iterator();
+        while (purged < limit && it.hasNext()) {
+            Tombstone tombstone = it.next();
+            if (tombstone.deletedAt >= cutoff) {
+                break;
+            }
+            it.remove();
+            NoteChange change = lastChanges.remove(tombstone.note.id);
+            if (change != null) {
+                changes.remove(change);
+            }
+            purged++;
+        }
+        return purged;
+    }
+
+    @Override
+    public synchronized long changeWatermark() throws SQLException {
+        return Math.max(System.currentTimeMillis(), changeClock);
+    }
+
+    @Override
+    public synchronized List<NoteChange> changesSince(long afterMillis, int afterId, int limit) throws SQLException {
+        List<NoteChange> result = new ArrayList<>();
+        NoteChange from = new NoteChange(new Object[]{afterId}, false, afterMillis);
+        for (NoteChange change : changes.tailSet(from, false)) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(change);
+        }
+        return result;
+    }
+
+    // The clock never goes back, so a later change never sorts before an earlier one
+    private void recordChange(Note note, boolean deleted) {
+        changeClock = Math.max(System.currentTimeMillis(), changeClock);
+        NoteChange change = new NoteChange(note.toRow(), deleted, changeClock);
+        NoteChange previous = lastChanges.put(note.id, change);
+        if (previous != null) {
+            changes.remove(previous);
+        }
+        changes.add(change);
+    }
+
+    @Override
+    public synchronized long maxId() throws SQLException {
+        return nextId - 1;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> countByDomain(long afterId, long upToId) throws SQLException {
+        Map<String, Integer> counts = new HashMap<>();
+        int from = (int) Math.min(Integer.MAX_VALUE, afterId);
+        int to = (int) Math.min(Integer.MAX_VALUE, upToId);
+        if (from >= to) {
+            return counts;
+        }
+        for (Note note : byId.subMap(from, false, to, true).values()) {
+            counts.merge(note.domain, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized List<Object[]> endpoints(EndpointQuery query) throws SQLException {
+        // No endpoint table; parse the notes of the operands on every query
+        return query.evaluate(visitor -> {
+            for (Note note : byId.values()) {
+                visitor.visit(note.id, note.domain, note.content);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Called before new notes become visible; throwing rejects the whole batch.
+     */
+    protected void beforeInsert(List<Note> notes) throws SQLException {
+    }
+
+    /**
+     * Called before existing notes are removed; throwing keeps them.
+     */
+    protected void beforeDelete(Collection<Integer> ids) throws SQLException {
+    }
+
+    /**
+     * Adds a note with its id as-is, e.g. when replaying a persisted store.
+     */
+    protected final synchronized void restore(Note note) {
+        byId.put(note.id, note);
+        ordered.add(note);
+        sortedRows = null;
+        refs.put(note.ref, note.id);
+        dedupeKeys.put(note.dedupeKey(), note.id);
+        nextId = Math.max(nextId, note.id + 1);
+    }
+
+    /**
+     * Removes a note by id; returns it, or null if it did not exist.
+     */
+    protected final synchronized Note remove(int id) {
+        Note note = byId.remove(id);
+        if (note != null) {
+            ordered.remove(note);
+            sortedRows = null;
+            dedupeKeys.remove(note.dedupeKey());
+            // The client reference stays known so a replayed insert remains a no-op
+        }
+        return note;
+    }
+
+    /**
+     * The id the next inserted note will get.
+     */
+    protected final synchronized int nextId() {
+        return nextId;
+    }
+
+    /**
+     * Makes sure ids below the given one are never handed out again.
+     */
+    protected final synchronized void reserveIds(int next) {
+        nextId = Math.max(nextId, next);
+    }
+
+    /**
+     * Current notes in id order, for subclasses that rewrite their storage.
+     */
+    protected final synchronized List<Note> snapshot() {
+        return new ArrayList<>(byId.values());
+    }
+}
@@ -0,0 +1,245 @@
+package burp;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NoteStore decorator that times every call into OperationMetrics.
+ *
+ * Rows are the notes returned or written; bytes are estimated from the
+ * characters of the text moved (domains, previews, contents), which is what
+ * dominates the traffic to a remote database.
+ */
+public class MeteredNoteStore implements NoteStore {
+    public static final String OPEN = "connect";
+    public static final String INSERT = "insert";
+    public static final String SEARCH = "search";
+    public static final String FIND_BY_DOMAINS = "host lookup";
+    public static final String LIST_COUNT = "list refresh";
+    public static final String PAGE = "list page";
+    public static final String LOAD_CONTENT = "load content";
+    public static final String DELETE = "delete";
+    public static final String UNDELETE = "undo delete";
+    public static final String PURGE = "purge";
+    public static final String WATERMARK = "change poll";
+    public static final String CHANGES = "list delta";
+    public static final String EXPORT = "export";
+    public static final String ENDPOINTS = "endpoint query";
+
+    private interface Call<T> {
+        T run() throws SQLException;
+    }
+
+    private final NoteStore delegate;
+    private final OperationMetrics metrics;
+
+    public MeteredNoteStore(NoteStore delegate, OperationMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public NoteStore getDelegate() {
+        return delegate;
+    }
+
+    private <T> T time(String operation, Call<T> call) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            T result = call.run();
+            metrics.get(operation).record(System.nanoTime() - start, rowsOf(result), bytesOf(result));
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            metrics.get(operation).recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        return 0;
+    }
+
+    private static long bytesOf(Object result) {
+        long bytes = 0;
+        if (result instanceof List) {
+            for (Object row : (List<?>) result) {
+                if (row instanceof Object[]) {
+                    for (Object cell : (Object[]) row) {
+                        bytes += length(cell);
+                    }
+                }
+            }
+        } else if (result instanceof Map) {
+            for (Object value : ((Map<?, ?>) result).values()) {
+                bytes += length(value);
+            }
+        }
+        return bytes;
+    }
+
+    private static long length(Object value) {
+        return value instanceof String ? ((String) value).length() : 0;
+    }
+
+    @Override
+    public List<String> open() throws SQLException {
+        return time(OPEN, delegate::open);
+    }
+
+    @Override
+    public String describe() {
+        return delegate.describe();
+    }
+
+    @Override
+    public void insertBatch(List<NoteJournal.Record> notes) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.insertBatch(notes);
+        } catch (SQLException | RuntimeException e) {
+            metrics.get(INSERT).recordError(System.nanoTime() - start);
+            throw e;
+        }
+        long bytes = 0;
+        for (NoteJournal.Record note : notes) {
+            bytes += length(note.domain) + length(note.content);
+        }
+        metrics.get(INSERT).record(System.nanoTime() - start, notes.size(), bytes);
+    }
+
+    @Override
+    public String search(SearchMode mode, String term, QueryCanceller canceller, RowSink sink) throws SQLException {
+        long start = System.nanoTime();
+        long[] counts = new long[2];
+        String strategy;
+        try {
+            strategy = delegate.search(mode, term, canceller, row -> {
+                counts[0]++;
+                counts[1] += length(row[1]) + length(row[2]);
+                sink.accept(row);
+            });
+        } catch (SQLException | RuntimeException e) {
+            metrics.get(SEARCH).recordError(System.nanoTime() - start);
+            throw e;
+        }
+        metrics.get(SEARCH).record(System.nanoTime() - start, counts[0], counts[1]);
+        return strategy;
+    }
+
+    @Override
+    public List<Object[]> findByDomains(Collection<String> domains) throws SQLException {
+        return time(FIND_BY_DOMAINS, () -> delegate.findByDomains(domains));
+    }
+
+    @Override
+    public int count(NoteListQuery query) throws SQLException {
+        return time(LIST_COUNT, () -> delegate.count(query));
+    }
+
+    @Override
+    public List<Object[]> page(NoteListQuery query, Object[] after, int skip, int limit) throws SQLException {
+        return time(PAGE, () -> delegate.page(query, after, skip, limit));
+    }
+
+    @Override
+    public Map<Integer, String> loadContent(Collection<Integer> ids) throws SQLException {
+        return time(LOAD_CONTENT, () -> delegate.loadContent(ids));
+    }
+
+    @Override
+    public long exportNotes(long afterId, NoteSink sink) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long[] bytes = new long[1];
+        long count;
+        try {
+            count = delegate.exportNotes(afterId, (id, domain, content, createTime) -> {
+                bytes[0] += length(domain) + length(content);
+                sink.accept(id, domain, content, createTime);
+            });
+        } catch (SQLException | IOException | RuntimeException e) {
+            metrics.get(EXPORT).recordError(System.nanoTime() - start);
+            throw e;
+        }
+        metrics.get(EXPORT).record(System.nanoTime() - start, count, bytes[0]);
+        return count;
+    }
+
+    @Override
+    public Map<String, Integer> delete(Collection<Integer> ids) throws SQLException {
+        return timeCounts(DELETE, () -> delegate.delete(ids));
+    }
+
+    @Override
+    public Map<String, Integer> undelete(Collection<Integer> ids) throws SQLException {
+        return timeCounts(UNDELETE, () -> delegate.undelete(ids));
+    }
+
+    // Per-domain counts: rows are the notes counted, not the domains
+    private Map<String, Integer> timeCounts(String operation, Call<Map<String, Integer>> call) throws SQLException {
+        long start = System.nanoTime();
+        Map<String, Integer> counts;
+        try {
+            counts = call.run();
+        } catch (SQLException | RuntimeException e) {
+            metrics.get(operation).recordError(System.nanoTime() - start);
+            throw e;
+        }
+        long rows = 0;
+        for (Integer count : counts.values()) {
+            rows += count;
+        }
+        metrics.get(operation).record(System.nanoTime() - start, rows, 0);
+        return counts;
+    }
+
+    @Override
+    public int purgeDeleted(long olderThanMillis, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int purged = delegate.purgeDeleted(olderThanMillis, limit);
+            metrics.get(PURGE).record(System.nanoTime() - start, purged, 0);
+            return purged;
+        } catch (SQLException | RuntimeException e) {
+            metrics.get(PURGE).recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long maxId() throws SQLException {
+        return time(WATERMARK, delegate::maxId);
+    }
+
+    @Override
+    public Map<String, Integer> countByDomain(long afterId, long upToId) throws SQLException {
+        return time(WATERMARK, () -> delegate.countByDomain(afterId, upToId));
+    }
+
+    @Override
+    public long changeWatermark() throws SQLException {
+        return time(WATERMARK, delegate::changeWatermark);
+    }
+
+    @Override
+    public List<NoteChange> changesSince(long afterMillis, int afterId, int limit) throws SQLException {
+        return time(CHANGES, () -> delegate.changesSince(afterMillis, afterId, limit));
+    }
+
+    @Override
+    public List<Object[]> endpoints(EndpointQuery query) throws SQLException {
+        return time(ENDPOINTS, () -> delegate.endpoints(query));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
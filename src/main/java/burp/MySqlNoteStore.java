@@ -0,0 +1,832 @@
+package burp;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * NoteStore on a shared MySQL database, for teams working on the same notes.
+ *
+ * Connections come from a ConnectionPool. open() creates the database if it
+ * does not exist yet, brings the schema up to date and starts the background
+ * duplicate cleanup. Domain searches use the trigram and reversed-domain
+ * indexes, content searches the FULLTEXT index, endpoint set queries the
+ * endpoint table. Each interactive call borrows its connection with a time
+ * budget, so a stalled server turns into a timeout instead of a hang.
+ */
+public class MySqlNoteStore implements NoteStore {
+    public static final String DEFAULT_TABLE = "burp_notes";
+    private static final int ER_BAD_DB_ERROR = 1049;
+    private static final int MAX_FUZZY_DOMAINS = 1000;
+    // Searches run as the user types; one that takes longer than this is not worth waiting for
+    private static final int SEARCH_TIMEOUT_SECONDS = 10;
+    // Budgets of the other calls: list pages, note bodies and change polls, then writes
+    private static final int READ_TIMEOUT_SECONDS = 5;
+    private static final int WRITE_TIMEOUT_SECONDS = 15;
+    // Backstop for calls without a budget (exports, background jobs): a stalled socket read fails after this
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    private static final int SOCKET_TIMEOUT_MS = 120_000;
+    private static final long POOL_IDLE_VALIDATION_MS = 30_000;
+    private static final long POOL_MAX_LIFETIME_MS = 30 * 60_000;
+    private static final long POOL_ACQUIRE_TIMEOUT_MS = 10_000;
+    private static final int DEDUPE_CHUNK_SIZE = 1000;
+    private static final long DEDUPE_PAUSE_MS = 50;
+    // Server-side prepared statements, cached per pooled connection
+    private static final String JDBC_OPTIONS = "useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC"
+            + "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048"
+            + "&rewriteBatchedStatements=true&useCursorFetch=true"
+            + "&connectTimeout=" + CONNECT_TIMEOUT_MS + "&socketTimeout=" + SOCKET_TIMEOUT_MS;
+    // Rows per round-trip when streaming an export through a server-side cursor
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    // List queries only carry a short preview; full bodies are loaded on demand.
+    // Compressed rows have no content and keep their preview and length in columns of their own.
+    private static final String LIST_COLUMNS = "id, domain, COALESCE(content_preview, LEFT(content, " + PagedNotesTableModel.PREVIEW_CHARS + ")) AS preview, " +
+            "COALESCE(content_chars, CHAR_LENGTH(content)) AS content_length, create_time";
+    private static final int COMPRESS_CHUNK_SIZE = 200;
+    private static final long COMPRESS_PAUSE_MS = 50;
+    private static final Map<NoteListQuery.SortColumn, String> SORT_COLUMNS = new EnumMap<>(NoteListQuery.SortColumn.class);
+    static {
+        SORT_COLUMNS.put(NoteListQuery.SortColumn.ID, "id");
+        SORT_COLUMNS.put(NoteListQuery.SortColumn.DOMAIN, "domain");
+        SORT_COLUMNS.put(NoteListQuery.SortColumn.LENGTH, "content_length");
+        SORT_COLUMNS.put(NoteListQuery.SortColumn.TIME, "create_time");
+    }
+    // Notes that are not tombstoned; every read of notes includes it
+    private static final String LIVE = "deleted_at IS NULL";
+    private static final int DELETE_CHUNK_SIZE = 500;
+    private static final int ENDPOINT_CHUNK_SIZE = 500;
+    private static final long ENDPOINT_PAUSE_MS = 50;
+
+    private final String table;
+    private final String serverUrl;
+    private final String dbUrl;
+    private final String dbName;
+    private final String user;
+    private final String password;
+    private final int poolSize;
+    private final Consumer<String> log;
+    private final boolean manageSchema;
+    private final DomainGramIndex domainIndex;
+    private final EndpointIndex endpointIndex;
+    private volatile ConnectionPool pool;
+    private volatile int compressionThreshold;
+    // Bytes of note bodies received from the server, and the text they decoded to
+    private final LongAdder contentBytesRead = new LongAdder();
+    private final LongAdder contentCharsRead = new LongAdder();
+
+    public MySqlNoteStore(String host, String port, String dbName, String user, String password, int poolSize,
+                          Consumer<String> log) {
+        this(String.format("jdbc:mysql://%s:%s/?%s", host, port, JDBC_OPTIONS),
+                String.format("jdbc:mysql://%s:%s/%s?%s", host, port, dbName, JDBC_OPTIONS),
+                dbName, user, password, poolSize, log, true);
+    }
+
+    private MySqlNoteStore(String serverUrl, String dbUrl, String dbName, String user, String password, int poolSize,
+                           Consumer<String> log, boolean manageSchema) {
+        this.table = DEFAULT_TABLE;
+        this.serverUrl = serverUrl;
+        this.dbUrl = dbUrl;
+        this.dbName = dbName;
+        this.user = user;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.log = log;
+        this.manageSchema = manageSchema;
+        this.domainIndex = new DomainGramIndex(table + "_domain_grams", table);
+        this.endpointIndex = new EndpointIndex(table + "_endpoints", table);
+    }
+
+    /**
+     * Store on any JDBC URL whose schema is set up elsewhere, such as a benchmark
+     * fixture on an embedded database in MySQL mode. open() then only starts the
+     * pool: no database creation, migrations or background cleanup.
+     */
+    public static MySqlNoteStore forExistingSchema(String jdbcUrl, String user, String password, int poolSize) {
+        return new MySqlNoteStore(null, jdbcUrl, null, user, password, poolSize, message -> { }, false);
+    }
+
+    /**
+     * Compresses bodies of at least thresholdChars on insert and, from the
+     * next open(), compresses existing ones in the background; 0 turns
+     * compression off. Compressed notes are read back either way.
+     */
+    public void setCompressionThreshold(int thresholdChars) {
+        this.compressionThreshold = thresholdChars;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public DomainGramIndex getDomainIndex() {
+        return domainIndex;
+    }
+
+    public EndpointIndex getEndpointIndex() {
+        return endpointIndex;
+    }
+
+    public String getUrl() {
+        return dbUrl;
+    }
+
+    @Override
+    public List<String> open() throws SQLException {
+        if (!manageSchema) {
+            pool = new ConnectionPool(dbUrl, user, password, poolSize,
+                    POOL_IDLE_VALIDATION_MS, POOL_MAX_LIFETIME_MS, POOL_ACQUIRE_TIMEOUT_MS);
+            return Collections.emptyList();
+        }
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("MySQL driver not found", e);
+        }
+        ConnectionPool newPool = new ConnectionPool(dbUrl, user, password, poolSize,
+                POOL_IDLE_VALIDATION_MS, POOL_MAX_LIFETIME_MS, POOL_ACQUIRE_TIMEOUT_MS);
+        List<String> applied;
+        // No DDL when the schema is already current
+        try (Connection conn = openCreatingDatabase(newPool)) {
+            // Migrating a large table can take minutes without a reply; the pool restores the timeout
+            conn.setNetworkTimeout(Runnable::run, 0);
+            applied = new SchemaMigrator(table, domainIndex, endpointIndex).migrate(conn);
+        } catch (SQLException e) {
+            newPool.close();
+            throw e;
+        }
+        pool = newPool;
+
+        NoteDeduplicator deduplicator = new NoteDeduplicator(table, SchemaMigrator.jobTable(table), newPool,
+                DEDUPE_CHUNK_SIZE, DEDUPE_PAUSE_MS, log);
+        Thread thread = new Thread(deduplicator, "BurpNote-dedupe");
+        thread.setDaemon(true);
+        thread.start();
+        EndpointIndexer indexer = new EndpointIndexer(table, SchemaMigrator.jobTable(table), endpointIndex, newPool,
+                ENDPOINT_CHUNK_SIZE, ENDPOINT_PAUSE_MS, log);
+        Thread indexThread = new Thread(indexer, "BurpNote-endpoints");
+        indexThread.setDaemon(true);
+        indexThread.start();
+        if (compressionThreshold > 0) {
+            NoteCompressor compressor = new NoteCompressor(table, SchemaMigrator.jobTable(table), newPool,
+                    compressionThreshold, COMPRESS_CHUNK_SIZE, COMPRESS_PAUSE_MS, log);
+            Thread compressThread = new Thread(compressor, "BurpNote-compress");
+            compressThread.setDaemon(true);
+            compressThread.start();
+        }
+        return applied;
+    }
+
+    // Creates the database on first use only, when MySQL reports it as unknown
+    private Connection openCreatingDatabase(ConnectionPool pool) throws SQLException {
+        try {
+            return pool.getConnection();
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_BAD_DB_ERROR) {
+                throw e;
+            }
+        }
+        try (Connection serverConn = DriverManager.getConnection(serverUrl, user, password);
+             Statement stmt = serverConn.createStatement()) {
+            stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS " + dbName + " CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+        }
+        return pool.getConnection();
+    }
+
+    private Connection connection() throws SQLException {
+        return connection(0);
+    }
+
+    // A pooled connection whose statements and socket reads give up after the budget; 0 for none
+    private Connection connection(int timeoutSeconds) throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            throw new SQLException("Store is not open");
+        }
+        return timeoutSeconds > 0 ? current.getConnection(timeoutSeconds) : current.getConnection();
+    }
+
+    @Override
+    public String describe() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            return "MySQL " + dbUrl + " (closed)";
+        }
+        long bytes = contentBytesRead.sum();
+        long chars = contentCharsRead.sum();
+        return chars == 0 ? current.describe()
+                : current.describe() + "; note bodies read: " + bytes / 1024 + " KB transferred for " + chars / 1024 + " K chars";
+    }
+
+    @Override
+    public void insertBatch(List<NoteJournal.Record> notes) throws SQLException {
+        // Replaying a note that already reached the database, or re-pasting the
+        // same content for the same domain, is a no-op; re-pasting a note that
+        // is waiting to be purged brings it back, as a change for delta pollers
+        String sql = "INSERT INTO " + table + " (domain, content, client_ref, content_hash, create_time, " +
+                "content_codec, content_blob, content_preview, content_chars, content_terms) " +
+                "VALUES (?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP), ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE " +
+                "updated_at = CASE WHEN client_ref = VALUES(client_ref) OR deleted_at IS NULL THEN updated_at ELSE CURRENT_TIMESTAMP(3) END, " +
+                "deleted_at = CASE WHEN client_ref = VALUES(client_ref) THEN deleted_at ELSE NULL END";
+        int threshold = compressionThreshold;
+        Set<String> domains = new LinkedHashSet<>();
+        try (Connection conn = connection(WRITE_TIMEOUT_SECONDS)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (NoteJournal.Record note : notes) {
+                    byte[] compressed = NoteCodec.compress(note.content, threshold);
+                    String terms = compressed == null ? null : ContentQuery.indexTerms(note.content);
+                    if (terms == null) {
+                        // Too many distinct words to search it compressed
+                        compressed = null;
+                    }
+                    pstmt.setString(1, note.domain);
+                    pstmt.setString(2, compressed == null ? note.content : null);
+                    pstmt.setString(3, note.ref);
+                    pstmt.setBytes(4, NoteDeduplicator.contentHash(note.content));
+                    pstmt.setTimestamp(5, note.createTime);
+                    pstmt.setByte(6, compressed == null ? NoteCodec.PLAIN : NoteCodec.DEFLATE);
+                    pstmt.setBytes(7, compressed);
+                    pstmt.setString(8, compressed == null ? null : NoteCodec.preview(note.content));
+                    pstmt.setObject(9, compressed == null ? null : NoteCodec.length(note.content), java.sql.Types.INTEGER);
+                    pstmt.setString(10, terms);
+                    pstmt.addBatch();
+                    domains.add(note.domain);
+                }
+                pstmt.executeBatch();
+            }
+            domainIndex.index(conn, domains);
+            endpointIndex.index(conn, insertedNotes(conn, notes));
+        }
+    }
+
+    // {id, domain, content} of the batch's notes that are stored, found by client reference
+    private List<Object[]> insertedNotes(Connection conn, List<NoteJournal.Record> notes) throws SQLException {
+        Map<String, NoteJournal.Record> byRef = new HashMap<>();
+        for (NoteJournal.Record note : notes) {
+            byRef.put(note.ref, note);
+        }
+        List<Object[]> inserted = new ArrayList<>();
+        if (byRef.isEmpty()) {
+            return inserted;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT id, client_ref FROM " + table + " WHERE client_ref IN " + placeholders(byRef.size()))) {
+            int index = 1;
+            for (String ref : byRef.keySet()) {
+                pstmt.setString(index++, ref);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    NoteJournal.Record note = byRef.get(rs.getString(2));
+                    inserted.add(new Object[]{rs.getInt(1), note.domain, note.content});
+                }
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<Object[]> endpoints(EndpointQuery query) throws SQLException {
+        try (Connection conn = connection(SEARCH_TIMEOUT_SECONDS)) {
+            return endpointIndex.query(conn, query, SEARCH_TIMEOUT_SECONDS);
+        }
+    }
+
+    @Override
+    public String search(SearchMode mode, String term, QueryCanceller canceller, RowSink sink) throws SQLException {
+        try (Connection conn = connection(SEARCH_TIMEOUT_SECONDS)) {
+            String suffixPattern = DomainGramIndex.reversedSuffixPattern(term);
+            // Newest-first modes stream rows as they arrive; ranked modes need all rows first
+            if (mode == SearchMode.CONTENT) {
+                ContentQuery query = new ContentQuery(term);
+                searchContent(conn, query, canceller, sink);
+                if (query.isIndexable()) {
+                    return "fulltext";
+                }
+                return query.wordPatterns().isEmpty() ? "content scan, text bodies only" : "content scan";
+            } else if (mode == SearchMode.EXACT) {
+                streamNotes(conn, canceller, sink, "domain = ? ORDER BY create_time DESC", term);
+                return "exact";
+            } else if (suffixPattern != null) {
+                // "*.example.com": range scan on the reversed domain index
+                List<Object[]> rows = new ArrayList<>();
+                streamNotes(conn, canceller, rows::add, "domain_rev LIKE ?", suffixPattern);
+                NoteStore.rankRows(rows, term.substring(2));
+                rows.forEach(sink::accept);
+                return "suffix";
+            } else if (DomainGramIndex.isIndexable(term)) {
+                List<String> domains = domainIndex.search(conn, term, MAX_FUZZY_DOMAINS + 1);
+                List<Object[]> rows = new ArrayList<>();
+                String plan = "trigram";
+                if (domains.size() > MAX_FUZZY_DOMAINS) {
+                    // Too many domains for an IN list; scanning is cheaper than dropping matches
+                    streamNotes(conn, canceller, rows::add, "domain LIKE ?", "%" + DomainGramIndex.escapeLike(term) + "%");
+                    plan = "scan, too many trigram matches";
+                } else if (!domains.isEmpty()) {
+                    streamNotes(conn, canceller, rows::add, "domain IN " + placeholders(domains.size()), domains.toArray());
+                }
+                NoteStore.rankRows(rows, term);
+                rows.forEach(sink::accept);
+                return plan;
+            } else {
+                // Too short for trigrams; fall back to a scan
+                List<Object[]> rows = new ArrayList<>();
+                streamNotes(conn, canceller, rows::add, "domain LIKE ?", "%" + DomainGramIndex.escapeLike(term) + "%");
+                NoteStore.rankRows(rows, term);
+                rows.forEach(sink::accept);
+                return "scan";
+            }
+        }
+    }
+
+    private void searchContent(Connection conn, ContentQuery query, QueryCanceller canceller, RowSink sink) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        if (query.isIndexable()) {
+            // The FULLTEXT index narrows the candidates; LIKE then checks the exact terms
+            where.append("MATCH(content) AGAINST (? IN BOOLEAN MODE)");
+            params.add(query.booleanExpression());
+        }
+        for (String pattern : query.likePatterns()) {
+            where.append(where.length() == 0 ? "" : " AND ").append("content LIKE ?");
+            params.add(pattern);
+        }
+        where.append(" ORDER BY create_time DESC LIMIT ").append(CONTENT_SEARCH_LIMIT);
+
+        // Compressed bodies are found through their index terms, checked after
+        // decompressing and merged into the stream newest first
+        List<Object[]> compressed = searchCompressed(conn, query, canceller);
+        int[] next = {0};
+        int[] emitted = {0};
+        streamNotes(conn, canceller, row -> {
+            while (next[0] < compressed.size() && isNewer(compressed.get(next[0]), row) && emitted[0] < CONTENT_SEARCH_LIMIT) {
+                sink.accept(compressed.get(next[0]++));
+                emitted[0]++;
+            }
+            if (emitted[0] < CONTENT_SEARCH_LIMIT) {
+                sink.accept(row);
+                emitted[0]++;
+            }
+        }, where.toString(), params.toArray());
+        while (next[0] < compressed.size() && emitted[0] < CONTENT_SEARCH_LIMIT && !canceller.isCancelled()) {
+            sink.accept(compressed.get(next[0]++));
+            emitted[0]++;
+        }
+    }
+
+    private List<Object[]> searchCompressed(Connection conn, ContentQuery query, QueryCanceller canceller) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        if (query.isEmpty()) {
+            return rows;
+        }
+        List<Object> params = new ArrayList<>();
+        StringBuilder where = new StringBuilder(LIVE + " AND content_codec <> " + NoteCodec.PLAIN);
+        if (query.isIndexable()) {
+            where.append(" AND MATCH(content_terms) AGAINST (? IN BOOLEAN MODE)");
+            params.add(query.booleanExpression());
+        } else {
+            List<String> patterns = query.wordPatterns();
+            if (patterns.isEmpty()) {
+                // Nothing to narrow by, e.g. "{}"; rather than inflate every compressed body, search text bodies only
+                return rows;
+            }
+            for (String pattern : patterns) {
+                where.append(" AND content_terms LIKE ?");
+                params.add(pattern);
+            }
+        }
+        String sql = "SELECT " + LIST_COLUMNS + ", content_codec, content_blob FROM " + table +
+                " WHERE " + where + " ORDER BY create_time DESC, id DESC";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            pstmt.setFetchSize(EXPORT_FETCH_SIZE);
+            pstmt.setQueryTimeout(SEARCH_TIMEOUT_SECONDS);
+            canceller.register(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next() && rows.size() < CONTENT_SEARCH_LIMIT && !canceller.isCancelled()) {
+                    if (query.matches(readContent(rs))) {
+                        rows.add(readRow(rs));
+                    }
+                }
+            } finally {
+                canceller.unregister(pstmt);
+            }
+        }
+        return rows;
+    }
+
+    // List order: create_time DESC, id DESC
+    private static boolean isNewer(Object[] a, Object[] b) {
+        int byTime = ((Timestamp) a[4]).compareTo((Timestamp) b[4]);
+        return byTime != 0 ? byTime > 0 : (Integer) a[0] > (Integer) b[0];
+    }
+
+    @Override
+    public List<Object[]> findByDomains(Collection<String> domains) throws SQLException {
+        if (domains.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS)) {
+            return queryNotes(conn, "domain IN " + placeholders(domains.size()) + " ORDER BY domain, create_time DESC",
+                    domains.toArray());
+        }
+    }
+
+    private List<Object[]> queryNotes(Connection conn, String where, Object... params) throws SQLException {
+        String sql = "SELECT " + LIST_COLUMNS + " FROM " + table + " WHERE " + LIVE + " AND " + where;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            return readRows(pstmt);
+        }
+    }
+
+    /**
+     * Runs a search query that the canceller can abort and that times out
+     * on its own, handing each row to the sink as it is read.
+     */
+    private void streamNotes(Connection conn, QueryCanceller canceller, RowSink sink, String where, Object... params) throws SQLException {
+        String sql = "SELECT " + LIST_COLUMNS + " FROM " + table + " WHERE " + LIVE + " AND " + where;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            pstmt.setQueryTimeout(SEARCH_TIMEOUT_SECONDS);
+            canceller.register(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next() && !canceller.isCancelled()) {
+                    sink.accept(readRow(rs));
+                }
+            } finally {
+                canceller.unregister(pstmt);
+            }
+        }
+    }
+
+    private static Object[] readRow(ResultSet rs) throws SQLException {
+        return new Object[]{
+                rs.getInt("id"),
+                rs.getString("domain"),
+                rs.getString("preview"),
+                rs.getInt("content_length"),
+                rs.getTimestamp("create_time")
+        };
+    }
+
+    private static List<Object[]> readRows(PreparedStatement pstmt) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                rows.add(readRow(rs));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int count(NoteListQuery query) throws SQLException {
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS)) {
+            List<Object> params = new ArrayList<>();
+            List<String> where = listFilter(conn, query, params);
+            String sql = "SELECT COUNT(*) FROM " + table + " WHERE " + String.join(" AND ", where);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                setParams(pstmt, params);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Object[]> page(NoteListQuery query, Object[] after, int skip, int limit) throws SQLException {
+        // Each order has an index ending in id (InnoDB appends the primary key to
+        // secondary indexes), so the page is a range scan from the key of the row before it
+        String column = SORT_COLUMNS.get(query.sort);
+        String dir = query.ascending ? "ASC" : "DESC";
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS)) {
+            List<Object> params = new ArrayList<>();
+            List<String> where = listFilter(conn, query, params);
+            if (after != null) {
+                where.add(keysetCondition(query, column, query.sortKey(after), (Integer) after[0], params));
+            }
+            String sql = "SELECT " + LIST_COLUMNS + " FROM " + table +
+                    " WHERE " + String.join(" AND ", where) +
+                    " ORDER BY " + (query.sort == NoteListQuery.SortColumn.ID ? "" : column + " " + dir + ", ") + "id " + dir +
+                    " LIMIT ? OFFSET ?";
+            params.add(limit);
+            params.add(skip);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                setParams(pstmt, params);
+                return readRows(pstmt);
+            }
+        }
+    }
+
+    // Rows strictly after (key, id) in the query's order; MySQL sorts NULL domains first
+    private static String keysetCondition(NoteListQuery query, String column, Object key, int id, List<Object> params) {
+        String after = query.ascending ? ">" : "<";
+        if (query.sort == NoteListQuery.SortColumn.ID) {
+            params.add(id);
+            return "id " + after + " ?";
+        }
+        if (key == null) {
+            params.add(id);
+            return query.ascending ? "(" + column + " IS NOT NULL OR id > ?)" : "(" + column + " IS NULL AND id < ?)";
+        }
+        params.add(key);
+        params.add(key);
+        params.add(id);
+        return "(" + column + " " + after + " ? OR (" + column + " = ? AND id " + after + " ?)" +
+                (query.ascending ? "" : " OR " + column + " IS NULL") + ")";
+    }
+
+    // WHERE conditions for the query's filter, using the same indexes as the domain search
+    private List<String> listFilter(Connection conn, NoteListQuery query, List<Object> params) throws SQLException {
+        List<String> where = new ArrayList<>();
+        where.add(LIVE);
+        String term = query.domainFilter;
+        String suffixPattern = DomainGramIndex.reversedSuffixPattern(term);
+        if (suffixPattern != null) {
+            where.add("domain_rev LIKE ?");
+            params.add(suffixPattern);
+        } else if (DomainGramIndex.isIndexable(term)) {
+            List<String> domains = domainIndex.search(conn, term, MAX_FUZZY_DOMAINS + 1);
+            if (domains.size() > MAX_FUZZY_DOMAINS) {
+                // Too many domains for an IN list; scanning is cheaper
+                where.add("domain LIKE ?");
+                params.add("%" + DomainGramIndex.escapeLike(term) + "%");
+            } else if (domains.isEmpty()) {
+                where.add("1 = 0");
+            } else {
+                where.add("domain IN " + placeholders(domains.size()));
+                params.addAll(domains);
+            }
+        } else if (!term.isEmpty()) {
+            where.add("domain LIKE ?");
+            params.add("%" + DomainGramIndex.escapeLike(term) + "%");
+        }
+        if (query.minLength > 0) {
+            where.add("content_length >= ?");
+            params.add(query.minLength);
+        }
+        return where;
+    }
+
+    private static void setParams(PreparedStatement pstmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+    }
+
+    @Override
+    public Map<Integer, String> loadContent(Collection<Integer> ids) throws SQLException {
+        Map<Integer, String> loaded = new HashMap<>();
+        if (ids.isEmpty()) {
+            return loaded;
+        }
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS);
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT id, content, content_codec, content_blob FROM " + table + " WHERE " + LIVE +
+                             " AND id IN " + placeholders(ids.size()))) {
+            int i = 1;
+            for (Integer id : ids) {
+                pstmt.setInt(i++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    loaded.put(rs.getInt("id"), readContent(rs));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Full text of the current row, decompressing it if needed.
+     */
+    private String readContent(ResultSet rs) throws SQLException {
+        byte codec = rs.getByte("content_codec");
+        if (codec == NoteCodec.PLAIN) {
+            String content = rs.getString("content");
+            content = content == null ? "" : content;
+            contentBytesRead.add(NoteCodec.utf8Length(content));
+            contentCharsRead.add(content.length());
+            return content;
+        }
+        byte[] data = rs.getBytes("content_blob");
+        try {
+            String content = NoteCodec.decompress(codec, data);
+            contentBytesRead.add(data.length);
+            contentCharsRead.add(content.length());
+            return content;
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Note " + rs.getInt("id") + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long exportNotes(long afterId, NoteSink sink) throws SQLException, IOException {
+        long count = 0;
+        try (Connection conn = connection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT id, domain, content, content_codec, content_blob, create_time FROM " + table +
+                     " WHERE id > ? AND " + LIVE + " ORDER BY id",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // With useCursorFetch the server keeps the result; only one fetch of rows is in memory
+            pstmt.setFetchSize(EXPORT_FETCH_SIZE);
+            pstmt.setLong(1, afterId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(rs.getInt("id"), rs.getString("domain"), readContent(rs), rs.getTimestamp("create_time"));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Integer> delete(Collection<Integer> ids) throws SQLException {
+        return setDeleted(ids, true);
+    }
+
+    @Override
+    public Map<String, Integer> undelete(Collection<Integer> ids) throws SQLException {
+        return setDeleted(ids, false);
+    }
+
+    // Tombstones or restores the notes in chunks, each its own short transaction
+    private Map<String, Integer> setDeleted(Collection<Integer> ids, boolean deleted) throws SQLException {
+        Map<String, Integer> changed = new HashMap<>();
+        String state = deleted ? LIVE : "deleted_at IS NOT NULL";
+        List<Integer> all = new ArrayList<>(new LinkedHashSet<>(ids));
+        try (Connection conn = connection(WRITE_TIMEOUT_SECONDS)) {
+            conn.setAutoCommit(false);
+            for (int from = 0; from < all.size(); from += DELETE_CHUNK_SIZE) {
+                List<Integer> chunk = all.subList(from, Math.min(all.size(), from + DELETE_CHUNK_SIZE));
+                String idList = placeholders(chunk.size());
+                // Lock the rows so the counts match what the update changes
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT domain FROM " + table + " WHERE id IN " + idList + " AND " + state + " FOR UPDATE")) {
+                    setIds(pstmt, chunk);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            changed.merge(rs.getString(1) == null ? "" : rs.getString(1), 1, Integer::sum);
+                        }
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE " + table + " SET deleted_at = " + (deleted ? "CURRENT_TIMESTAMP" : "NULL") +
+                        ", updated_at = CURRENT_TIMESTAMP(3)" +
+                        " WHERE id IN " + idList + " AND " + state)) {
+                    setIds(pstmt, chunk);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public int purgeDeleted(long olderThanMillis, int limit) throws SQLException {
+        Map<Integer, String> purged = new HashMap<>();
+        try (Connection conn = connection(WRITE_TIMEOUT_SECONDS)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT id, domain FROM " + table + " WHERE deleted_at < TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP) " +
+                    "ORDER BY deleted_at LIMIT ? FOR UPDATE")) {
+                pstmt.setLong(1, -olderThanMillis / 1000);
+                pstmt.setInt(2, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        purged.put(rs.getInt(1), rs.getString(2));
+                    }
+                }
+            }
+            if (!purged.isEmpty()) {
+                // Endpoint rows go with their notes through the foreign key
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "DELETE FROM " + table + " WHERE id IN " + placeholders(purged.size()) + " AND deleted_at IS NOT NULL")) {
+                    setIds(pstmt, purged.keySet());
+                    pstmt.executeUpdate();
+                }
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            Set<String> domains = new HashSet<>(purged.values());
+            domains.remove(null);
+            domainIndex.prune(conn, domains);
+        }
+        return purged.size();
+    }
+
+    @Override
+    public long changeWatermark() throws SQLException {
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS);
+             PreparedStatement pstmt = conn.prepareStatement("SELECT CURRENT_TIMESTAMP(3)");
+             ResultSet rs = pstmt.executeQuery()) {
+            // The server's clock, so clock skew between teammates does not matter
+            rs.next();
+            return rs.getTimestamp(1).getTime();
+        }
+    }
+
+    @Override
+    public List<NoteChange> changesSince(long afterMillis, int afterId, int limit) throws SQLException {
+        // Tombstones included; the leading >= makes the position a range start on (updated_at, id)
+        String sql = "SELECT " + LIST_COLUMNS + ", updated_at, deleted_at FROM " + table +
+                " WHERE updated_at >= ? AND (updated_at > ? OR id > ?) ORDER BY updated_at, id LIMIT ?";
+        List<NoteChange> changes = new ArrayList<>();
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Timestamp after = new Timestamp(afterMillis);
+            pstmt.setTimestamp(1, after);
+            pstmt.setTimestamp(2, after);
+            pstmt.setInt(3, afterId);
+            pstmt.setInt(4, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = {rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getTimestamp(5)};
+                    changes.add(new NoteChange(row, rs.getTimestamp(7) != null, rs.getTimestamp(6).getTime()));
+                }
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public long maxId() throws SQLException {
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS);
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM " + table);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> countByDomain(long afterId, long upToId) throws SQLException {
+        Map<String, Integer> counts = new HashMap<>();
+        try (Connection conn = connection(READ_TIMEOUT_SECONDS);
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT domain, COUNT(*) FROM " + table + " WHERE id > ? AND id <= ? AND " + LIVE + " GROUP BY domain")) {
+            pstmt.setLong(1, afterId);
+            pstmt.setLong(2, upToId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getString(1) != null) {
+                        counts.merge(rs.getString(1), rs.getInt(2), Integer::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder list = new StringBuilder("(");
+        for (int i = 0; i < count; i++) {
+            list.append(i == 0 ? "?" : ", ?");
+        }
+        return list.append(")").toString();
+    }
+
+    private static void setIds(PreparedStatement pstmt, Collection<Integer> ids) throws SQLException {
+        int i = 1;
+        for (Integer id : ids) {
+            pstmt.setInt(i++, id);
+        }
+    }
+
+    @Override
+    public void close() {
+        ConnectionPool current = pool;
+        pool = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package burp;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the open note lists current by polling a store for changes since a
+ * watermark instead of re-reading the table.
+ *
+ * The watermark is the store's clock at the start of the previous poll.
+ * Each poll reads the changes after it in (change time, id) chunks, starting
+ * lagMillis early: a transaction that commits late can carry a change time
+ * before the watermark, and would otherwise be missed.
+ * Changes already reported inside that window are remembered by id and
+ * time, so re-reading it reports nothing twice. When more than maxChanges
+ * arrive at once (a teammate's bulk import), the poll gives up on the delta
+ * and asks for a full reload instead.
+ */
+public class NoteChangePoller {
+    /**
+     * Result of one poll.
+     */
+    public static final class Delta {
+        public final List<NoteStore.NoteChange> changes;
+        /** Too many changes to merge; reload the lists instead. */
+        public final boolean reloadAll;
+
+        Delta(List<NoteStore.NoteChange> changes, boolean reloadAll) {
+            this.changes = changes;
+            this.reloadAll = reloadAll;
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty() && !reloadAll;
+        }
+    }
+
+    private static final Delta NONE = new Delta(Collections.emptyList(), false);
+
+    private final int chunkSize;
+    private final int maxChanges;
+    private final long lagMillis;
+    private NoteStore store;
+    private long watermark;
+    // Change time of each change reported within the lag window, by note id
+    private final Map<Integer, Long> recent = new HashMap<>();
+
+    public NoteChangePoller(int chunkSize, int maxChanges, long lagMillis) {
+        this.chunkSize = chunkSize;
+        this.maxChanges = maxChanges;
+        this.lagMillis = lagMillis;
+    }
+
+    /**
+     * Changes since the previous poll of the same store. The first poll of a
+     * store only sets the watermark, since the lists were just loaded.
+     */
+    public synchronized Delta poll(NoteStore current) throws SQLException {
+        long now = current.changeWatermark();
+        if (current != store) {
+            store = current;
+            watermark = now;
+            recent.clear();
+            read(current, now, Integer.MAX_VALUE);
+            return NONE;
+        }
+        List<NoteStore.NoteChange> changes = read(current, now, maxChanges);
+        if (changes == null) {
+            // Start over from the current time rather than holding the whole burst
+            watermark = current.changeWatermark();
+            recent.clear();
+            read(current, watermark, Integer.MAX_VALUE);
+            return new Delta(Collections.emptyList(), true);
+        }
+        return changes.isEmpty() ? NONE : new Delta(changes, false);
+    }
+
+    // Reads the window from watermark - lagMillis on, then moves the watermark
+    // to now; null if there were more than limit new changes
+    private List<NoteStore.NoteChange> read(NoteStore current, long now, int limit) throws SQLException {
+        List<NoteStore.NoteChange> changes = new ArrayList<>();
+        long afterMillis = watermark - lagMillis;
+        int afterId = 0;
+        List<NoteStore.NoteChange> chunk;
+        do {
+            chunk = current.changesSince(afterMillis, afterId, chunkSize);
+            for (NoteStore.NoteChange change : chunk) {
+                Long seen = recent.put(change.id(), change.changedAt);
+                if (seen == null || seen != change.changedAt) {
+                    changes.add(change);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                NoteStore.NoteChange last = chunk.get(chunk.size() - 1);
+                afterMillis = last.changedAt;
+                afterId = last.id();
+            }
+            if (changes.size() > limit) {
+                return null;
+            }
+        } while (chunk.size() == chunkSize);
+        watermark = Math.max(watermark, now);
+        long horizon = watermark - lagMillis;
+        recent.values().removeIf(changedAt -> changedAt < horizon);
+        return changes;
+    }
+}
@@ -0,0 +1,123 @@
+package burp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of large note bodies.
+ *
+ * A stored body carries a codec tag: PLAIN bodies stay text, DEFLATE bodies
+ * are the zlib-compressed UTF-8 bytes. Only bodies of at least the
+ * threshold are compressed, and only when that saves a meaningful share;
+ * API inventories typically shrink to a fifth. Decompression happens when
+ * the full text is needed (the detail view, export, checking a content
+ * search candidate found through the stored words), never for list rows,
+ * which use the stored preview and length.
+ */
+public final class NoteCodec {
+    public static final byte PLAIN = 0;
+    public static final byte DEFLATE = 1;
+    public static final int DEFAULT_THRESHOLD_CHARS = 2048;
+    // Keep the body as text unless compression saves at least this share
+    private static final double MIN_SAVING = 0.2;
+
+    private NoteCodec() {
+    }
+
+    /**
+     * Compressed body, or null if the content is below the threshold or
+     * does not compress well enough to be worth it.
+     */
+    public static byte[] compress(String content, int thresholdChars) {
+        if (thresholdChars <= 0 || content == null || content.length() < thresholdChars) {
+            return null;
+        }
+        byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.size() <= utf8.length * (1 - MIN_SAVING) ? out.toByteArray() : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Text of a body stored with the given codec.
+     */
+    public static String decompress(byte codec, byte[] data) {
+        if (codec != DEFLATE) {
+            throw new IllegalArgumentException("Unknown content codec " + codec);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed content");
+                }
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed content: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * First PagedNotesTableModel.PREVIEW_CHARS characters, counted like MySQL's LEFT().
+     */
+    public static String preview(String content) {
+        int points = content.codePointCount(0, content.length());
+        if (points <= PagedNotesTableModel.PREVIEW_CHARS) {
+            return content;
+        }
+        return content.substring(0, content.offsetByCodePoints(0, PagedNotesTableModel.PREVIEW_CHARS));
+    }
+
+    /**
+     * Length in characters, counted like MySQL's CHAR_LENGTH().
+     */
+    public static int length(String content) {
+        return content.codePointCount(0, content.length());
+    }
+
+    /**
+     * Length of the UTF-8 encoding, like MySQL's OCTET_LENGTH() of utf8mb4
+     * text, without encoding it.
+     */
+    public static long utf8Length(String content) {
+        long bytes = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired; the encoder writes '?'
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
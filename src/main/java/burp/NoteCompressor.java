@@ -0,0 +1,184 @@
+package burp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Background job that compresses the bodies of notes stored before
+ * compression was enabled.
+ *
+ * It walks the table in ascending id chunks, like NoteDeduplicator, and
+ * rewrites each large plain body as a DEFLATE blob with its preview and
+ * length, so list queries never touch the blob, and its words for content
+ * search (see ContentQuery.indexTerms). The deduplicator hashes the plain
+ * text in SQL, so the job never goes past the deduplicator's checkpoint and
+ * stops for now when it catches up; everything below that checkpoint is
+ * hashed or was removed. The last id processed is stored in the jobs
+ * table; notes inserted while compression is on are compressed on insert,
+ * so the job only has to catch up on rows written while it was off.
+ */
+public class NoteCompressor implements Runnable {
+    public static final String JOB_NAME = "compress_content";
+
+    private final String table;
+    private final String jobTable;
+    private final ConnectionPool pool;
+    private final int thresholdChars;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final Consumer<String> log;
+
+    public NoteCompressor(String table, String jobTable, ConnectionPool pool, int thresholdChars, int chunkSize,
+                          long pauseMillis, Consumer<String> log) {
+        this.table = table;
+        this.jobTable = jobTable;
+        this.pool = pool;
+        this.thresholdChars = thresholdChars;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.log = log;
+    }
+
+    @Override
+    public void run() {
+        try {
+            String state = readState(JOB_NAME);
+            long lastId = state == null ? 0 : Long.parseLong(state);
+            long maxId = readMaxId();
+            long notes = 0;
+            long plainBytes = 0;
+            long compressedBytes = 0;
+            while (!pool.isClosed() && !Thread.currentThread().isInterrupted()) {
+                long upTo = Math.min(lastId + chunkSize, Math.min(maxId, readHashedUpTo(maxId)));
+                if (upTo <= lastId) {
+                    break;
+                }
+                long[] chunk = processChunk(lastId, upTo);
+                notes += chunk[0];
+                plainBytes += chunk[1];
+                compressedBytes += chunk[2];
+                lastId = upTo;
+                writeState(Long.toString(lastId));
+                Thread.sleep(pauseMillis);
+            }
+            if (notes > 0) {
+                log.accept("Compressed " + notes + " existing note(s): " + plainBytes / 1024 + " KB of text now takes "
+                        + compressedBytes / 1024 + " KB.");
+            }
+            log.accept(describeStorage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Progress is saved per chunk; the next connect resumes from there
+            log.accept("Note compression paused: " + e.getMessage());
+        }
+    }
+
+    // Returns {notes compressed, UTF-8 bytes before, bytes after}
+    private long[] processChunk(long afterId, long upToId) throws SQLException {
+        long[] totals = new long[3];
+        try (Connection conn = pool.getConnection();
+             PreparedStatement select = conn.prepareStatement(
+                     "SELECT id, content FROM " + table + " WHERE id > ? AND id <= ? AND content_codec = " + NoteCodec.PLAIN +
+                     " AND CHAR_LENGTH(content) >= ?");
+             PreparedStatement update = conn.prepareStatement(
+                     "UPDATE " + table + " SET content = NULL, content_codec = ?, content_blob = ?, content_preview = ?, " +
+                     "content_chars = ?, content_terms = ? WHERE id = ? AND content_codec = " + NoteCodec.PLAIN)) {
+            select.setLong(1, afterId);
+            select.setLong(2, upToId);
+            select.setInt(3, thresholdChars);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    String content = rs.getString(2);
+                    byte[] compressed = NoteCodec.compress(content, thresholdChars);
+                    String terms = compressed == null ? null : ContentQuery.indexTerms(content);
+                    if (terms == null) {
+                        continue;
+                    }
+                    update.setByte(1, NoteCodec.DEFLATE);
+                    update.setBytes(2, compressed);
+                    update.setString(3, NoteCodec.preview(content));
+                    update.setInt(4, NoteCodec.length(content));
+                    update.setString(5, terms);
+                    update.setInt(6, rs.getInt(1));
+                    update.addBatch();
+                    totals[0]++;
+                    totals[1] += NoteCodec.utf8Length(content);
+                    totals[2] += compressed.length;
+                }
+            }
+            if (totals[0] > 0) {
+                update.executeBatch();
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * How much space the note bodies take, compressed and plain.
+     */
+    private String describeStorage() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT content_codec, COUNT(*), COALESCE(SUM(LENGTH(content)), 0), COALESCE(SUM(LENGTH(content_blob)), 0) " +
+                     "FROM " + table + " GROUP BY content_codec");
+             ResultSet rs = pstmt.executeQuery()) {
+            long plainNotes = 0;
+            long plainBytes = 0;
+            long compressedNotes = 0;
+            long compressedBytes = 0;
+            while (rs.next()) {
+                if (rs.getByte(1) == NoteCodec.PLAIN) {
+                    plainNotes += rs.getLong(2);
+                    plainBytes += rs.getLong(3);
+                } else {
+                    compressedNotes += rs.getLong(2);
+                    compressedBytes += rs.getLong(4);
+                }
+            }
+            return "Note bodies: " + compressedNotes + " compressed in " + compressedBytes / 1024 + " KB, "
+                    + plainNotes + " plain in " + plainBytes / 1024 + " KB.";
+        }
+    }
+
+    private long readMaxId() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM " + table);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // Last id the deduplicator has hashed; the next connect resumes past it
+    private long readHashedUpTo(long maxId) throws SQLException {
+        String state = readState(NoteDeduplicator.JOB_NAME);
+        if (state == null) {
+            return 0;
+        }
+        return NoteDeduplicator.DONE.equals(state) ? maxId : Long.parseLong(state);
+    }
+
+    private String readState(String job) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT state FROM " + jobTable + " WHERE name = ?")) {
+            pstmt.setString(1, job);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private void writeState(String state) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "INSERT INTO " + jobTable + " (name, state) VALUES (?, ?) ON DUPLICATE KEY UPDATE state = VALUES(state)")) {
+            pstmt.setString(1, JOB_NAME);
+            pstmt.setString(2, state);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package burp;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Size-bounded LRU cache of full note bodies, keyed by note id.
+ *
+ * List queries only carry a short preview, so the detail views ask this cache
+ * for the full content of the selected row. Misses are fetched on a background
+ * thread together with the neighbouring rows, which makes stepping through a
+ * result list with the arrow keys hit the cache.
+ */
+public class NoteContentCache {
+    private final long maxChars;
+    private long cachedChars;
+    private final LinkedHashMap<Integer, String> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "BurpNote-content-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public NoteContentCache(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    public synchronized String getIfPresent(int id) {
+        return entries.get(id);
+    }
+
+    public synchronized void put(int id, String content) {
+        String old = entries.put(id, content);
+        if (old != null) {
+            cachedChars -= old.length();
+        }
+        cachedChars += content.length();
+        java.util.Iterator<String> it = entries.values().iterator();
+        // Always keep the entry just added, even if it alone exceeds the budget
+        while (cachedChars > maxChars && entries.size() > 1 && it.hasNext()) {
+            cachedChars -= it.next().length();
+            it.remove();
+        }
+    }
+
+    public synchronized void invalidate(Collection<Integer> ids) {
+        for (Integer id : ids) {
+            String old = entries.remove(id);
+            if (old != null) {
+                cachedChars -= old.length();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedChars = 0;
+    }
+
+    /**
+     * Delivers the full content of a note to the callback on the EDT, loading it
+     * and any uncached neighbours in one query if needed. The callback receives
+     * null if the note no longer exists.
+     */
+    public void load(NoteStore store, int id, Collection<Integer> neighbours,
+                     Consumer<String> onLoaded, Consumer<Exception> onError) {
+        String cached = getIfPresent(id);
+        if (cached != null) {
+            onLoaded.accept(cached);
+            prefetch(store, neighbours);
+            return;
+        }
+        List<Integer> wanted = new ArrayList<>();
+        wanted.add(id);
+        wanted.addAll(missing(neighbours, id));
+        loader.submit(() -> {
+            try {
+                Map<Integer, String> loaded = fetch(store, wanted);
+                String content = loaded.get(id);
+                SwingUtilities.invokeLater(() -> onLoaded.accept(content));
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> onError.accept(e));
+            }
+        });
+    }
+
+    private void prefetch(NoteStore store, Collection<Integer> ids) {
+        List<Integer> wanted = missing(ids, null);
+        if (wanted.isEmpty()) {
+            return;
+        }
+        loader.submit(() -> {
+            try {
+                fetch(store, wanted);
+            } catch (SQLException ignored) {
+                // Prefetch is best-effort; a real selection will report errors
+            }
+        });
+    }
+
+    private synchronized List<Integer> missing(Collection<Integer> ids, Integer exclude) {
+        List<Integer> result = new ArrayList<>();
+        for (Integer id : ids) {
+            if (id != null && !id.equals(exclude) && !entries.containsKey(id) && !result.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private Map<Integer, String> fetch(NoteStore store, List<Integer> ids) throws SQLException {
+        Map<Integer, String> loaded = store.loadContent(ids);
+        for (Map.Entry<Integer, String> entry : loaded.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        return loaded;
+    }
+
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+}
@@ -0,0 +1,151 @@
+package burp;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Background job that hashes notes written before content hashes existed and
+ * collapses duplicates of the same content for the same domain.
+ *
+ * The table has a unique index on (domain, content_hash), and rows without a
+ * hash are exempt from it. The job walks the table in ascending id chunks. In
+ * each chunk it sets the hash with UPDATE IGNORE, so any row whose
+ * (domain, hash) is already taken keeps a NULL hash, and then deletes exactly
+ * those rows. The copy that keeps the hash may be newer, e.g. inserted with
+ * its hash after this job started, so before the delete it takes the
+ * earliest create_time of its duplicates, and is restored if one of them is
+ * still live; the note keeps its original date and its client reference,
+ * which replays of the journal match on. Every chunk is its own few short
+ * statements, with a pause in between, so the table is never locked for long. Progress is stored in the jobs table; the job
+ * resumes where it stopped and does nothing once it has finished.
+ */
+public class NoteDeduplicator implements Runnable {
+    public static final String JOB_NAME = "dedupe_content_hash";
+    static final String DONE = "done";
+
+    private final String table;
+    private final String jobTable;
+    private final ConnectionPool pool;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final Consumer<String> log;
+
+    public NoteDeduplicator(String table, String jobTable, ConnectionPool pool, int chunkSize, long pauseMillis,
+                            Consumer<String> log) {
+        this.table = table;
+        this.jobTable = jobTable;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.log = log;
+    }
+
+    /**
+     * SHA-256 of the UTF-8 content; matches UNHEX(SHA2(content, 256)) for utf8mb4 columns.
+     */
+    public static byte[] contentHash(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            String state = readState();
+            if (DONE.equals(state)) {
+                return;
+            }
+            long lastId = state == null ? 0 : Long.parseLong(state);
+            long maxId = readMaxId();
+            long removed = 0;
+            while (lastId < maxId && !pool.isClosed() && !Thread.currentThread().isInterrupted()) {
+                long upTo = Math.min(lastId + chunkSize, maxId);
+                removed += processChunk(lastId, upTo);
+                lastId = upTo;
+                writeState(Long.toString(lastId));
+                Thread.sleep(pauseMillis);
+            }
+            if (lastId >= maxId) {
+                writeState(DONE);
+                log.accept("Duplicate note cleanup finished; removed " + removed + " duplicate(s).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Progress is saved per chunk; the next connect resumes from there
+            log.accept("Duplicate note cleanup paused: " + e.getMessage());
+        }
+    }
+
+    private long processChunk(long afterId, long upToId) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE IGNORE " + table + " SET content_hash = UNHEX(SHA2(COALESCE(content, ''), 256)) " +
+                    "WHERE id > ? AND id <= ? AND content_hash IS NULL ORDER BY id")) {
+                pstmt.setLong(1, afterId);
+                pstmt.setLong(2, upToId);
+                pstmt.executeUpdate();
+            }
+            // Rows still without a hash collided with an existing copy, which
+            // takes their age and liveness; the change is marked for delta pollers
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE " + table + " AS kept JOIN (" +
+                    "SELECT domain, UNHEX(SHA2(COALESCE(content, ''), 256)) AS hash, MIN(create_time) AS first_time, " +
+                    "MAX(deleted_at IS NULL) AS any_live FROM " + table +
+                    " WHERE id > ? AND id <= ? AND content_hash IS NULL GROUP BY domain, hash) AS dup " +
+                    "ON kept.domain = dup.domain AND kept.content_hash = dup.hash " +
+                    "SET kept.create_time = LEAST(kept.create_time, dup.first_time), " +
+                    "kept.deleted_at = CASE WHEN dup.any_live = 1 THEN NULL ELSE kept.deleted_at END, " +
+                    "kept.updated_at = CURRENT_TIMESTAMP(3) " +
+                    "WHERE dup.first_time < kept.create_time OR (dup.any_live = 1 AND kept.deleted_at IS NOT NULL)")) {
+                pstmt.setLong(1, afterId);
+                pstmt.setLong(2, upToId);
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "DELETE FROM " + table + " WHERE id > ? AND id <= ? AND content_hash IS NULL")) {
+                pstmt.setLong(1, afterId);
+                pstmt.setLong(2, upToId);
+                return pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private long readMaxId() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM " + table);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private String readState() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT state FROM " + jobTable + " WHERE name = ?")) {
+            pstmt.setString(1, JOB_NAME);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private void writeState(String state) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "INSERT INTO " + jobTable + " (name, state) VALUES (?, ?) ON DUPLICATE KEY UPDATE state = VALUES(state)")) {
+            pstmt.setString(1, JOB_NAME);
+            pstmt.setString(2, state);
+            pstmt.executeUpdate();
+        }
+    }
+}
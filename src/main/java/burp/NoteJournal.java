@@ -0,0 +1,298 @@
+package burp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of notes that have not reached the database yet.
+ *
+ * Every accepted note is appended here before anything else happens, so it
+ * survives a MySQL outage, a dropped VPN or Burp being closed. Each record is
+ * [payload length][CRC32][payload], where the payload holds a unique client
+ * reference, the domain and the content. The reference lets the replicator
+ * insert idempotently: replaying a record that already reached the database
+ * is a no-op.
+ *
+ * A separate checkpoint file holds the offset up to which records are known
+ * to be in the database. On open, records after the checkpoint are recovered;
+ * a torn or corrupt tail (e.g. from a crash mid-append) is truncated. Once
+ * everything has been replicated the journal file is truncated to zero.
+ * Notes the database refuses are set aside in a JSONL file next to it.
+ * EmbeddedNoteStore shares this record framing.
+ *
+ * A journal belongs to one Burp instance at a time, held by an exclusive
+ * file lock. A second instance running at the same time takes the next free
+ * journal ("notes-1.journal", ...), and replays whatever a crashed instance
+ * left in it the next time it gets that journal.
+ */
+public class NoteJournal implements Closeable {
+    static final int HEADER_BYTES = 8;
+    static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_INSTANCES = 16;
+    // Journal files this extension instance has locked
+    private static final Set<Path> HELD = ConcurrentHashMap.newKeySet();
+
+    /**
+     * A journaled note and the journal offset just past its record. The
+     * create time is only set for imported notes; null means "now".
+     */
+    public static final class Record {
+        public final String ref;
+        public final String domain;
+        public final String content;
+        public final Timestamp createTime;
+        public final long endOffset;
+
+        public Record(String ref, String domain, String content, long endOffset) {
+            this(ref, domain, content, null, endOffset);
+        }
+
+        public Record(String ref, String domain, String content, Timestamp createTime, long endOffset) {
+            this.ref = ref;
+            this.domain = domain;
+            this.content = content;
+            this.createTime = createTime;
+            this.endOffset = endOffset;
+        }
+    }
+
+    private final Path file;
+    private final Path checkpointFile;
+    private final Path rejectedFile;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final String refPrefix;
+    private long sequence;
+    private boolean dirty;
+
+    public NoteJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        int slot = 0;
+        FileChannel opened = null;
+        FileLock locked = null;
+        for (; slot < MAX_INSTANCES && locked == null; slot++) {
+            Path candidate = directory.resolve(name(slot) + ".journal").toAbsolutePath();
+            // Closing another channel to a file drops this process's POSIX lock on it, so held files are not even opened
+            if (!HELD.add(candidate)) {
+                continue;
+            }
+            opened = FileChannel.open(candidate, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                locked = opened.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Still held by an extension instance that was not unloaded cleanly; leave its lock in place
+                continue;
+            }
+            if (locked == null) {
+                opened.close();
+                HELD.remove(candidate);
+            }
+        }
+        if (locked == null) {
+            throw new IOException("All " + MAX_INSTANCES + " journals in " + directory + " are in use by other Burp instances");
+        }
+        String name = name(slot - 1);
+        this.file = directory.resolve(name + ".journal");
+        this.checkpointFile = directory.resolve(name + ".checkpoint");
+        this.rejectedFile = directory.resolve("rejected-notes.jsonl");
+        this.channel = opened;
+        this.lock = locked;
+        byte[] random = new byte[8];
+        new SecureRandom().nextBytes(random);
+        StringBuilder prefix = new StringBuilder();
+        for (byte b : random) {
+            prefix.append(String.format("%02x", b));
+        }
+        this.refPrefix = prefix.toString();
+    }
+
+    private static String name(int slot) {
+        return slot == 0 ? "notes" : "notes-" + slot;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the records that were appended but never checkpointed, truncating
+     * any torn or corrupt tail. Call once, before the first append.
+     */
+    public synchronized List<Record> recover() throws IOException {
+        List<Record> records = new ArrayList<>();
+        long size = channel.size();
+        long position = readCheckpoint();
+        if (position > size) {
+            // Crash between truncating the journal and resetting the checkpoint
+            position = 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            if (crc(payload.array()) != checksum) {
+                break;
+            }
+            payload.flip();
+            long end = position + HEADER_BYTES + length;
+            records.add(new Record(readString(payload), readString(payload), readString(payload), end));
+            position = end;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        return records;
+    }
+
+    /**
+     * Appends a note. The data reaches the OS immediately; force() makes it durable.
+     */
+    public synchronized Record append(String domain, String content) throws IOException {
+        String ref = refPrefix + "-" + (++sequence);
+        byte[] payload = encode(ref, domain, content);
+        checkRecordSize(payload.length);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(crc(payload)).put(payload);
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        dirty = true;
+        return new Record(ref, domain, content, channel.position());
+    }
+
+    /**
+     * Sets a note the database refused aside as a line of a JSONL file that
+     * Import accepts once the cause is fixed, and returns that file. The note
+     * leaves the journal with the next checkpoint past it.
+     */
+    public synchronized Path reject(Record record) throws IOException {
+        try (Writer out = Files.newBufferedWriter(rejectedFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            NoteTransfer.writeJsonLine(out, 0, record.domain, record.content, record.createTime);
+        }
+        return rejectedFile;
+    }
+
+    /**
+     * Flushes appended records to disk if anything was written since the last call.
+     */
+    public synchronized void force() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Records that everything up to the offset is in the database. When that
+     * covers the whole journal, the file is truncated back to empty.
+     */
+    public synchronized void checkpoint(long offset) throws IOException {
+        if (offset >= channel.size()) {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            offset = 0;
+        }
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(temp, Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(checkpointFile), StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            // Replaying from the start is safe because inserts are idempotent
+            return 0;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+    }
+
+    private static byte[] encode(String ref, String domain, String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length() + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, ref);
+        writeString(out, domain);
+        writeString(out, content);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Refuses a record that recover() would take for a torn tail, which
+     * would cost it and every record after it.
+     */
+    static void checkRecordSize(int payloadBytes) throws IOException {
+        if (payloadBytes > MAX_RECORD_BYTES) {
+            throw new IOException("Note too large: " + payloadBytes / (1024 * 1024) + " MB, the limit is "
+                    + MAX_RECORD_BYTES / (1024 * 1024) + " MB");
+        }
+    }
+
+    static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        lock.release();
+        channel.close();
+        HELD.remove(file.toAbsolutePath());
+    }
+}
@@ -0,0 +1,153 @@
+package burp;
+
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Order and filter of the note list, pushed down to the store.
+ *
+ * Every order is total: rows with the same sort value are ordered by id in
+ * the same direction, so a page can always be fetched by the key of the row
+ * before it. The domain filter uses the domain search syntax
+ * ("*.example.com" for subdomains, anything else a case-insensitive
+ * substring); the length filter keeps notes of at least minLength characters.
+ */
+public final class NoteListQuery {
+    /** Sortable list columns, by index into PagedNotesTableModel.COLUMN_NAMES. */
+    public enum SortColumn {
+        ID(0), DOMAIN(1), LENGTH(3), TIME(4);
+
+        public final int column;
+
+        SortColumn(int column) {
+            this.column = column;
+        }
+
+        /**
+         * The sort column for a table column, or null if it cannot be sorted on.
+         */
+        public static SortColumn forColumn(int column) {
+            for (SortColumn sort : values()) {
+                if (sort.column == column) {
+                    return sort;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Direction used when the column is first clicked: A-Z for domains, largest or newest first otherwise.
+         */
+        public boolean defaultAscending() {
+            return this == DOMAIN;
+        }
+    }
+
+    /** Newest first, unfiltered: the list's default order. */
+    public static final NoteListQuery NEWEST_FIRST = new NoteListQuery(SortColumn.TIME, false, "", 0);
+
+    public final SortColumn sort;
+    public final boolean ascending;
+    public final String domainFilter;
+    public final int minLength;
+
+    public NoteListQuery(SortColumn sort, boolean ascending, String domainFilter, int minLength) {
+        this.sort = sort;
+        this.ascending = ascending;
+        this.domainFilter = domainFilter == null ? "" : domainFilter.trim();
+        this.minLength = Math.max(0, minLength);
+    }
+
+    public NoteListQuery sortedBy(SortColumn sort, boolean ascending) {
+        return new NoteListQuery(sort, ascending, domainFilter, minLength);
+    }
+
+    public NoteListQuery filtered(String domainFilter, int minLength) {
+        return new NoteListQuery(sort, ascending, domainFilter, minLength);
+    }
+
+    /**
+     * The same rows in the opposite order, for reading pages from the end.
+     */
+    public NoteListQuery reversed() {
+        return new NoteListQuery(sort, !ascending, domainFilter, minLength);
+    }
+
+    public boolean isFiltered() {
+        return !domainFilter.isEmpty() || minLength > 0;
+    }
+
+    /**
+     * Whether both queries select the same rows, so only the order differs.
+     */
+    public boolean hasSameFilter(NoteListQuery other) {
+        return domainFilter.equals(other.domainFilter) && minLength == other.minLength;
+    }
+
+    /**
+     * Sort value of a list row for this order.
+     */
+    public Object sortKey(Object[] row) {
+        return row[sort.column];
+    }
+
+    /**
+     * Whether a list row passes the filter; same semantics as the SQL stores.
+     */
+    public boolean matches(Object[] row) {
+        if (minLength > 0 && ((Number) row[3]).intValue() < minLength) {
+            return false;
+        }
+        if (domainFilter.isEmpty()) {
+            return true;
+        }
+        String domain = row[1] == null ? "" : ((String) row[1]).toLowerCase(Locale.ROOT);
+        String filter = domainFilter.toLowerCase(Locale.ROOT);
+        return DomainGramIndex.reversedSuffixPattern(filter) != null ? domain.endsWith(filter.substring(1)) : domain.contains(filter);
+    }
+
+    /**
+     * Order of list rows; domains compare case-insensitively with missing ones first, like MySQL.
+     */
+    public Comparator<Object[]> rowComparator() {
+        Comparator<Object[]> byKey;
+        switch (sort) {
+            case DOMAIN:
+                byKey = Comparator.comparing(row -> (String) row[1], Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+                break;
+            case LENGTH:
+                byKey = Comparator.comparingInt(row -> ((Number) row[3]).intValue());
+                break;
+            case TIME:
+                byKey = Comparator.comparing(row -> (Timestamp) row[4]);
+                break;
+            default:
+                byKey = (a, b) -> 0;
+                break;
+        }
+        Comparator<Object[]> order = byKey.thenComparingInt(row -> (Integer) row[0]);
+        return ascending ? order : order.reversed();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof NoteListQuery)) {
+            return false;
+        }
+        NoteListQuery other = (NoteListQuery) o;
+        return sort == other.sort && ascending == other.ascending && hasSameFilter(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sort, ascending, domainFilter, minLength);
+    }
+
+    @Override
+    public String toString() {
+        return sort + (ascending ? " ASC" : " DESC") + (domainFilter.isEmpty() ? "" : ", domain " + domainFilter)
+                + (minLength > 0 ? ", length >= " + minLength : "");
+    }
+}
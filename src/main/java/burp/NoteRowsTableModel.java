@@ -0,0 +1,189 @@
+package burp;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Read-only table model for note lists held in full, such as search results.
+ *
+ * Rows are stored by column: ids, lengths and create times in primitive
+ * arrays, domains deduplicated through a pool, so a result of thousands of
+ * notes on a handful of hosts keeps each domain string once and no per-row
+ * Vector, Integer or Timestamp objects. Rows are added, removed and updated
+ * in batches with one table event each; Timestamps are only created for
+ * the cells that are rendered.
+ *
+ * All methods must be called on the EDT.
+ */
+public class NoteRowsTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private String[] domains = new String[INITIAL_CAPACITY];
+    private String[] previews = new String[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+    // Canonical instance of each domain in the model; dropped with the rows
+    private final Map<String, String> domainPool = new HashMap<>();
+
+    /**
+     * Replaces all rows, in NoteStore list row format.
+     */
+    public void setRows(List<Object[]> rows) {
+        truncate();
+        add(rows);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Appends rows with a single insert event.
+     */
+    public void appendRows(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int first = size;
+        add(rows);
+        fireTableRowsInserted(first, size - 1);
+    }
+
+    public void clear() {
+        if (size > 0) {
+            truncate();
+            fireTableDataChanged();
+        }
+    }
+
+    public int getIdAt(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Drops the deleted notes and replaces the rows of changed ones, keyed by
+     * id, with one table event.
+     */
+    public void merge(Set<Integer> deleted, Map<Integer, Object[]> changed) {
+        int kept = 0;
+        int first = -1;
+        int last = -1;
+        for (int row = 0; row < size; row++) {
+            if (deleted.contains(ids[row])) {
+                continue;
+            }
+            move(row, kept);
+            Object[] update = changed.get(ids[kept]);
+            if (update != null) {
+                set(kept, update);
+                first = first < 0 ? kept : first;
+                last = kept;
+            }
+            kept++;
+        }
+        if (kept < size) {
+            Arrays.fill(domains, kept, size, null);
+            Arrays.fill(previews, kept, size, null);
+            size = kept;
+            fireTableDataChanged();
+        } else if (last >= 0) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    private void add(List<Object[]> rows) {
+        ensureCapacity(size + rows.size());
+        for (Object[] row : rows) {
+            set(size++, row);
+        }
+    }
+
+    private void set(int index, Object[] row) {
+        ids[index] = (Integer) row[0];
+        String domain = (String) row[1];
+        domains[index] = domain == null ? null : domainPool.computeIfAbsent(domain, d -> d);
+        previews[index] = (String) row[2];
+        lengths[index] = ((Number) row[3]).intValue();
+        times[index] = row[4] == null ? NO_TIME : ((Timestamp) row[4]).getTime();
+    }
+
+    private void move(int from, int to) {
+        if (from != to) {
+            ids[to] = ids[from];
+            domains[to] = domains[from];
+            previews[to] = previews[from];
+            lengths[to] = lengths[from];
+            times[to] = times[from];
+        }
+    }
+
+    private void truncate() {
+        size = 0;
+        domainPool.clear();
+        if (ids.length > INITIAL_CAPACITY) {
+            // Do not hold on to the arrays of a large earlier result
+            ids = new int[INITIAL_CAPACITY];
+            domains = new String[INITIAL_CAPACITY];
+            previews = new String[INITIAL_CAPACITY];
+            lengths = new int[INITIAL_CAPACITY];
+            times = new long[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(domains, null);
+            Arrays.fill(previews, null);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        domains = Arrays.copyOf(domains, newCapacity);
+        previews = Arrays.copyOf(previews, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+        times = Arrays.copyOf(times, newCapacity);
+    }
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return PagedNotesTableModel.COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return PagedNotesTableModel.COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case 0:
+                return ids[row];
+            case 1:
+                return domains[row];
+            case 2:
+                return previews[row];
+            case 3:
+                return lengths[row];
+            default:
+                return times[row] == NO_TIME ? null : new Timestamp(times[row]);
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+}
@@ -0,0 +1,218 @@
+package burp;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Storage backend for notes. The UI and the background jobs only talk to
+ * this interface, so each backend can be tuned and benchmarked on its own.
+ *
+ * List methods return rows in PagedNotesTableModel.COLUMN_NAMES order:
+ * {id, domain, preview, content length, create time}, where the preview is
+ * the first PagedNotesTableModel.PREVIEW_CHARS characters of the content.
+ * Lists are ordered newest first (create_time DESC, id DESC) unless noted;
+ * the note list itself can be sorted and filtered with a NoteListQuery.
+ *
+ * Implementations are thread-safe. Failures surface as SQLException for
+ * every backend, so callers handle them the same way.
+ */
+public interface NoteStore extends AutoCloseable {
+    int CONTENT_SEARCH_LIMIT = 5000;
+
+    enum SearchMode {
+        EXACT, FUZZY, CONTENT
+    }
+
+    /**
+     * Search results plus the strategy used to find them, for logging.
+     */
+    final class SearchResult {
+        public final List<Object[]> rows;
+        public final String strategy;
+
+        public SearchResult(List<Object[]> rows, String strategy) {
+            this.rows = rows;
+            this.strategy = strategy;
+        }
+    }
+
+    /**
+     * A note inserted, deleted or restored after a change watermark.
+     */
+    final class NoteChange {
+        /** List row of the note, also when it was deleted. */
+        public final Object[] row;
+        public final boolean deleted;
+        /** Change time in milliseconds, as recorded by the store. */
+        public final long changedAt;
+
+        public NoteChange(Object[] row, boolean deleted, long changedAt) {
+            this.row = row;
+            this.deleted = deleted;
+            this.changedAt = changedAt;
+        }
+
+        public int id() {
+            return (Integer) row[0];
+        }
+    }
+
+    /**
+     * Receives search results one row at a time, in result order.
+     */
+    interface RowSink {
+        void accept(Object[] row);
+    }
+
+    /**
+     * Receives notes streamed by exportNotes. Throwing stops the export.
+     */
+    interface NoteSink {
+        void accept(int id, String domain, String content, Timestamp createTime) throws IOException;
+    }
+
+    /**
+     * Prepares the backend (schema, files) and returns a description of each
+     * change that was applied, e.g. schema migrations.
+     */
+    List<String> open() throws SQLException;
+
+    /**
+     * One-line status for the UI, e.g. connection pool usage.
+     */
+    String describe();
+
+    /**
+     * Inserts one note. Same as a batch of one with a fresh client reference.
+     */
+    default void insert(String domain, String content) throws SQLException {
+        insertBatch(Collections.singletonList(new NoteJournal.Record(UUID.randomUUID().toString(), domain, content, 0)));
+    }
+
+    /**
+     * Inserts notes idempotently: a note whose client reference was already
+     * stored, or whose content already exists for the same domain, is skipped.
+     */
+    void insertBatch(List<NoteJournal.Record> notes) throws SQLException;
+
+    /**
+     * Exact domain, fuzzy domain ("*.example.com" for subdomains) or content search.
+     */
+    default SearchResult search(SearchMode mode, String term) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        String strategy = search(mode, term, new QueryCanceller(), rows::add);
+        return new SearchResult(rows, strategy);
+    }
+
+    /**
+     * Same search, handing rows to the sink as soon as they are known to be
+     * in final order, and returning the strategy used. Once the canceller is
+     * cancelled the search stops early, returning or throwing; its results
+     * should then be ignored.
+     */
+    String search(SearchMode mode, String term, QueryCanceller canceller, RowSink sink) throws SQLException;
+
+    /**
+     * All notes for the given domains, grouped by domain.
+     */
+    List<Object[]> findByDomains(Collection<String> domains) throws SQLException;
+
+    /**
+     * Number of notes passing the query's filter.
+     */
+    int count(NoteListQuery query) throws SQLException;
+
+    /**
+     * Up to limit notes in the query's order, skipping skip notes after the
+     * given row, which must have been returned for a query with the same
+     * order; a null row starts at the first note. Only the row's sort key and
+     * id are used, so the page is an index range scan whatever its position,
+     * except that skipped notes are still read and thrown away: a skip costs
+     * time in proportion to its size.
+     */
+    List<Object[]> page(NoteListQuery query, Object[] after, int skip, int limit) throws SQLException;
+
+    /**
+     * Full content of the notes that still exist, keyed by id.
+     */
+    Map<Integer, String> loadContent(Collection<Integer> ids) throws SQLException;
+
+    /**
+     * Streams every note with id &gt; afterId to the sink in id order, without
+     * holding the whole result in memory. Returns the number of notes streamed.
+     */
+    long exportNotes(long afterId, NoteSink sink) throws SQLException, IOException;
+
+    /**
+     * Tombstones the notes: they disappear from every read at once, and are
+     * removed for good by purgeDeleted once the undo window has passed.
+     * Returns how many were deleted per domain; notes without a domain are
+     * counted under "". Empty if none existed. Large selections are marked in
+     * bounded chunks.
+     */
+    Map<String, Integer> delete(Collection<Integer> ids) throws SQLException;
+
+    /**
+     * Brings back tombstoned notes that have not been purged yet; counted like delete.
+     */
+    Map<String, Integer> undelete(Collection<Integer> ids) throws SQLException;
+
+    /**
+     * Permanently removes up to limit notes tombstoned more than olderThanMillis
+     * ago, oldest first, and returns how many were removed. Callers repeat it
+     * until it returns less than limit, so no single call holds locks for long.
+     */
+    int purgeDeleted(long olderThanMillis, int limit) throws SQLException;
+
+    /**
+     * Highest note id, or 0 if there are none; ids only grow, so it serves as a change watermark.
+     */
+    long maxId() throws SQLException;
+
+    /**
+     * Number of notes per domain with afterId &lt; id &lt;= upToId.
+     */
+    Map<String, Integer> countByDomain(long afterId, long upToId) throws SQLException;
+
+    /**
+     * Current time of the store's change clock: changes made from now on are
+     * recorded at this time or later. Pollers use it as their next watermark.
+     */
+    long changeWatermark() throws SQLException;
+
+    /**
+     * Up to limit notes changed after the (change time, id) position, in that
+     * order; deleted notes are included until they are purged. Each call is an
+     * index range scan, so polling costs next to nothing while nothing changes.
+     * Changes committed late can carry a slightly older time, so pollers
+     * re-read a short window before their watermark.
+     */
+    List<NoteChange> changesSince(long afterMillis, int afterId, int limit) throws SQLException;
+
+    /**
+     * Endpoint set query across notes; rows as described by EndpointQuery.
+     */
+    List<Object[]> endpoints(EndpointQuery query) throws SQLException;
+
+    @Override
+    void close();
+
+    /**
+     * Best-matching domains first, newest notes first within a domain.
+     */
+    static void rankRows(List<Object[]> rows, String term) {
+        Comparator<String> byDomain = DomainGramIndex.rankComparator(term);
+        rows.sort((a, b) -> {
+            int result = byDomain.compare(String.valueOf(a[1]), String.valueOf(b[1]));
+            return result != 0 ? result : ((Timestamp) b[4]).compareTo((Timestamp) a[4]);
+        });
+    }
+}
@@ -0,0 +1,567 @@
+package burp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams whole note sets to and from JSONL or CSV files, optionally gzipped
+ * (chosen by a ".gz" suffix), for moving notes between engagements and team
+ * databases.
+ *
+ * Export reads the store through NoteStore.exportNotes, so memory use does
+ * not depend on the number of notes, and writes to a ".part" file that only
+ * replaces the target once complete. Import parses one record at a time and
+ * writes batches through insertBatch. Each imported note gets a client
+ * reference derived from the file and its position in it, so importing the
+ * same file twice is a no-op. After every batch the number of records
+ * committed is saved to a checkpoint file; if the import fails or is
+ * cancelled, importing the same file again resumes after that point.
+ *
+ * Both directions stop with an InterruptedIOException when the calling
+ * thread is interrupted, e.g. by SwingWorker.cancel(true).
+ */
+public class NoteTransfer {
+    public static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final String[] CSV_HEADER = {"id", "domain", "content", "create_time"};
+
+    public enum Format {
+        JSONL, CSV;
+
+        /**
+         * Format for a file name such as "notes.jsonl.gz"; JSONL unless it names a CSV file.
+         */
+        public static Format of(Path file) {
+            String name = stripGzip(file.getFileName().toString().toLowerCase(Locale.ROOT));
+            return name.endsWith(".csv") ? CSV : JSONL;
+        }
+    }
+
+    /**
+     * Receives the number of records processed and, when known, the percentage done (else -1).
+     */
+    public interface Progress {
+        void update(long records, int percent);
+    }
+
+    /**
+     * Outcome of an import.
+     */
+    public static final class ImportResult {
+        /** Records read from the file, including the ones a resumed import skipped. */
+        public final long records;
+        /** Records skipped because an earlier attempt had already committed them. */
+        public final long resumedAfter;
+
+        ImportResult(long records, long resumedAfter) {
+            this.records = records;
+            this.resumedAfter = resumedAfter;
+        }
+    }
+
+    private final Path checkpointDir;
+
+    /**
+     * @param checkpointDir where resumable imports keep their progress
+     */
+    public NoteTransfer(Path checkpointDir) {
+        this.checkpointDir = checkpointDir;
+    }
+
+    /**
+     * Writes every note to the file and returns how many were written.
+     */
+    public long exportTo(NoteStore store, Path file, Progress progress) throws SQLException, IOException {
+        Format format = Format.of(file);
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        long count;
+        // FileOutputStream rather than a channel stream: an interrupt must not close it mid-write
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(openOutput(part, isGzip(file)), StandardCharsets.UTF_8), BUFFER_BYTES)) {
+            if (format == Format.CSV) {
+                writeCsvRow(out, CSV_HEADER);
+            }
+            long[] written = new long[1];
+            count = store.exportNotes(0, (id, domain, content, createTime) -> {
+                if (format == Format.CSV) {
+                    writeCsvRow(out, new String[]{String.valueOf(id), domain == null ? "" : domain, content, formatTime(createTime)});
+                } else {
+                    writeJsonLine(out, id, domain, content, createTime);
+                }
+                if (++written[0] % PROGRESS_INTERVAL == 0) {
+                    checkInterrupted("Export");
+                    progress.update(written[0], -1);
+                }
+            });
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+        progress.update(count, 100);
+        return count;
+    }
+
+    /**
+     * Number of records an earlier, unfinished import of this file committed, or 0.
+     */
+    public long resumePoint(Path file) throws IOException {
+        Path checkpoint = checkpointFile(file);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Imports every record of the file, resuming after the records an earlier
+     * attempt already committed.
+     */
+    public ImportResult importFrom(NoteStore store, Path file, Progress progress) throws SQLException, IOException {
+        Format format = Format.of(file);
+        String refPrefix = "imp-" + fingerprint(file) + "-";
+        Path checkpoint = checkpointFile(file);
+        long resumeAfter = resumePoint(file);
+        long size = Math.max(1, Files.size(file));
+        long records = 0;
+        try (CountingInputStream raw = new CountingInputStream(new FileInputStream(file.toFile()));
+             Reader in = new BufferedReader(new InputStreamReader(isGzip(file) ? new GZIPInputStream(raw, BUFFER_BYTES) : raw,
+                     StandardCharsets.UTF_8), BUFFER_BYTES)) {
+            RecordReader reader = format == Format.CSV ? new CsvReader(in) : new JsonlReader(in);
+            List<NoteJournal.Record> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            String[] fields;
+            while ((fields = reader.next()) != null) {
+                records++;
+                if (records <= resumeAfter) {
+                    continue;
+                }
+                batch.add(new NoteJournal.Record(refPrefix + records, fields[0], fields[1] == null ? "" : fields[1], parseTime(fields[2]), 0));
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    checkInterrupted("Import");
+                    store.insertBatch(batch);
+                    batch.clear();
+                    saveCheckpoint(checkpoint, records);
+                    progress.update(records, (int) Math.min(99, raw.count * 100 / size));
+                }
+            }
+            if (!batch.isEmpty()) {
+                store.insertBatch(batch);
+            }
+        }
+        Files.deleteIfExists(checkpoint);
+        progress.update(records, 100);
+        return new ImportResult(records, Math.min(resumeAfter, records));
+    }
+
+    private void saveCheckpoint(Path checkpoint, long records) throws IOException {
+        Files.createDirectories(checkpointDir);
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.write(temp, String.valueOf(records).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path checkpointFile(Path file) throws IOException {
+        return checkpointDir.resolve("import-" + fingerprint(file) + ".checkpoint");
+    }
+
+    // Identifies one version of one file: a changed file starts a new import
+    private static String fingerprint(Path file) throws IOException {
+        String identity = file.toAbsolutePath().normalize() + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void checkInterrupted(String operation) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException(operation + " cancelled");
+        }
+    }
+
+    private static boolean isGzip(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    private static String stripGzip(String name) {
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    private static OutputStream openOutput(Path file, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(file.toFile());
+        return gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : out;
+    }
+
+    private static String formatTime(Timestamp time) {
+        return time == null ? "" : time.toInstant().toString();
+    }
+
+    // ISO-8601 instants as written by export; MySQL's "yyyy-MM-dd HH:mm:ss" is accepted too
+    static Timestamp parseTime(String value) throws IOException {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return Timestamp.from(Instant.parse(trimmed));
+        } catch (DateTimeParseException e) {
+            try {
+                return Timestamp.valueOf(trimmed);
+            } catch (IllegalArgumentException e2) {
+                throw new IOException("Invalid create_time: " + trimmed);
+            }
+        }
+    }
+
+    // JSONL
+
+    static void writeJsonLine(Writer out, int id, String domain, String content, Timestamp createTime) throws IOException {
+        out.write("{\"id\":");
+        out.write(String.valueOf(id));
+        out.write(",\"domain\":");
+        writeJsonString(out, domain);
+        out.write(",\"content\":");
+        writeJsonString(out, content);
+        out.write(",\"create_time\":");
+        writeJsonString(out, createTime == null ? null : formatTime(createTime));
+        out.write("}\n");
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Reads one record at a time as {domain, content, create_time}.
+     */
+    private interface RecordReader {
+        String[] next() throws IOException;
+    }
+
+    /**
+     * One flat JSON object per line; unknown keys are ignored.
+     */
+    private static final class JsonlReader implements RecordReader {
+        private final Reader in;
+        private int peeked = -2;
+        private long line;
+
+        JsonlReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            int c = skipWhitespace();
+            if (c < 0) {
+                return null;
+            }
+            line++;
+            expect(c, '{');
+            String[] fields = new String[3];
+            c = skipWhitespace();
+            if (c == '}') {
+                return fields;
+            }
+            while (true) {
+                expect(c, '"');
+                String key = readString();
+                expect(skipWhitespace(), ':');
+                String value = readValue(skipWhitespace());
+                if ("domain".equals(key)) {
+                    fields[0] = value;
+                } else if ("content".equals(key)) {
+                    fields[1] = value;
+                } else if ("create_time".equals(key)) {
+                    fields[2] = value;
+                }
+                c = skipWhitespace();
+                if (c == '}') {
+                    return fields;
+                }
+                expect(c, ',');
+                c = skipWhitespace();
+            }
+        }
+
+        private String readValue(int c) throws IOException {
+            if (c == '"') {
+                return readString();
+            }
+            StringBuilder literal = new StringBuilder();
+            while (c >= 0 && c != ',' && c != '}' && !Character.isWhitespace(c)) {
+                literal.append((char) c);
+                c = read();
+            }
+            peeked = c;
+            String value = literal.toString();
+            if (value.isEmpty()) {
+                throw error("Expected a value");
+            }
+            return "null".equals(value) ? null : value;
+        }
+
+        private String readString() throws IOException {
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                int c = read();
+                if (c < 0 || c == '\n') {
+                    throw error("Unterminated string");
+                }
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append((char) c);
+                    continue;
+                }
+                c = read();
+                switch (c) {
+                    case '"': case '\\': case '/': value.append((char) c); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw error("Invalid \\u escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        value.append((char) code);
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c = read();
+            while (c >= 0 && Character.isWhitespace(c)) {
+                c = read();
+            }
+            return c;
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private void expect(int c, char expected) throws IOException {
+            if (c != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " in record " + line);
+        }
+    }
+
+    // CSV (RFC 4180): header line, fields quoted when needed, newlines allowed inside quotes
+
+    private static void writeCsvRow(Writer out, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String field = fields[i];
+            boolean quote = false;
+            for (int j = 0; j < field.length() && !quote; j++) {
+                char c = field.charAt(j);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (quote) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Maps columns by the header line, so column order does not matter.
+     */
+    private static final class CsvReader implements RecordReader {
+        private final Reader in;
+        private int domainColumn = -1;
+        private int contentColumn = -1;
+        private int timeColumn = -1;
+        private long line;
+
+        CsvReader(Reader in) throws IOException {
+            this.in = in;
+            List<String> header = readRow();
+            if (header == null) {
+                return;
+            }
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+                if ("domain".equals(name)) {
+                    domainColumn = i;
+                } else if ("content".equals(name)) {
+                    contentColumn = i;
+                } else if ("create_time".equals(name)) {
+                    timeColumn = i;
+                }
+            }
+            if (contentColumn < 0) {
+                throw new IOException("CSV header has no content column");
+            }
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            if (contentColumn < 0) {
+                return null;
+            }
+            List<String> row = readRow();
+            // Skip blank lines
+            while (row != null && row.size() == 1 && row.get(0).isEmpty()) {
+                row = readRow();
+            }
+            if (row == null) {
+                return null;
+            }
+            return new String[]{column(row, domainColumn), column(row, contentColumn), column(row, timeColumn)};
+        }
+
+        private static String column(List<String> row, int index) {
+            return index >= 0 && index < row.size() ? row.get(index) : null;
+        }
+
+        private List<String> readRow() throws IOException {
+            int c = in.read();
+            if (c < 0) {
+                return null;
+            }
+            line++;
+            List<String> row = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        throw new IOException("Unterminated quoted field in record " + line);
+                    }
+                    if (c == '"') {
+                        c = in.read();
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    row.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c < 0) {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+            row.add(field.toString());
+            return row;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package burp;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JMenuItem;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+import javax.swing.UIManager;
+
+/**
+ * Read-only viewer for note bodies of any size, with find.
+ *
+ * A JTextArea builds a document and lays out every line on the EDT, which
+ * freezes Burp for a multi-megabyte note. This viewer keeps the body as a
+ * plain String and builds an index of line start offsets on a background
+ * thread; painting then only touches the lines and columns in the clip, so
+ * scrolling costs the same for a 50 MB note as for a short one. Lines longer
+ * than MAX_LINE_CHARS (minified JavaScript, single-line JSON) are wrapped at
+ * that length so no single line has to be measured or drawn whole. The font
+ * is monospaced, so columns map to pixels without measuring text.
+ *
+ * Find scans for matches case-insensitively on a background thread and
+ * streams them in as they are found; the first match is shown as soon as it
+ * is known. Selection is by mouse drag, copied with the platform shortcut or
+ * the context menu.
+ *
+ * All methods must be called on the EDT.
+ */
+public class NoteViewer extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_LINE_CHARS = 4096;
+    private static final int TAB_WIDTH = 8;
+    private static final int MAX_MATCHES = 100_000;
+    // How often the scanners check for cancellation, in characters
+    private static final int CANCEL_CHECK_CHARS = 1 << 16;
+    // Texts up to this size are indexed directly on the EDT; it takes well under a millisecond
+    private static final int INLINE_INDEX_CHARS = 16 * 1024;
+    private static final Color MATCH = new Color(255, 200, 0, 110);
+    private static final Color CURRENT_MATCH = new Color(255, 120, 0, 180);
+
+    /**
+     * Display line start offsets of a text, and its widest line in columns.
+     */
+    private static final class LineIndex {
+        final String text;
+        final int[] starts;
+        final int count;
+        final int maxColumns;
+
+        LineIndex(String text, int[] starts, int count, int maxColumns) {
+            this.text = text;
+            this.starts = starts;
+            this.count = count;
+            this.maxColumns = maxColumns;
+        }
+
+        // Returns null once the worker is cancelled
+        static LineIndex build(String text, SwingWorker<?, ?> worker) {
+            int[] starts = new int[Math.max(16, text.length() / 40)];
+            int count = 1;
+            int maxColumns = 0;
+            int column = 0;
+            int lineChars = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (worker != null && i % CANCEL_CHECK_CHARS == 0 && worker.isCancelled()) {
+                    return null;
+                }
+                char c = text.charAt(i);
+                boolean newline = c == '\n';
+                if (!newline && lineChars == MAX_LINE_CHARS) {
+                    // Wrap: the character starts a new display line
+                    starts = add(starts, count++, i);
+                    column = 0;
+                    lineChars = 0;
+                }
+                if (newline) {
+                    maxColumns = Math.max(maxColumns, column);
+                    starts = add(starts, count++, i + 1);
+                    column = 0;
+                    lineChars = 0;
+                } else {
+                    column = nextColumn(column, c);
+                    lineChars++;
+                    maxColumns = Math.max(maxColumns, column);
+                }
+            }
+            return new LineIndex(text, starts, count, maxColumns);
+        }
+
+        private static int[] add(int[] starts, int index, int offset) {
+            if (index == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[index] = offset;
+            return starts;
+        }
+
+        int start(int line) {
+            return starts[line];
+        }
+
+        // End of the line's characters, without its line break
+        int end(int line) {
+            int end = line + 1 < count ? starts[line + 1] : text.length();
+            if (end > starts[line] && text.charAt(end - 1) == '\n') {
+                end--;
+                if (end > starts[line] && text.charAt(end - 1) == '\r') {
+                    end--;
+                }
+            }
+            return end;
+        }
+
+        // Display line containing the offset
+        int lineOf(int offset) {
+            int line = Arrays.binarySearch(starts, 0, count, offset);
+            return line >= 0 ? line : -line - 2;
+        }
+    }
+
+    private static int nextColumn(int column, char c) {
+        return c == '\t' ? (column / TAB_WIDTH + 1) * TAB_WIDTH : column + 1;
+    }
+
+    private final TextView view = new TextView();
+    private final JScrollPane scrollPane = new JScrollPane(view);
+    private final JTextField findField = new JTextField(20);
+    private final JLabel findStatus = new JLabel(" ");
+    private LineIndex index = new LineIndex("", new int[]{0}, 1, 0);
+    private SwingWorker<LineIndex, Void> indexer;
+    private SwingWorker<Void, int[]> finder;
+    private String findTerm = "";
+    private int[] matches = new int[0];
+    private int matchCount;
+    private int currentMatch = -1;
+
+    public NoteViewer(String title) {
+        super(new BorderLayout());
+        setBorder(BorderFactory.createTitledBorder(title));
+
+        JPanel findBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        findBar.add(new JLabel("Find:"));
+        findBar.add(findField);
+        JButton previousButton = new JButton("Previous");
+        previousButton.addActionListener(e -> showMatch(currentMatch - 1));
+        findBar.add(previousButton);
+        JButton nextButton = new JButton("Next");
+        nextButton.addActionListener(e -> showMatch(currentMatch + 1));
+        findBar.add(nextButton);
+        findBar.add(findStatus);
+        findField.addActionListener(e -> showMatch(currentMatch + 1));
+        findField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, InputEvent.SHIFT_DOWN_MASK), "previous-match");
+        findField.getActionMap().put("previous-match", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showMatch(currentMatch - 1);
+            }
+        });
+        findField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                startFind();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                startFind();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+            }
+        });
+
+        scrollPane.getViewport().setBackground(view.getBackground());
+        add(findBar, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    /**
+     * Shows a note body; large bodies are indexed in the background while the
+     * previous content stays on screen.
+     */
+    public void setContent(String text) {
+        cancelWorkers();
+        if (text.length() <= INLINE_INDEX_CHARS) {
+            install(LineIndex.build(text, null));
+            return;
+        }
+        findStatus.setText("Preparing " + text.length() / 1024 + " K chars...");
+        indexer = new SwingWorker<LineIndex, Void>() {
+            @Override
+            protected LineIndex doInBackground() {
+                return LineIndex.build(text, this);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    install(get());
+                } catch (Exception e) {
+                    findStatus.setText("Failed to prepare the note: " + e.getMessage());
+                }
+            }
+        };
+        indexer.execute();
+    }
+
+    /**
+     * Shows a short status message instead of a note, e.g. "Loading...".
+     */
+    public void showMessage(String message) {
+        setContent(message);
+    }
+
+    public void clear() {
+        setContent("");
+    }
+
+    private void cancelWorkers() {
+        if (indexer != null) {
+            indexer.cancel(true);
+            indexer = null;
+        }
+        if (finder != null) {
+            finder.cancel(true);
+            finder = null;
+        }
+    }
+
+    private void install(LineIndex newIndex) {
+        index = newIndex;
+        view.clearSelection();
+        view.revalidate();
+        view.repaint();
+        view.scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+        findTerm = "";
+        startFind();
+    }
+
+    private void startFind() {
+        String term = findField.getText();
+        if (term.equals(findTerm) && finder != null) {
+            return;
+        }
+        if (finder != null) {
+            finder.cancel(true);
+            finder = null;
+        }
+        findTerm = term;
+        matches = new int[0];
+        matchCount = 0;
+        currentMatch = -1;
+        view.repaint();
+        if (term.isEmpty()) {
+            findStatus.setText(" ");
+            return;
+        }
+        String text = index.text;
+        findStatus.setText("Searching...");
+        finder = new SwingWorker<Void, int[]>() {
+            @Override
+            protected Void doInBackground() {
+                scan(text, term, this);
+                return null;
+            }
+
+            @Override
+            protected void process(List<int[]> batches) {
+                if (isCancelled()) {
+                    return;
+                }
+                for (int[] batch : batches) {
+                    if (matchCount + batch.length > matches.length) {
+                        matches = Arrays.copyOf(matches, Math.max(matchCount + batch.length, matches.length * 2));
+                    }
+                    System.arraycopy(batch, 0, matches, matchCount, batch.length);
+                    matchCount += batch.length;
+                }
+                if (currentMatch < 0 && matchCount > 0) {
+                    showMatch(0);
+                }
+                findStatus.setText(describeMatches() + "...");
+            }
+
+            @Override
+            protected void done() {
+                if (!isCancelled()) {
+                    findStatus.setText(matchCount == 0 ? "No matches" : describeMatches());
+                }
+            }
+
+            // Publishes the offsets of non-overlapping matches in batches
+            private void scan(String text, String term, SwingWorker<?, ?> worker) {
+                char first = Character.toLowerCase(term.charAt(0));
+                int[] batch = new int[256];
+                int found = 0;
+                int total = 0;
+                int last = text.length() - term.length();
+                int nextCheck = 0;
+                for (int i = 0; i <= last && total < MAX_MATCHES; i++) {
+                    if (i >= nextCheck) {
+                        nextCheck = i + CANCEL_CHECK_CHARS;
+                        if (worker.isCancelled()) {
+                            return;
+                        }
+                        if (found > 0) {
+                            publish(Arrays.copyOf(batch, found));
+                            found = 0;
+                        }
+                    }
+                    if (Character.toLowerCase(text.charAt(i)) == first && text.regionMatches(true, i, term, 0, term.length())) {
+                        batch[found++] = i;
+                        total++;
+                        i += term.length() - 1;
+                        if (found == batch.length) {
+                            publish(batch.clone());
+                            found = 0;
+                        }
+                    }
+                }
+                if (found > 0) {
+                    publish(Arrays.copyOf(batch, found));
+                }
+            }
+        };
+        finder.execute();
+    }
+
+    private String describeMatches() {
+        String count = matchCount >= MAX_MATCHES ? MAX_MATCHES + "+" : Integer.toString(matchCount);
+        return currentMatch < 0 ? count + " matches" : (currentMatch + 1) + " of " + count;
+    }
+
+    // Scrolls to a match, wrapping around at either end
+    private void showMatch(int match) {
+        if (matchCount == 0) {
+            return;
+        }
+        currentMatch = Math.floorMod(match, matchCount);
+        int offset = matches[currentMatch];
+        int line = index.lineOf(offset);
+        Rectangle target = view.offsetBounds(line, offset, findTerm.length());
+        // Keep some context around the match
+        target.grow(view.charWidth * 8, view.lineHeight * 2);
+        view.scrollRectToVisible(target);
+        view.repaint();
+        boolean finished = finder == null || finder.isDone();
+        findStatus.setText(describeMatches() + (finished ? "" : "..."));
+    }
+
+    /**
+     * Paints only the display lines and columns inside the clip.
+     */
+    private final class TextView extends JComponent implements Scrollable {
+        private static final long serialVersionUID = 1L;
+        private final Insets margin = new Insets(2, 4, 2, 4);
+        int lineHeight;
+        int charWidth;
+        private int ascent;
+        private int selectionAnchor = -1;
+        private int selectionEnd = -1;
+        private char[] buffer = new char[256];
+
+        TextView() {
+            setFont(new Font("Monospaced", Font.PLAIN, 12));
+            Color background = UIManager.getColor("TextArea.background");
+            Color foreground = UIManager.getColor("TextArea.foreground");
+            setBackground(background != null ? background : Color.WHITE);
+            setForeground(foreground != null ? foreground : Color.BLACK);
+            setOpaque(true);
+            setFocusable(true);
+
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    requestFocusInWindow();
+                    if (e.isPopupTrigger()) {
+                        showPopup(e);
+                        return;
+                    }
+                    if (e.getButton() == MouseEvent.BUTTON1) {
+                        int offset = offsetAt(e.getPoint());
+                        if (!e.isShiftDown() || selectionAnchor < 0) {
+                            selectionAnchor = offset;
+                        }
+                        selectionEnd = offset;
+                        repaint();
+                    }
+                }
+
+                @Override
+                public void mouseReleased(MouseEvent e) {
+                    if (e.isPopupTrigger()) {
+                        showPopup(e);
+                    }
+                }
+
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (selectionAnchor >= 0) {
+                        selectionEnd = offsetAt(e.getPoint());
+                        scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                        repaint();
+                    }
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+
+            // Ctrl on Windows and Linux, Cmd on macOS
+            for (int shortcut : new int[]{InputEvent.CTRL_DOWN_MASK, InputEvent.META_DOWN_MASK}) {
+                getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_C, shortcut), "copy");
+                getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_A, shortcut), "select-all");
+            }
+            getActionMap().put("copy", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    copySelection();
+                }
+            });
+            getActionMap().put("select-all", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    selectAll();
+                }
+            });
+        }
+
+        @Override
+        public void setFont(Font font) {
+            super.setFont(font);
+            FontMetrics metrics = getFontMetrics(font);
+            lineHeight = metrics.getHeight();
+            ascent = metrics.getAscent();
+            charWidth = Math.max(1, metrics.charWidth('m'));
+        }
+
+        private void showPopup(MouseEvent e) {
+            JPopupMenu menu = new JPopupMenu();
+            JMenuItem copy = new JMenuItem("Copy");
+            copy.setEnabled(hasSelection());
+            copy.addActionListener(a -> copySelection());
+            menu.add(copy);
+            JMenuItem all = new JMenuItem("Select All");
+            all.addActionListener(a -> selectAll());
+            menu.add(all);
+            menu.show(this, e.getX(), e.getY());
+        }
+
+        void clearSelection() {
+            selectionAnchor = -1;
+            selectionEnd = -1;
+        }
+
+        private boolean hasSelection() {
+            return selectionAnchor >= 0 && selectionAnchor != selectionEnd;
+        }
+
+        private void selectAll() {
+            selectionAnchor = 0;
+            selectionEnd = index.text.length();
+            repaint();
+        }
+
+        private void copySelection() {
+            if (hasSelection()) {
+                String selected = index.text.substring(Math.min(selectionAnchor, selectionEnd), Math.max(selectionAnchor, selectionEnd));
+                Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(selected), null);
+            }
+        }
+
+        // Text offset nearest to a point in the view
+        private int offsetAt(Point point) {
+            int line = Math.max(0, Math.min(index.count - 1, (point.y - margin.top) / lineHeight));
+            int column = Math.max(0, (point.x - margin.left + charWidth / 2) / charWidth);
+            int start = index.start(line);
+            int end = index.end(line);
+            int current = 0;
+            for (int i = start; i < end; i++) {
+                int next = nextColumn(current, index.text.charAt(i));
+                if (column <= current + (next - current) / 2) {
+                    return i;
+                }
+                current = next;
+            }
+            return end;
+        }
+
+        private int columnOf(int lineStart, int offset) {
+            int column = 0;
+            for (int i = lineStart; i < offset; i++) {
+                column = nextColumn(column, index.text.charAt(i));
+            }
+            return column;
+        }
+
+        // Bounds of length characters from offset, clipped to its display line
+        Rectangle offsetBounds(int line, int offset, int length) {
+            int start = index.start(line);
+            int end = Math.min(index.end(line), offset + length);
+            int from = columnOf(start, offset);
+            int to = Math.max(from + 1, columnOf(start, Math.max(offset, end)));
+            return new Rectangle(margin.left + from * charWidth, margin.top + line * lineHeight, (to - from) * charWidth, lineHeight);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Rectangle clip = g.getClipBounds();
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            g.setFont(getFont());
+            int firstLine = Math.max(0, (clip.y - margin.top) / lineHeight);
+            int lastLine = Math.min(index.count - 1, (clip.y + clip.height - margin.top) / lineHeight);
+            int firstColumn = Math.max(0, (clip.x - margin.left) / charWidth);
+            int lastColumn = (clip.x + clip.width - margin.left) / charWidth + 1;
+            Color selection = UIManager.getColor("TextArea.selectionBackground");
+            int selectionStart = Math.min(selectionAnchor, selectionEnd);
+            int selectionStop = Math.max(selectionAnchor, selectionEnd);
+            int termLength = findTerm.length();
+            // First match that can reach into the first visible line
+            int match = matchCount == 0 ? 0 : lowerBound(index.start(firstLine) - termLength + 1);
+
+            for (int line = firstLine; line <= lastLine; line++) {
+                int start = index.start(line);
+                int end = index.end(line);
+                int y = margin.top + line * lineHeight;
+                if (hasSelection() && selectionStart <= end && selectionStop > start) {
+                    g.setColor(selection != null ? selection : new Color(184, 207, 229));
+                    int from = columnOf(start, Math.max(start, selectionStart));
+                    int to = selectionStop > end ? columnOf(start, end) + 1 : columnOf(start, selectionStop);
+                    g.fillRect(margin.left + from * charWidth, y, (to - from) * charWidth, lineHeight);
+                }
+                while (match < matchCount && matches[match] < end) {
+                    if (matches[match] + termLength > start) {
+                        g.setColor(match == currentMatch ? CURRENT_MATCH : MATCH);
+                        Rectangle bounds = offsetBounds(line, Math.max(start, matches[match]), matches[match] + termLength - Math.max(start, matches[match]));
+                        g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                    }
+                    if (matches[match] + termLength > end) {
+                        break; // Continues on the next display line
+                    }
+                    match++;
+                }
+                g.setColor(getForeground());
+                drawLine(g, start, end, firstColumn, lastColumn, y + ascent);
+            }
+        }
+
+        // Draws the visible columns of a line with tabs expanded
+        private void drawLine(Graphics g, int start, int end, int firstColumn, int lastColumn, int baseline) {
+            int column = 0;
+            int count = 0;
+            int drawFrom = -1;
+            for (int i = start; i < end && column < lastColumn; i++) {
+                char c = index.text.charAt(i);
+                int next = nextColumn(column, c);
+                for (int col = column; col < next; col++) {
+                    if (col >= firstColumn && col < lastColumn) {
+                        if (drawFrom < 0) {
+                            drawFrom = col;
+                        }
+                        if (count == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        }
+                        buffer[count++] = c == '\t' || Character.isISOControl(c) ? ' ' : c;
+                    }
+                }
+                column = next;
+            }
+            if (count > 0) {
+                g.drawChars(buffer, 0, count, margin.left + drawFrom * charWidth, baseline);
+            }
+        }
+
+        private int lowerBound(int offset) {
+            int low = 0;
+            int high = matchCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (matches[mid] < offset) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            long height = (long) index.count * lineHeight + margin.top + margin.bottom;
+            return new Dimension(margin.left + margin.right + (index.maxColumns + 1) * charWidth,
+                    (int) Math.min(Integer.MAX_VALUE, height));
+        }
+
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return new Dimension(400, 200);
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? lineHeight : charWidth * 4;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL
+                    ? Math.max(lineHeight, visibleRect.height - lineHeight)
+                    : Math.max(charWidth, visibleRect.width - charWidth * 4);
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package burp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind queue for new notes.
+ *
+ * Inserts are accepted immediately and written by a single flusher thread,
+ * which merges everything that arrives within a short window (or until the
+ * batch is full) into one NoteStore batch insert. For MySQL that is a single
+ * multi-row INSERT, so a burst of notes costs one round-trip instead of one
+ * per note.
+ *
+ * When a NoteJournal is attached, every note is appended to it before it is
+ * queued, and the journal is checkpointed after each successful batch. Notes
+ * therefore survive database outages and extension reloads: start() replays
+ * whatever the journal still holds. Inserts carry the journal's client
+ * reference and ignore duplicates, so replaying is idempotent. While no
+ * store is connected the flusher simply waits.
+ *
+ * When the queue is full, offer() refuses and submit() blocks, pushing back on
+ * whoever is producing notes faster than the database accepts them. A batch
+ * that fails is kept and retried with backoff rather than dropped, whether
+ * the database is unreachable, the store is being reconnected or the server
+ * refuses writes altogether. Only a failure that is about the data of a row
+ * (SQLState class 22 or 23, or a packet too large) means some note in it
+ * can never be stored: the batch is split in halves until the refused notes
+ * are found, and those are reported and set aside (see NoteJournal.reject)
+ * so the rest goes through and the journal moves past them.
+ */
+public class NoteWriteQueue {
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+    private static final long OFFLINE_POLL_MS = 1_000;
+    private static final int ER_NET_PACKET_TOO_LARGE = 1153;
+    private static final int ER_WARN_ALLOWED_PACKET_OVERFLOWED = 1301;
+
+    private final NoteJournal journal;
+    private final Supplier<NoteStore> storeSupplier;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushWindowMillis;
+    private final Consumer<Exception> errorHandler;
+    private final BlockingQueue<NoteJournal.Record> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    // Notes of the current batch already set aside, so a retried batch does not report them twice
+    private final Set<String> rejectedRefs = new HashSet<>();
+    private volatile Runnable flushListener;
+    private long memorySequence;
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * @param journal durable journal, or null to keep pending notes in memory only
+     */
+    public NoteWriteQueue(NoteJournal journal, Supplier<NoteStore> storeSupplier, int capacity, int batchSize,
+                          long flushWindowMillis, Consumer<Exception> errorHandler) {
+        this.journal = journal;
+        this.storeSupplier = storeSupplier;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushWindowMillis = flushWindowMillis;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Replays notes left in the journal by a previous session, then starts the
+     * flusher. Returns the number of recovered notes.
+     */
+    public synchronized int start() throws IOException {
+        if (running) {
+            return 0;
+        }
+        int recovered = 0;
+        if (journal != null) {
+            // Recovered notes are queued even beyond capacity; they were already accepted
+            for (NoteJournal.Record record : journal.recover()) {
+                queue.add(record);
+                pending.incrementAndGet();
+                recovered++;
+            }
+        }
+        running = true;
+        flusher = new Thread(this::run, "BurpNote-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        return recovered;
+    }
+
+    /**
+     * Queues a note without blocking; returns false if the queue is full.
+     */
+    public boolean offer(String domain, String content) throws IOException {
+        try {
+            return submit(domain, content, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Queues a note, waiting up to the timeout for space; returns false on timeout.
+     */
+    public synchronized boolean submit(String domain, String content, long timeoutMillis)
+            throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pending.get() >= capacity) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        // Journal and queue order must match for offset checkpoints to be correct
+        NoteJournal.Record record = journal != null
+                ? journal.append(domain, content)
+                : new NoteJournal.Record("mem-" + System.identityHashCode(this) + "-" + (++memorySequence), domain, content, 0);
+        queue.add(record);
+        pending.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Called on the flusher thread after each batch reaches the database.
+     */
+    public void setFlushListener(Runnable flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    /**
+     * Notes accepted but not yet written, including the batch being written.
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    public long getFlushedCount() {
+        return flushed.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Notes the database refused, which were set aside instead of written.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void run() {
+        List<NoteJournal.Record> batch = new ArrayList<>(batchSize);
+        long retryDelay = 0;
+        boolean reported = false;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    NoteJournal.Record first = queue.poll(200, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    // Give a burst a short window to join the same batch
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushWindowMillis);
+                    while (batch.size() < batchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        NoteJournal.Record next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    }
+                    if (journal != null) {
+                        // Group commit: one fsync covers the whole batch
+                        journal.force();
+                    }
+                }
+
+                NoteStore store = storeSupplier.get();
+                if (store == null) {
+                    // Offline: the notes are safe in the journal, wait for a connection
+                    if (!running) {
+                        break;
+                    }
+                    Thread.sleep(OFFLINE_POLL_MS);
+                    continue;
+                }
+                int written = insertIsolating(store, batch);
+                if (journal != null) {
+                    journal.checkpoint(batch.get(batch.size() - 1).endOffset);
+                }
+                flushed.addAndGet(written);
+                batches.incrementAndGet();
+                release(batch.size());
+                batch.clear();
+                rejectedRefs.clear();
+                Runnable listener = flushListener;
+                if (listener != null) {
+                    listener.run();
+                }
+                retryDelay = 0;
+                reported = false;
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (Exception e) {
+                // Keep the batch and retry; only report the first failure of a streak
+                if (!reported) {
+                    errorHandler.accept(e);
+                    reported = true;
+                }
+                if (!running) {
+                    break;
+                }
+                retryDelay = retryDelay == 0 ? 500 : Math.min(retryDelay * 2, MAX_RETRY_DELAY_MS);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException ignored) {
+                    // Retry immediately on stop so remaining notes get a last chance
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the notes, halving a batch the database refuses until the
+     * refused notes are isolated and set aside; returns how many were
+     * written. Throws only on failures worth retrying the batch for.
+     */
+    private int insertIsolating(NoteStore store, List<NoteJournal.Record> notes) throws Exception {
+        try {
+            store.insertBatch(notes);
+            return notes.size();
+        } catch (Exception e) {
+            if (!isRefusedRow(e)) {
+                throw e;
+            }
+            if (notes.size() == 1) {
+                reject(notes.get(0), e);
+                return 0;
+            }
+            int half = notes.size() / 2;
+            return insertIsolating(store, notes.subList(0, half)) + insertIsolating(store, notes.subList(half, notes.size()));
+        }
+    }
+
+    /**
+     * Whether the failure is about the data of a row, so that retrying the
+     * same note can never succeed.
+     */
+    private static boolean isRefusedRow(Throwable e) {
+        if (CircuitBreaker.isConnectivityFailure(e)) {
+            return false;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLDataException || t instanceof SQLIntegrityConstraintViolationException
+                    || t.getClass().getSimpleName().equals("PacketTooBigException")) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                String state = sql.getSQLState();
+                if (state != null && (state.startsWith("22") || state.startsWith("23"))
+                        || sql.getErrorCode() == ER_NET_PACKET_TOO_LARGE || sql.getErrorCode() == ER_WARN_ALLOWED_PACKET_OVERFLOWED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void reject(NoteJournal.Record note, Exception cause) throws IOException {
+        if (!rejectedRefs.add(note.ref)) {
+            return;
+        }
+        Path file = journal != null ? journal.reject(note) : null;
+        rejected.incrementAndGet();
+        errorHandler.accept(new SQLException("The database refused a note for " + note.domain + " ("
+                + note.content.length() + " chars): " + cause.getMessage()
+                + (file != null ? "\nIt was saved to " + file + "; fix the cause and import that file." : "\nThe note was discarded."),
+                cause));
+    }
+
+    private synchronized void release(int count) {
+        pending.addAndGet(-count);
+        notifyAll();
+    }
+
+    /**
+     * Stops accepting work and waits up to the timeout for queued notes to be written.
+     * Returns the number of notes still pending; with a journal they are replayed on the next start.
+     */
+    public long stop(long timeoutMillis) {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = flusher;
+        }
+        if (thread != null) {
+            try {
+                thread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread.interrupt();
+        }
+        return getPendingCount();
+    }
+}
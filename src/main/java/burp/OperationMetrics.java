@@ -0,0 +1,118 @@
+package burp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation timing for everything the extension does against storage.
+ *
+ * Each named operation keeps a latency histogram of the storage call, the
+ * rows and approximate bytes it moved, its error count, and a second
+ * histogram for the time the EDT spent applying its result to the UI.
+ * Comparing the two tells whether slowness comes from the database (or the
+ * network to it) or from Swing. Recording never blocks.
+ */
+public class OperationMetrics {
+    public static final String[] COLUMN_NAMES = {"Operation", "Calls", "Errors", "p50 ms", "p95 ms", "p99 ms", "Max ms",
+            "Rows", "KB", "EDT calls", "EDT p50 ms", "EDT p99 ms", "EDT max ms"};
+
+    /**
+     * Counters for one operation.
+     */
+    public static final class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram edt = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        public void record(long nanos, long rowCount, long byteCount) {
+            latency.record(nanos);
+            rows.add(rowCount);
+            bytes.add(byteCount);
+        }
+
+        public void recordError(long nanos) {
+            latency.record(nanos);
+            errors.increment();
+        }
+
+        public void recordEdt(long nanos) {
+            edt.record(nanos);
+        }
+    }
+
+    private final Map<String, Stats> operations = new ConcurrentSkipListMap<>();
+
+    public Stats get(String operation) {
+        Stats stats = operations.get(operation);
+        if (stats == null) {
+            stats = operations.computeIfAbsent(operation, name -> new Stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Time the EDT spent showing the result of an operation, measured from startNanos.
+     */
+    public void recordEdtSince(String operation, long startNanos) {
+        get(operation).recordEdt(System.nanoTime() - startNanos);
+    }
+
+    public void reset() {
+        operations.clear();
+    }
+
+    /**
+     * One row per operation, in COLUMN_NAMES order.
+     */
+    public List<Object[]> snapshot() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : operations.entrySet()) {
+            Stats stats = entry.getValue();
+            rows.add(new Object[]{
+                    entry.getKey(),
+                    stats.latency.getCount(),
+                    stats.errors.sum(),
+                    millis(stats.latency.getPercentileNanos(50)),
+                    millis(stats.latency.getPercentileNanos(95)),
+                    millis(stats.latency.getPercentileNanos(99)),
+                    millis(stats.latency.getMaxNanos()),
+                    stats.rows.sum(),
+                    stats.bytes.sum() / 1024,
+                    stats.edt.getCount(),
+                    millis(stats.edt.getPercentileNanos(50)),
+                    millis(stats.edt.getPercentileNanos(99)),
+                    millis(stats.edt.getMaxNanos())
+            });
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the current snapshot as CSV with a header line.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write(String.join(",", COLUMN_NAMES));
+        out.write('\n');
+        for (Object[] row : snapshot()) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(String.valueOf(row[i]));
+            }
+            out.write('\n');
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,402 @@
+package burp;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Lazy, read-only table model for the "All Notes" list.
+ *
+ * Sorting and filtering are a NoteListQuery run by the store, never done on
+ * the table's rows. Rows are fetched a page at a time with keyset
+ * pagination: the last row of every fetched page is remembered as the key
+ * of the next one, so scrolling is a sequence of index range scans. A page
+ * whose key is not known yet (after dragging the scrollbar) is read with an
+ * offset from the nearest known key, or from the end of the list in reverse
+ * order when that is closer. The database still steps over every skipped
+ * row, so such a jump into the middle of a large list costs a scan of up to
+ * half of it; scrolling on from there is cheap again. A page that fails to
+ * load shows as failed and is retried with backoff, not on every repaint.
+ * Changing the order only drops the keys, so
+ * re-sorting costs one page; only a new filter re-counts the rows. A
+ * bounded window of pages is kept in memory and the next page is prefetched
+ * as soon as a page is displayed. Teammates' changes arrive as deltas from
+ * NoteChangePoller and only re-count when the set of listed notes changes.
+ *
+ * All state except the loader thread is confined to the EDT.
+ */
+public class PagedNotesTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    public static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+    private static final String LOADING = "Loading...";
+    private static final String FAILED = "Failed to load";
+    private static final long PAGE_RETRY_MS = 2_000;
+    private static final long MAX_PAGE_RETRY_MS = 60_000;
+    private static final String ASCENDING_MARK = " \u25B2";
+    private static final String DESCENDING_MARK = " \u25BC";
+    public static final String[] COLUMN_NAMES = {"ID", "Domain", "Content (Preview)", "Length", "Time"};
+    // List rows only carry a short preview; full bodies come from NoteContentCache
+    public static final int PREVIEW_CHARS = 120;
+
+    private final OperationMetrics metrics;
+    private final Consumer<Exception> errorHandler;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "BurpNote-page-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private NoteStore store;
+    // Latest requested query, and the one the rows, keys and count belong to
+    private NoteListQuery query = NoteListQuery.NEWEST_FIRST;
+    private NoteListQuery shownQuery = NoteListQuery.NEWEST_FIRST;
+    private boolean counting;
+    private int rowCount;
+    // anchors[p] is the key row ({id, domain, null, length, time}) of the last row before page p
+    private final TreeMap<Integer, Object[]> anchors = new TreeMap<>();
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(MAX_CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> pending = new HashSet<>();
+    // Pages of this generation whose load failed, and when they may be tried again
+    private final Map<Integer, Long> failed = new HashMap<>();
+    private int failureStreak;
+    // Notes this list deleted itself, whose tombstones the next delta poll reports
+    private final Set<Integer> removed = new HashSet<>();
+    private int generation;
+    private volatile int lastRequestedPage;
+
+    public PagedNotesTableModel(OperationMetrics metrics, Consumer<Exception> errorHandler) {
+        this.metrics = metrics;
+        this.errorHandler = errorHandler;
+    }
+
+    public NoteListQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Re-reads the row count for the current query, then drops all cached pages.
+     * Must be called on the EDT; onLoaded receives the new row count.
+     */
+    public void reload(NoteStore store, Consumer<Integer> onLoaded) {
+        load(store, query, true, onLoaded);
+    }
+
+    /**
+     * Shows a row count and first page read ahead of time, such as right
+     * after connecting, so the list needs no round-trip of its own. Must be
+     * called on the EDT.
+     */
+    public void preload(NoteStore store, NoteListQuery query, int count, List<Object[]> firstPage) {
+        ++generation;
+        this.query = query;
+        apply(store, query, count, firstPage.toArray(new Object[0][]));
+    }
+
+    /**
+     * Switches to another order or filter. A new order keeps the row count
+     * and just starts paging again; a new filter re-counts first.
+     */
+    public void setQuery(NoteStore store, NoteListQuery newQuery, Consumer<Integer> onLoaded) {
+        load(store, newQuery, counting || this.store != store || !shownQuery.hasSameFilter(newQuery), onLoaded);
+    }
+
+    private void load(NoteStore store, NoteListQuery newQuery, boolean recount, Consumer<Integer> onLoaded) {
+        int gen = ++generation;
+        query = newQuery;
+        counting = recount;
+        if (!recount) {
+            apply(store, newQuery, rowCount, null);
+            onLoaded.accept(rowCount);
+            return;
+        }
+        loader.submit(() -> {
+            try {
+                int count = store.count(newQuery);
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    apply(store, newQuery, count, null);
+                    onLoaded.accept(count);
+                    metrics.recordEdtSince(MeteredNoteStore.LIST_COUNT, start);
+                });
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == generation) {
+                        counting = false;
+                    }
+                    errorHandler.accept(e);
+                });
+            }
+        });
+    }
+
+    /**
+     * Merges the changes of a delta poll. Notes on cached pages that keep
+     * their place are patched in place with a single update event; if a note
+     * may have joined or left the list, the row count is re-read and the
+     * pages dropped, as one data-changed event. Must be called on the EDT.
+     */
+    public void applyChanges(NoteStore store, List<NoteStore.NoteChange> changes, Consumer<Integer> onLoaded) {
+        if (store != this.store || counting || !query.equals(shownQuery)) {
+            return;
+        }
+        Map<Integer, Object[][]> pageOf = new HashMap<>();
+        Map<Integer, Integer> rowOf = new HashMap<>();
+        for (Map.Entry<Integer, Object[][]> entry : pages.entrySet()) {
+            Object[][] rows = entry.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                pageOf.put((Integer) rows[i][0], rows);
+                rowOf.put((Integer) rows[i][0], entry.getKey() * PAGE_SIZE + i);
+            }
+        }
+        Comparator<Object[]> order = shownQuery.rowComparator();
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (NoteStore.NoteChange change : changes) {
+            boolean listed = !change.deleted && shownQuery.matches(change.row);
+            Object[][] rows = pageOf.get(change.id());
+            if (change.deleted && removed.contains(change.id())) {
+                // Already taken out by removeRows()
+                continue;
+            }
+            if (rows == null) {
+                if (shownQuery.matches(change.row)) {
+                    // Joined the list, or left it from a page that is not cached
+                    load(store, query, true, onLoaded);
+                    return;
+                }
+                continue;
+            }
+            int row = rowOf.get(change.id());
+            int offset = row % PAGE_SIZE;
+            if (!listed || order.compare(rows[offset], change.row) != 0) {
+                load(store, query, true, onLoaded);
+                return;
+            }
+            rows[offset] = change.row;
+            first = Math.min(first, row);
+            last = Math.max(last, row);
+        }
+        if (last >= 0) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /**
+     * Takes notes deleted through this list out of it without re-counting:
+     * the row count drops by the number deleted, cached pages in front of
+     * the first deleted row are kept and the rest is read again from the
+     * keys before it, as one data-changed event. Must be called on the EDT.
+     */
+    public void removeRows(NoteStore store, Collection<Integer> ids, int deleted) {
+        if (store != this.store || counting || !query.equals(shownQuery)) {
+            // A reload is on its way anyway
+            return;
+        }
+        Set<Integer> targets = new HashSet<>(ids);
+        int firstPage = Integer.MAX_VALUE;
+        int found = 0;
+        for (Map.Entry<Integer, Object[][]> entry : pages.entrySet()) {
+            for (Object[] row : entry.getValue()) {
+                if (targets.contains(row[0])) {
+                    firstPage = Math.min(firstPage, entry.getKey());
+                    found++;
+                }
+            }
+        }
+        if (found < targets.size()) {
+            // Some of them are on pages no longer cached, at rows that are not known
+            firstPage = 0;
+        }
+        int keep = firstPage;
+        // Loads in flight are for the old row positions
+        ++generation;
+        rowCount = Math.max(0, rowCount - deleted);
+        pages.keySet().removeIf(page -> page >= keep);
+        anchors.keySet().removeIf(page -> page > keep);
+        pending.clear();
+        failed.clear();
+        removed.addAll(ids);
+        fireTableDataChanged();
+    }
+
+    private void apply(NoteStore store, NoteListQuery newQuery, int count, Object[][] firstPage) {
+        this.store = store;
+        this.shownQuery = newQuery;
+        this.counting = false;
+        this.rowCount = count;
+        anchors.clear();
+        pages.clear();
+        pending.clear();
+        failed.clear();
+        removed.clear();
+        if (firstPage != null) {
+            putPage(0, firstPage);
+        }
+        fireTableDataChanged();
+    }
+
+    private void putPage(int page, Object[][] rows) {
+        pages.put(page, rows);
+        if (rows.length == PAGE_SIZE) {
+            Object[] last = rows[rows.length - 1];
+            anchors.put(page + 1, new Object[]{last[0], last[1], null, last[3], last[4]});
+        }
+    }
+
+    private void requestPage(int page) {
+        int pageCount = (rowCount + PAGE_SIZE - 1) / PAGE_SIZE;
+        if (store == null || page < 0 || page >= pageCount || pending.contains(page)) {
+            return;
+        }
+        Long retryAt = failed.get(page);
+        if (retryAt != null && System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        pending.add(page);
+        lastRequestedPage = page;
+        int gen = generation;
+        NoteStore currentStore = store;
+        NoteListQuery currentQuery = shownQuery;
+        // Start from the nearest key before the page, or read backwards from the end if that is closer
+        Map.Entry<Integer, Object[]> anchor = anchors.floorEntry(page);
+        Object[] after = anchor == null ? null : anchor.getValue();
+        int skip = (page - (anchor == null ? 0 : anchor.getKey())) * PAGE_SIZE;
+        int pageEnd = Math.min(rowCount, (page + 1) * PAGE_SIZE);
+        boolean fromEnd = rowCount - pageEnd < skip;
+        loader.submit(() -> {
+            // Skip pages the user has already scrolled far away from
+            if (Math.abs(lastRequestedPage - page) > MAX_CACHED_PAGES / 2) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == generation) {
+                        pending.remove(page);
+                    }
+                });
+                return;
+            }
+            try {
+                List<Object[]> list;
+                if (fromEnd) {
+                    list = currentStore.page(currentQuery.reversed(), null, rowCount - pageEnd, pageEnd - page * PAGE_SIZE);
+                    Collections.reverse(list);
+                } else {
+                    list = currentStore.page(currentQuery, after, skip, PAGE_SIZE);
+                }
+                Object[][] rows = list.toArray(new Object[0][]);
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    pending.remove(page);
+                    failed.remove(page);
+                    failureStreak = 0;
+                    putPage(page, rows);
+                    int first = page * PAGE_SIZE;
+                    int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+                    if (last >= first) {
+                        fireTableRowsUpdated(first, last);
+                    }
+                    metrics.recordEdtSince(MeteredNoteStore.PAGE, start);
+                });
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation) {
+                        return;
+                    }
+                    pending.remove(page);
+                    // Report a page once, not again for every retry
+                    boolean first = !failed.containsKey(page);
+                    long delay = Math.min(PAGE_RETRY_MS << Math.min(failureStreak++, 5), MAX_PAGE_RETRY_MS);
+                    failed.put(page, System.currentTimeMillis() + delay);
+                    int firstRow = page * PAGE_SIZE;
+                    int lastRow = Math.min(firstRow + PAGE_SIZE, rowCount) - 1;
+                    if (lastRow >= firstRow) {
+                        fireTableRowsUpdated(firstRow, lastRow);
+                    }
+                    if (first) {
+                        errorHandler.accept(e);
+                    }
+                });
+            }
+        });
+    }
+
+    private Object[] rowAt(int row) {
+        int page = row / PAGE_SIZE;
+        Object[][] data = pages.get(page);
+        if (data == null) {
+            requestPage(page);
+            return null;
+        }
+        if (!pages.containsKey(page + 1)) {
+            requestPage(page + 1);
+        }
+        int offset = row % PAGE_SIZE;
+        return offset < data.length ? data[offset] : null;
+    }
+
+    /**
+     * Returns the note id at the given row, or null if that page is not loaded yet.
+     */
+    public Integer getIdAt(int row) {
+        Object[] data = rowAt(row);
+        return data == null ? null : (Integer) data[0];
+    }
+
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (query.sort.column != column) {
+            return COLUMN_NAMES[column];
+        }
+        return COLUMN_NAMES[column] + (query.ascending ? ASCENDING_MARK : DESCENDING_MARK);
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Object[] data = rowAt(row);
+        if (data == null) {
+            return column != 1 ? null : failed.containsKey(row / PAGE_SIZE) ? FAILED : LOADING;
+        }
+        return data[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+}
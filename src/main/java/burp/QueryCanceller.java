@@ -0,0 +1,52 @@
+package burp;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Lets the UI cancel a query that is running on another thread.
+ *
+ * A store registers the statement it is executing; cancel() then calls
+ * Statement.cancel(), which makes the server abort the query instead of
+ * finishing a result nobody will look at. Stores without statements only
+ * check isCancelled() while they produce rows.
+ */
+public class QueryCanceller {
+    private volatile boolean cancelled;
+    private Statement statement;
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        Statement running;
+        synchronized (this) {
+            running = statement;
+        }
+        if (running != null) {
+            try {
+                running.cancel();
+            } catch (SQLException ignored) {
+                // The query finished or the connection is gone; nothing left to cancel
+            }
+        }
+    }
+
+    /**
+     * Registers the statement about to execute; fails if already cancelled.
+     */
+    synchronized void register(Statement stmt) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query cancelled");
+        }
+        statement = stmt;
+    }
+
+    synchronized void unregister(Statement stmt) {
+        if (statement == stmt) {
+            statement = null;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package burp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned schema migrations for the BurpNote tables.
+ *
+ * The applied version is recorded in a schema_version table. On connect the
+ * current version is read with a single query; migrations only run (under a
+ * named lock, so teammates connecting at the same time do not race) when the
+ * database is behind. Every step is idempotent so a migration interrupted
+ * halfway can simply be re-run.
+ */
+public class SchemaMigrator {
+    private static final String VERSION_TABLE = "schema_version";
+    private static final String LOCK_NAME = "burp_notes_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_NO_SUCH_TABLE = 1146;
+    private static final int TERMS_CHUNK_SIZE = 200;
+
+    /**
+     * A single schema change; apply() must be safe to run more than once.
+     */
+    public interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final String table;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator(String table, DomainGramIndex domainIndex, EndpointIndex endpointIndex) {
+        this.table = table;
+
+        add(1, "Create " + table, conn -> execute(conn,
+                "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "domain VARCHAR(255), " +
+                "content TEXT, " +
+                "create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ") CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci"));
+        // Exact domain search
+        add(2, "Index " + table + ".domain", conn ->
+                createIndex(conn, "idx_" + table + "_domain", "domain"));
+        // Newest-first listing and keyset pagination
+        add(3, "Index " + table + ".(create_time, id)", conn ->
+                createIndex(conn, "idx_" + table + "_time_id", "create_time, id"));
+        // Fuzzy domain search
+        add(4, "Create " + domainIndex.getGramTable(), conn -> execute(conn,
+                "CREATE TABLE IF NOT EXISTS " + domainIndex.getGramTable() + " (" +
+                "gram CHAR(3) NOT NULL, " +
+                "domain VARCHAR(255) NOT NULL, " +
+                "PRIMARY KEY (gram, domain)" +
+                ") CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci"));
+        add(5, "Index existing domains in " + domainIndex.getGramTable(), domainIndex::rebuild);
+        // Wildcard suffix search ("*.example.com") as a range scan on the reversed domain
+        add(6, "Add " + table + ".domain_rev", conn -> {
+            addColumn(conn, "domain_rev VARCHAR(255) AS (REVERSE(LOWER(domain))) STORED");
+            createIndex(conn, "idx_" + table + "_domain_rev", "domain_rev");
+        });
+        // Content search; InnoDB keeps it in sync on every insert and delete
+        add(7, "Full-text index " + table + ".content", conn ->
+                createIndex(conn, "FULLTEXT", "ft_" + table + "_content", "content"));
+        // Idempotent replay of notes from the local journal
+        add(8, "Add " + table + ".client_ref", conn -> {
+            addColumn(conn, "client_ref VARCHAR(64) NULL");
+            createIndex(conn, "UNIQUE", "uq_" + table + "_client_ref", "client_ref");
+        });
+        // Content-hash deduplication; rows hashed later by NoteDeduplicator are NULL until then
+        add(9, "Add " + table + ".content_hash and " + jobTable(table), conn -> {
+            addColumn(conn, "content_hash BINARY(32) NULL");
+            createIndex(conn, "UNIQUE", "uq_" + table + "_domain_hash", "domain, content_hash");
+            execute(conn, "CREATE TABLE IF NOT EXISTS " + jobTable(table) + " (" +
+                    "name VARCHAR(64) PRIMARY KEY, " +
+                    "state VARCHAR(255), " +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+                    ") CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+        });
+        // Compressed bodies (see NoteCodec); content is NULL for them and the list reads the stored preview
+        add(10, "Add compressed content columns to " + table, conn -> {
+            addColumn(conn, "content_codec TINYINT NOT NULL DEFAULT 0");
+            addColumn(conn, "content_blob MEDIUMBLOB NULL");
+            addColumn(conn, "content_preview VARCHAR(" + PagedNotesTableModel.PREVIEW_CHARS + ") NULL");
+            addColumn(conn, "content_chars INT NULL");
+        });
+        // Endpoint set queries; existing notes are indexed in the background by EndpointIndexer
+        add(11, "Create " + endpointIndex.getEndpointTable(), conn -> execute(conn,
+                "CREATE TABLE IF NOT EXISTS " + endpointIndex.getEndpointTable() + " (" +
+                "note_id INT NOT NULL, " +
+                "domain VARCHAR(255) NOT NULL, " +
+                "method VARCHAR(16) CHARACTER SET ascii NOT NULL, " +
+                "path VARCHAR(" + EndpointNormalizer.MAX_PATH_CHARS + ") COLLATE utf8mb4_bin NOT NULL, " +
+                "PRIMARY KEY (domain, method, path, note_id), " +
+                "KEY idx_" + endpointIndex.getEndpointTable() + "_note (note_id, method, path), " +
+                "CONSTRAINT fk_" + endpointIndex.getEndpointTable() + "_note FOREIGN KEY (note_id) " +
+                "REFERENCES " + table + " (id) ON DELETE CASCADE" +
+                ") CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci"));
+        // Sorting the note list by length; covers plain and compressed bodies alike
+        add(12, "Add " + table + ".content_length", conn -> {
+            addColumn(conn, "content_length INT AS (COALESCE(content_chars, CHAR_LENGTH(content))) STORED");
+            createIndex(conn, "idx_" + table + "_length_id", "content_length, id");
+        });
+        // Soft delete: tombstoned notes are hidden at once and purged later in small chunks
+        add(13, "Add " + table + ".deleted_at", conn -> {
+            addColumn(conn, "deleted_at TIMESTAMP NULL DEFAULT NULL");
+            createIndex(conn, "idx_" + table + "_deleted_at", "deleted_at");
+        });
+        // Delta refresh: inserts, deletes and restores set updated_at, polled as a range scan
+        add(14, "Add " + table + ".updated_at", conn -> {
+            addColumn(conn, "updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)");
+            createIndex(conn, "idx_" + table + "_updated_id", "updated_at, id");
+        });
+        // Content search of compressed bodies: their words under a FULLTEXT index, so only candidates are inflated
+        add(15, "Add " + table + ".content_terms", conn -> {
+            addColumn(conn, "content_terms MEDIUMTEXT NULL");
+            indexCompressedTerms(conn);
+            createIndex(conn, "FULLTEXT", "ft_" + table + "_terms", "content_terms");
+        });
+        // TEXT and MEDIUMBLOB stop at 64 KB and 16 MB; the note viewer is built for bodies of 50 MB and more
+        add(16, "Widen " + table + ".content and content_blob", conn -> execute(conn,
+                "ALTER TABLE " + table + " MODIFY COLUMN content LONGTEXT, MODIFY COLUMN content_blob LONGBLOB NULL"));
+    }
+
+    /**
+     * Table holding the progress of resumable background jobs.
+     */
+    public static String jobTable(String table) {
+        return table + "_jobs";
+    }
+
+    private void add(int version, String description, Step step) {
+        migrations.add(new Migration(version, description, step));
+    }
+
+    public int getLatestVersion() {
+        return migrations.get(migrations.size() - 1).version;
+    }
+
+    /**
+     * Brings the schema up to the latest version and returns the descriptions
+     * of the migrations that were applied (empty if it was already current).
+     */
+    public List<String> migrate(Connection conn) throws SQLException {
+        List<String> applied = new ArrayList<>();
+        if (readVersion(conn) >= getLatestVersion()) {
+            return applied;
+        }
+
+        acquireLock(conn);
+        try {
+            execute(conn, "CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(255), " +
+                    "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            // Re-read under the lock in case another client migrated meanwhile
+            int current = readVersion(conn);
+            for (Migration migration : migrations) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                migration.step.apply(conn);
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO " + VERSION_TABLE + " (version, description) VALUES (?, ?)")) {
+                    pstmt.setInt(1, migration.version);
+                    pstmt.setString(2, migration.description);
+                    pstmt.executeUpdate();
+                }
+                applied.add("v" + migration.version + ": " + migration.description);
+            }
+        } finally {
+            releaseLock(conn);
+        }
+        return applied;
+    }
+
+    private int readVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM " + VERSION_TABLE)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_NO_SUCH_TABLE) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    private void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another client to finish migrating the schema");
+                }
+            }
+        }
+    }
+
+    private void releaseLock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        } catch (SQLException ignored) {
+            // The lock is released anyway when the session ends
+        }
+    }
+
+    // Fills content_terms of the bodies compressed before it existed; one with too many words goes back to text
+    private void indexCompressedTerms(Connection conn) throws SQLException {
+        long lastId = 0;
+        while (true) {
+            int read = 0;
+            try (PreparedStatement select = conn.prepareStatement(
+                         "SELECT id, content_codec, content_blob FROM " + table + " WHERE id > ? AND content_codec <> " +
+                         NoteCodec.PLAIN + " AND content_terms IS NULL ORDER BY id LIMIT " + TERMS_CHUNK_SIZE);
+                 PreparedStatement index = conn.prepareStatement(
+                         "UPDATE " + table + " SET content_terms = ? WHERE id = ?");
+                 PreparedStatement inflate = conn.prepareStatement(
+                         "UPDATE " + table + " SET content = ?, content_codec = " + NoteCodec.PLAIN + ", content_blob = NULL, " +
+                         "content_preview = NULL, content_chars = NULL WHERE id = ?")) {
+                select.setLong(1, lastId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        read++;
+                        String content;
+                        try {
+                            content = NoteCodec.decompress(rs.getByte(2), rs.getBytes(3));
+                        } catch (IllegalArgumentException e) {
+                            throw new SQLException("Note " + lastId + ": " + e.getMessage(), e);
+                        }
+                        String terms = ContentQuery.indexTerms(content);
+                        PreparedStatement update = terms != null ? index : inflate;
+                        update.setString(1, terms != null ? terms : content);
+                        update.setLong(2, lastId);
+                        update.executeUpdate();
+                    }
+                }
+            }
+            if (read < TERMS_CHUNK_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private void createIndex(Connection conn, String name, String columns) throws SQLException {
+        createIndex(conn, "", name, columns);
+    }
+
+    private void createIndex(Connection conn, String kind, String name, String columns) throws SQLException {
+        try {
+            execute(conn, "CREATE " + (kind.isEmpty() ? "" : kind + " ") + "INDEX " + name + " ON " + table + " (" + columns + ")");
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_DUP_KEYNAME) {
+                throw e;
+            }
+        }
+    }
+
+    private void addColumn(Connection conn, String definition) throws SQLException {
+        try {
+            execute(conn, "ALTER TABLE " + table + " ADD COLUMN " + definition);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_DUP_FIELDNAME) {
+                throw e;
+            }
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package burp;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Periodic job that removes deleted notes for good once their undo window
+ * has passed.
+ *
+ * Deletes only mark notes; this job purges the marked rows in small chunks,
+ * each in its own short transaction with a pause in between, so a large
+ * delete never holds locks long enough to stall inserts or list queries. A
+ * run stops at the first chunk that is not full; the next run picks up
+ * whatever was deleted since.
+ */
+public class TombstonePurger implements Runnable {
+    private final Supplier<NoteStore> store;
+    private final long purgeAfterMillis;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final Consumer<String> log;
+
+    public TombstonePurger(Supplier<NoteStore> store, long purgeAfterMillis, int chunkSize, long pauseMillis,
+                           Consumer<String> log) {
+        this.store = store;
+        this.purgeAfterMillis = purgeAfterMillis;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.log = log;
+    }
+
+    @Override
+    public void run() {
+        NoteStore current = store.get();
+        if (current == null) {
+            return;
+        }
+        try {
+            int purged;
+            do {
+                purged = current.purgeDeleted(purgeAfterMillis, chunkSize);
+                if (purged == chunkSize) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while (purged == chunkSize && store.get() == current && !Thread.currentThread().isInterrupted());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Tombstones stay hidden; the next run tries again
+            log.accept("Purging deleted notes failed: " + e.getMessage());
+        }
+    }
+}